@@ -0,0 +1,263 @@
+package com.example.chatbot_app;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.StrictMode;
+import android.os.SystemClock;
+import android.view.FrameMetrics;
+import android.view.Window;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Debug-build jank and main-thread I/O detection. Release builds get a no-op
+ * class with the same API.
+ *
+ * StrictMode flags disk and network access on the main thread. FrameMetrics
+ * times every frame of each installed window. Each frame and each violation is
+ * charged to the operation marked most recently, if that was within
+ * OPERATION_WINDOW_MS, and otherwise to "idle". Aggregates build up across
+ * sessions in jank_stats.json under the app's external files directory:
+ *   adb pull /sdcard/Android/data/com.example.chatbot_app/files/jank_stats.json
+ *
+ * Methods are called on the main thread. All bookkeeping and file I/O run on
+ * the monitor's own thread.
+ */
+public final class JankMonitor {
+
+    public static final String OP_SEND = "send";
+    public static final String OP_RENDER = "render";
+    public static final String OP_ATTACH = "attach";
+    public static final String OP_VOICE = "voice";
+    private static final String OP_IDLE = "idle";
+
+    private static final String STATS_FILE = "jank_stats.json";
+    // Frames this long after an operation is marked are charged to it
+    private static final long OPERATION_WINDOW_MS = 1000;
+    // Same heuristic as JankStats: janky once a frame takes twice its budget
+    private static final float JANK_MULTIPLIER = 2f;
+    private static final long FROZEN_FRAME_MS = 700;
+    // Frame duration histogram bin upper bounds in milliseconds; the last bin is open
+    private static final long[] BIN_BOUNDS_MS = {8, 16, 24, 33, 50, 100, 250, 700};
+
+    private static Handler handler;
+    private static File statsFile;
+    private static final Map<String, OperationStats> stats = new HashMap<>();
+    private static final Map<Window, Window.OnFrameMetricsAvailableListener> listeners = new HashMap<>();
+    private static volatile String operation = OP_IDLE;
+    private static volatile long operationMarkedAt = 0;
+
+    private JankMonitor() {
+    }
+
+    public static void install(Activity activity) {
+        if (handler == null) {
+            HandlerThread thread = new HandlerThread("JankMonitor");
+            thread.start();
+            handler = new Handler(thread.getLooper());
+            File dir = activity.getExternalFilesDir(null);
+            statsFile = new File(dir != null ? dir : activity.getFilesDir(), STATS_FILE);
+            handler.post(JankMonitor::load);
+            installStrictMode();
+        }
+        Window window = activity.getWindow();
+        if (listeners.containsKey(window)) {
+            return;
+        }
+        float refreshRate = activity.getWindowManager().getDefaultDisplay().getRefreshRate();
+        long budgetNs = (long) (1_000_000_000L / (refreshRate > 0 ? refreshRate : 60f));
+        Window.OnFrameMetricsAvailableListener listener = (w, metrics, dropped) -> {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                    && metrics.getMetric(FrameMetrics.FIRST_DRAW_FRAME) == 1) {
+                // The first frame includes inflation; startup is measured separately
+                return;
+            }
+            statsFor(currentOperation()).addFrame(metrics.getMetric(FrameMetrics.TOTAL_DURATION), budgetNs);
+        };
+        window.addOnFrameMetricsAvailableListener(listener, handler);
+        listeners.put(window, listener);
+    }
+
+    // Flushes what has been gathered; call when the activity is paused
+    public static void flush() {
+        if (handler != null) {
+            handler.post(JankMonitor::save);
+        }
+    }
+
+    public static void uninstall(Activity activity) {
+        Window.OnFrameMetricsAvailableListener listener = listeners.remove(activity.getWindow());
+        if (listener != null) {
+            activity.getWindow().removeOnFrameMetricsAvailableListener(listener);
+        }
+        flush();
+    }
+
+    // Marks the operation that frames and violations in the next moment belong to
+    public static void operation(String name) {
+        operation = name;
+        operationMarkedAt = SystemClock.uptimeMillis();
+    }
+
+    private static String currentOperation() {
+        return SystemClock.uptimeMillis() - operationMarkedAt <= OPERATION_WINDOW_MS ? operation : OP_IDLE;
+    }
+
+    private static void installStrictMode() {
+        StrictMode.ThreadPolicy.Builder threadPolicy = new StrictMode.ThreadPolicy.Builder()
+            .detectDiskReads()
+            .detectDiskWrites()
+            .detectNetwork()
+            .detectCustomSlowCalls()
+            .penaltyLog();
+        StrictMode.VmPolicy.Builder vmPolicy = new StrictMode.VmPolicy.Builder()
+            .detectLeakedClosableObjects()
+            .detectActivityLeaks()
+            .penaltyLog();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            // Before P violations only reach logcat
+            threadPolicy.penaltyListener(handler::post, violation -> statsFor(currentOperation())
+                .addViolation(violation.getClass().getSimpleName()));
+            vmPolicy.penaltyListener(handler::post, violation -> statsFor(currentOperation())
+                .addViolation(violation.getClass().getSimpleName()));
+        }
+        StrictMode.setThreadPolicy(threadPolicy.build());
+        StrictMode.setVmPolicy(vmPolicy.build());
+    }
+
+    // Monitor thread only from here down
+    private static OperationStats statsFor(String name) {
+        OperationStats operationStats = stats.get(name);
+        if (operationStats == null) {
+            operationStats = new OperationStats();
+            stats.put(name, operationStats);
+        }
+        return operationStats;
+    }
+
+    private static void load() {
+        if (!statsFile.exists()) {
+            return;
+        }
+        try (InputStream in = new FileInputStream(statsFile)) {
+            byte[] bytes = new byte[(int) statsFile.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+            JSONObject operations = new JSONObject(new String(bytes, 0, read, StandardCharsets.UTF_8))
+                .getJSONObject("operations");
+            Iterator<String> names = operations.keys();
+            while (names.hasNext()) {
+                String name = names.next();
+                statsFor(name).merge(operations.getJSONObject(name));
+            }
+        } catch (Exception e) {
+            // Unreadable stats start over
+        }
+    }
+
+    private static void save() {
+        try {
+            JSONObject operations = new JSONObject();
+            for (Map.Entry<String, OperationStats> entry : stats.entrySet()) {
+                operations.put(entry.getKey(), entry.getValue().toJson());
+            }
+            JSONObject json = new JSONObject();
+            json.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+            json.put("sdk", Build.VERSION.SDK_INT);
+            json.put("savedAt", System.currentTimeMillis());
+            json.put("binBoundsMs", new JSONArray(BIN_BOUNDS_MS));
+            json.put("operations", operations);
+
+            File temp = new File(statsFile.getPath() + ".tmp");
+            try (OutputStream out = new FileOutputStream(temp)) {
+                out.write(json.toString(2).getBytes(StandardCharsets.UTF_8));
+            }
+            temp.renameTo(statsFile);
+        } catch (Exception e) {
+            // Stats stay in memory until the next flush
+        }
+    }
+
+    private static class OperationStats {
+        long frames;
+        long jankyFrames;
+        long frozenFrames;
+        long totalMs;
+        long maxMs;
+        final long[] bins = new long[BIN_BOUNDS_MS.length + 1];
+        final Map<String, Long> violations = new HashMap<>();
+
+        void addFrame(long durationNs, long budgetNs) {
+            long ms = durationNs / 1_000_000L;
+            frames++;
+            if (durationNs > budgetNs * JANK_MULTIPLIER) {
+                jankyFrames++;
+            }
+            if (ms >= FROZEN_FRAME_MS) {
+                frozenFrames++;
+            }
+            totalMs += ms;
+            maxMs = Math.max(maxMs, ms);
+            int bin = 0;
+            while (bin < BIN_BOUNDS_MS.length && ms > BIN_BOUNDS_MS[bin]) {
+                bin++;
+            }
+            bins[bin]++;
+        }
+
+        void addViolation(String type) {
+            Long count = violations.get(type);
+            violations.put(type, count == null ? 1 : count + 1);
+        }
+
+        void merge(JSONObject json) throws Exception {
+            frames += json.getLong("frames");
+            jankyFrames += json.getLong("jankyFrames");
+            frozenFrames += json.getLong("frozenFrames");
+            totalMs += json.getLong("totalMs");
+            maxMs = Math.max(maxMs, json.getLong("maxMs"));
+            JSONArray savedBins = json.getJSONArray("bins");
+            for (int i = 0; i < bins.length && i < savedBins.length(); i++) {
+                bins[i] += savedBins.getLong(i);
+            }
+            JSONObject savedViolations = json.getJSONObject("violations");
+            Iterator<String> types = savedViolations.keys();
+            while (types.hasNext()) {
+                String type = types.next();
+                Long count = violations.get(type);
+                violations.put(type, (count == null ? 0 : count) + savedViolations.getLong(type));
+            }
+        }
+
+        JSONObject toJson() throws Exception {
+            JSONObject json = new JSONObject();
+            json.put("frames", frames);
+            json.put("jankyFrames", jankyFrames);
+            json.put("frozenFrames", frozenFrames);
+            json.put("jankPercent", frames == 0 ? 0 : Math.round(jankyFrames * 1000.0 / frames) / 10.0);
+            json.put("totalMs", totalMs);
+            json.put("maxMs", maxMs);
+            json.put("bins", new JSONArray(bins));
+            json.put("violations", new JSONObject(violations));
+            return json;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.chatbot_app;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Resolves the API host and opens a TLS connection ahead of the first request,
+ * so the connection pool already holds a warm socket when the user sends.
+ */
+public class ApiWarmup {
+
+    private static final int WARMUP_TIMEOUT_MS = 5000;
+
+    private final String apiUrl;
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private volatile long warmupMs = -1;
+
+    public ApiWarmup(String apiUrl) {
+        this.apiUrl = apiUrl;
+    }
+
+    // Runs at most once per instance on a low-priority background thread
+    public void preconnect() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(this::warmUp, "api-warmup");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public long getWarmupMs() {
+        return warmupMs;
+    }
+
+    private void warmUp() {
+        long start = System.nanoTime();
+        HttpURLConnection connection = null;
+        try {
+            URL url = new URL(apiUrl);
+            // DNS first, so a slow resolver doesn't count against the connect timeout
+            InetAddress.getAllByName(url.getHost());
+
+            // A HEAD to the host root completes the TLS handshake without touching the API.
+            // Draining and closing the body (rather than disconnecting) returns the
+            // socket to the keep-alive pool for the first real request.
+            connection = (HttpURLConnection) new URL(url.getProtocol(), url.getHost(), url.getPort(), "/").openConnection();
+            connection.setRequestMethod("HEAD");
+            connection.setConnectTimeout(WARMUP_TIMEOUT_MS);
+            connection.setReadTimeout(WARMUP_TIMEOUT_MS);
+            connection.getResponseCode();
+            InputStream body = connection.getErrorStream() != null ? connection.getErrorStream() : connection.getInputStream();
+            if (body != null) {
+                while (body.read() != -1) {
+                    // Drain
+                }
+                body.close();
+            }
+            warmupMs = (System.nanoTime() - start) / 1_000_000L;
+        } catch (Exception e) {
+            // Warm-up is best effort; the real request will connect on its own
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+}
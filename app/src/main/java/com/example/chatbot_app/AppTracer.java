@@ -0,0 +1,44 @@
+package com.example.chatbot_app;
+
+import androidx.tracing.Trace;
+
+/**
+ * System trace sections for one chat request, from the send tap to the bubble.
+ * Every section carries the request key, so a capture taken with
+ * perfetto/chat_request.pbtxt lines them up across threads: the ChatRequest
+ * async slice, the API attempts and their phases, and the rendered card.
+ */
+public final class AppTracer implements RequestTracer {
+
+    public static final AppTracer INSTANCE = new AppTracer();
+
+    // Async slice from sending a message until its reply is in the conversation
+    public static final String CHAT_REQUEST = "ChatRequest";
+
+    private AppTracer() {
+    }
+
+    public static int cookie(String requestKey) {
+        return requestKey.hashCode();
+    }
+
+    @Override
+    public void beginSection(String name) {
+        Trace.beginSection(name);
+    }
+
+    @Override
+    public void endSection() {
+        Trace.endSection();
+    }
+
+    @Override
+    public void beginAsyncSection(String name, int cookie) {
+        Trace.beginAsyncSection(name, cookie);
+    }
+
+    @Override
+    public void endAsyncSection(String name, int cookie) {
+        Trace.endAsyncSection(name, cookie);
+    }
+}
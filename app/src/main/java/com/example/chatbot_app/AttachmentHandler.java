@@ -17,12 +17,15 @@ import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import androidx.tracing.Trace;
 import com.google.android.material.bottomsheet.BottomSheetDialog;
 import com.google.android.material.button.MaterialButton;
 import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class AttachmentHandler {
     
@@ -34,11 +37,19 @@ public class AttachmentHandler {
     private ActivityResultLauncher<String> permissionLauncher;
     
     private static final int MAX_IMAGE_SIZE = 1024 * 1024; // 1MB
+    private static final int MAX_IMAGE_WIDTH = 800;
+    private static final int MAX_IMAGE_HEIGHT = 600;
+    
+    // Decoding and compressing a photo takes far longer than a frame
+    private final ExecutorService imageExecutor = Executors.newSingleThreadExecutor();
     
     public interface AttachmentCallback {
         void onFileSelected(String fileName, String fileType, String fileContent);
-        void onImageSelected(String fileName, Bitmap bitmap, String base64);
+        // Called on a worker thread with the compressed JPEG
+        void onImageSelected(String fileName, byte[] jpegBytes);
         void onError(String error);
+        // CSV files can be run as a prompt batch; call attachDocument() to attach instead
+        void onCsvSelected(String fileName, Uri uri);
     }
     
     public AttachmentHandler(AppCompatActivity activity, AttachmentCallback callback) {
@@ -53,7 +64,12 @@ public class AttachmentHandler {
             new ActivityResultContracts.StartActivityForResult(),
             result -> {
                 if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null) {
-                    handleDocumentResult(result.getData());
+                    Trace.beginSection("AttachmentHandler.handleDocumentResult");
+                    try {
+                        handleDocumentResult(result.getData());
+                    } finally {
+                        Trace.endSection();
+                    }
                 }
             }
         );
@@ -63,7 +79,12 @@ public class AttachmentHandler {
             new ActivityResultContracts.StartActivityForResult(),
             result -> {
                 if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null) {
-                    handleImageResult(result.getData());
+                    Trace.beginSection("AttachmentHandler.handleImageResult");
+                    try {
+                        handleImageResult(result.getData());
+                    } finally {
+                        Trace.endSection();
+                    }
                 }
             }
         );
@@ -73,7 +94,12 @@ public class AttachmentHandler {
             new ActivityResultContracts.StartActivityForResult(),
             result -> {
                 if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null) {
-                    handleCameraResult(result.getData());
+                    Trace.beginSection("AttachmentHandler.handleCameraResult");
+                    try {
+                        handleCameraResult(result.getData());
+                    } finally {
+                        Trace.endSection();
+                    }
                 }
             }
         );
@@ -177,12 +203,23 @@ public class AttachmentHandler {
     }
     
     private void handleDocumentResult(Intent data) {
+        JankMonitor.operation(JankMonitor.OP_ATTACH);
         Uri uri = data.getData();
         if (uri == null) {
             callback.onError("No file selected");
             return;
         }
         
+        String fileName = getFileName(uri);
+        String mimeType = activity.getContentResolver().getType(uri);
+        if (isCsv(fileName, mimeType)) {
+            callback.onCsvSelected(fileName, uri);
+            return;
+        }
+        attachDocument(uri);
+    }
+    
+    public void attachDocument(Uri uri) {
         try {
             String fileName = getFileName(uri);
             String mimeType = activity.getContentResolver().getType(uri);
@@ -220,31 +257,40 @@ public class AttachmentHandler {
         }
     }
     
+    private static boolean isCsv(String fileName, String mimeType) {
+        return "text/csv".equals(mimeType)
+            || "text/comma-separated-values".equals(mimeType)
+            || (fileName != null && fileName.toLowerCase().endsWith(".csv"));
+    }
+    
     private void handleImageResult(Intent data) {
+        JankMonitor.operation(JankMonitor.OP_ATTACH);
         Uri uri = data.getData();
         if (uri == null) {
             callback.onError("No image selected");
             return;
         }
         
-        try {
-            String fileName = getFileName(uri);
-            Bitmap bitmap = MediaStore.Images.Media.getBitmap(activity.getContentResolver(), uri);
-            
-            // Resize if too large
-            bitmap = resizeBitmap(bitmap, 800, 600);
-            
-            // Convert to base64
-            String base64 = bitmapToBase64(bitmap);
-            
-            callback.onImageSelected(fileName, bitmap, base64);
-            
-        } catch (IOException e) {
-            callback.onError("Error processing image: " + e.getMessage());
-        }
+        imageExecutor.execute(() -> {
+            Trace.beginSection("AttachmentHandler.processImage");
+            try {
+                String fileName = getFileName(uri);
+                Bitmap bitmap = decodeSampled(uri, MAX_IMAGE_WIDTH, MAX_IMAGE_HEIGHT);
+                if (bitmap == null) {
+                    callback.onError("Unable to decode image");
+                    return;
+                }
+                callback.onImageSelected(fileName, compressJpeg(resizeBitmap(bitmap, MAX_IMAGE_WIDTH, MAX_IMAGE_HEIGHT)));
+            } catch (IOException e) {
+                callback.onError("Error processing image: " + e.getMessage());
+            } finally {
+                Trace.endSection();
+            }
+        });
     }
     
     private void handleCameraResult(Intent data) {
+        JankMonitor.operation(JankMonitor.OP_ATTACH);
         if (data.getExtras() == null) {
             callback.onError("No image captured");
             return;
@@ -256,13 +302,45 @@ public class AttachmentHandler {
             return;
         }
         
-        // Resize if needed
-        bitmap = resizeBitmap(bitmap, 800, 600);
-        
-        // Convert to base64
-        String base64 = bitmapToBase64(bitmap);
+        imageExecutor.execute(() -> {
+            Trace.beginSection("AttachmentHandler.processImage");
+            try {
+                callback.onImageSelected("camera_image.jpg", compressJpeg(resizeBitmap(bitmap, MAX_IMAGE_WIDTH, MAX_IMAGE_HEIGHT)));
+            } finally {
+                Trace.endSection();
+            }
+        });
+    }
+    
+    // Decodes at the largest power-of-two reduction that still covers maxWidth x maxHeight
+    private Bitmap decodeSampled(Uri uri, int maxWidth, int maxHeight) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = openImage(uri)) {
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
         
-        callback.onImageSelected("camera_image.jpg", bitmap, base64);
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= maxWidth
+                && options.outHeight / (sampleSize * 2) >= maxHeight) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        try (InputStream in = openImage(uri)) {
+            return BitmapFactory.decodeStream(in, null, options);
+        }
+    }
+    
+    private InputStream openImage(Uri uri) throws FileNotFoundException {
+        InputStream in = activity.getContentResolver().openInputStream(uri);
+        if (in == null) {
+            throw new FileNotFoundException("Unable to read image");
+        }
+        return in;
     }
     
     private String getFileName(Uri uri) {
@@ -305,10 +383,9 @@ public class AttachmentHandler {
         return Bitmap.createScaledBitmap(bitmap, width, height, true);
     }
     
-    private String bitmapToBase64(Bitmap bitmap) {
+    private byte[] compressJpeg(Bitmap bitmap) {
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         bitmap.compress(Bitmap.CompressFormat.JPEG, 80, outputStream);
-        byte[] byteArray = outputStream.toByteArray();
-        return Base64.encodeToString(byteArray, Base64.DEFAULT);
+        return outputStream.toByteArray();
     }
 }
@@ -0,0 +1,489 @@
+package com.example.chatbot_app;
+
+import android.os.Handler;
+import android.os.Looper;
+import org.json.JSONObject;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs every row of a CSV through the chat API. Rows are streamed from the file,
+ * sent by a few workers at a paced rate, retried on transient failures, and each
+ * result is appended to results.jsonl and results.csv as soon as it lands.
+ *
+ * Each job lives in its own directory holding a copy of the input, its settings
+ * and the results. The results file doubles as the checkpoint: a resumed job
+ * skips rows that already succeeded and retries the ones that failed. A row that
+ * appears twice in the output was retried; the later line wins.
+ *
+ * The prompt comes from a column headed "prompt" (else the first column) and the
+ * model from an optional "model" column. A first row naming either is a header;
+ * otherwise every row is a prompt. Listener callbacks arrive on the main thread.
+ */
+public class BatchJob {
+
+    public static final int DEFAULT_PARALLELISM = 3;
+    public static final int MAX_PARALLELISM = 8;
+    public static final int DEFAULT_REQUESTS_PER_MINUTE = 30;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BASE_BACKOFF_MS = 2000;
+
+    private static final String INPUT_FILE = "input.csv";
+    private static final String CONFIG_FILE = "config.json";
+    private static final String RESULTS_JSONL = "results.jsonl";
+    private static final String RESULTS_CSV = "results.csv";
+    // Header names, and their indexes in CsvReader.headerColumns()
+    private static final String[] COLUMNS = {"prompt", "model"};
+    private static final int PROMPT = 0;
+    private static final int MODEL = 1;
+
+    public interface Listener {
+        void onProgress(int done, int failed, int total);
+        void onFinished(int succeeded, int failed, boolean cancelled);
+    }
+
+    private static class Row {
+        final int number;
+        final String prompt;
+        final String model;
+
+        Row(int number, String prompt, String model) {
+            this.number = number;
+            this.prompt = prompt;
+            this.model = model;
+        }
+    }
+
+    private final File directory;
+    private final String name;
+    private final int parallelism;
+    private final int requestsPerMinute;
+    private final CohereApiClient apiClient;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Random random = new Random();
+    private final Set<ChatCall> activeCalls = new HashSet<>();
+
+    // Guarded by this
+    private CsvReader reader;
+    private Reader input;
+    private Writer jsonlWriter;
+    private Writer csvWriter;
+    private int promptColumn;
+    private int modelColumn;
+    private int rowNumber;
+    private Set<Integer> completedRows;
+    private long nextSlotMs;
+    private volatile boolean cancelled = false;
+
+    private BatchJob(File directory, CohereApiClient apiClient) throws IOException {
+        this.directory = directory;
+        this.apiClient = apiClient;
+        try {
+            JSONObject config = new JSONObject(readFile(new File(directory, CONFIG_FILE)));
+            name = config.getString("name");
+            parallelism = config.getInt("parallelism");
+            requestsPerMinute = config.getInt("requestsPerMinute");
+        } catch (Exception e) {
+            throw new IOException("Unreadable batch config in " + directory, e);
+        }
+    }
+
+    // Copies the CSV into a new job directory under root, so a resume doesn't need the original URI
+    public static BatchJob create(File root, String name, InputStream csv, int parallelism,
+                                  int requestsPerMinute, CohereApiClient apiClient) throws IOException {
+        File directory = new File(root, String.valueOf(System.currentTimeMillis()));
+        if (!directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        try (OutputStream out = new FileOutputStream(new File(directory, INPUT_FILE))) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = csv.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        try {
+            writeFile(new File(directory, CONFIG_FILE), new JSONObject()
+                .put("name", name)
+                .put("parallelism", Math.max(1, Math.min(MAX_PARALLELISM, parallelism)))
+                .put("requestsPerMinute", Math.max(1, requestsPerMinute))
+                .put("finished", false)
+                .toString());
+        } catch (org.json.JSONException e) {
+            throw new IOException(e);
+        }
+        return new BatchJob(directory, apiClient);
+    }
+
+    // The newest job that was interrupted before finishing, or null
+    public static BatchJob findUnfinished(File root, CohereApiClient apiClient) {
+        File[] directories = root.listFiles(File::isDirectory);
+        if (directories == null) {
+            return null;
+        }
+        Arrays.sort(directories, (a, b) -> b.getName().compareTo(a.getName()));
+        for (File directory : directories) {
+            try {
+                JSONObject config = new JSONObject(readFile(new File(directory, CONFIG_FILE)));
+                if (!config.optBoolean("finished")) {
+                    return new BatchJob(directory, apiClient);
+                }
+            } catch (Exception e) {
+                // Not a job, or one torn while being created
+            }
+        }
+        return null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public File getResultsFile() {
+        return new File(directory, RESULTS_CSV);
+    }
+
+    // Starts (or resumes) the job; rows without a model column use defaultModel
+    public void start(String defaultModel, Listener listener) {
+        cancelled = false;
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        workers.execute(() -> {
+            int total;
+            AtomicInteger succeeded = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            try {
+                completedRows = loadCompletedRows();
+                succeeded.set(completedRows.size());
+                total = countRows();
+                open();
+            } catch (IOException e) {
+                workers.shutdown();
+                mainHandler.post(() -> listener.onFinished(0, 0, false));
+                return;
+            }
+            mainHandler.post(() -> listener.onProgress(succeeded.get(), 0, total));
+
+            AtomicInteger running = new AtomicInteger(parallelism);
+            Runnable worker = () -> {
+                Row row;
+                while (!cancelled && (row = nextRow()) != null) {
+                    String response = runWithRetry(row, defaultModel);
+                    if (CohereApiClient.BUDGET_EXCEEDED_RESPONSE.equals(response)) {
+                        // Pause rather than fail every remaining row; resumable once there's budget again
+                        cancel();
+                    }
+                    if (cancelled) {
+                        break;
+                    }
+                    boolean ok = !isFailure(response);
+                    writeResult(row, response, ok);
+                    (ok ? succeeded : failed).incrementAndGet();
+                    int done = succeeded.get();
+                    int failures = failed.get();
+                    mainHandler.post(() -> listener.onProgress(done, failures, total));
+                }
+                if (running.decrementAndGet() == 0) {
+                    close(!cancelled);
+                    workers.shutdown();
+                    mainHandler.post(() -> listener.onFinished(succeeded.get(), failed.get(), cancelled));
+                }
+            };
+            for (int i = 1; i < parallelism; i++) {
+                workers.execute(worker);
+            }
+            worker.run();
+        });
+    }
+
+    // Stops after the requests in progress are abandoned; the job stays resumable
+    public void cancel() {
+        cancelled = true;
+        synchronized (activeCalls) {
+            for (ChatCall call : activeCalls) {
+                call.cancel();
+            }
+        }
+    }
+
+    private String runWithRetry(Row row, String defaultModel) {
+        String model = row.model.isEmpty() ? defaultModel : row.model;
+        String response = "";
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS && !cancelled; attempt++) {
+            if (attempt > 1 && !sleep(backoffMs(attempt))) {
+                break;
+            }
+            if (!awaitSlot()) {
+                break;
+            }
+            // Same key on every attempt and across resumes, so the server can drop duplicates
+            ChatCall call = new ChatCall(directory.getName() + "-" + row.number);
+            synchronized (activeCalls) {
+                activeCalls.add(call);
+            }
+            response = apiClient.callCohereAPI(row.prompt, false, model, PromptContext.EMPTY, call);
+            synchronized (activeCalls) {
+                activeCalls.remove(call);
+            }
+            if (!isRetryable(response)) {
+                break;
+            }
+        }
+        return response;
+    }
+
+    // Next row not yet done, or null at the end of the input
+    private synchronized Row nextRow() {
+        try {
+            List<String> cells;
+            while ((cells = reader.readRow()) != null) {
+                int number = ++rowNumber;
+                if (completedRows.contains(number)) {
+                    continue;
+                }
+                String prompt = cell(cells, promptColumn).trim();
+                if (prompt.isEmpty()) {
+                    continue;
+                }
+                return new Row(number, prompt, cell(cells, modelColumn).trim());
+            }
+        } catch (IOException e) {
+            // Treat an unreadable tail as the end; what ran is already saved
+        }
+        return null;
+    }
+
+    // Spaces requests evenly at requestsPerMinute across all workers
+    private boolean awaitSlot() {
+        long waitMs;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            long slot = Math.max(now, nextSlotMs);
+            nextSlotMs = slot + 60_000L / requestsPerMinute;
+            waitMs = slot - now;
+        }
+        return waitMs <= 0 || sleep(waitMs);
+    }
+
+    private long backoffMs(int attempt) {
+        long base = BASE_BACKOFF_MS << (attempt - 2);
+        // Jitter so parallel workers that failed together don't retry together
+        synchronized (random) {
+            return base + random.nextInt((int) base);
+        }
+    }
+
+    private boolean sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+            return !cancelled;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private synchronized void writeResult(Row row, String response, boolean ok) {
+        try {
+            jsonlWriter.write(new JSONObject()
+                .put("row", row.number)
+                .put("prompt", row.prompt)
+                .put("model", row.model)
+                .put("status", ok ? "ok" : "failed")
+                .put("response", response)
+                .toString());
+            jsonlWriter.write('\n');
+            jsonlWriter.flush();
+            csvWriter.write(row.number + "," + CsvReader.escape(row.prompt) + "," + CsvReader.escape(row.model)
+                + "," + (ok ? "ok" : "failed") + "," + CsvReader.escape(response) + "\r\n");
+            csvWriter.flush();
+        } catch (Exception e) {
+            // The row runs again on resume
+        }
+    }
+
+    private Set<Integer> loadCompletedRows() throws IOException {
+        Set<Integer> completed = new HashSet<>();
+        File results = new File(directory, RESULTS_JSONL);
+        if (!results.exists()) {
+            return completed;
+        }
+        try (BufferedReader lines = new BufferedReader(
+                new InputStreamReader(new FileInputStream(results), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                try {
+                    JSONObject json = new JSONObject(line);
+                    if ("ok".equals(json.getString("status"))) {
+                        completed.add(json.getInt("row"));
+                    } else {
+                        completed.remove(json.getInt("row"));
+                    }
+                } catch (Exception e) {
+                    // Torn line from a crash mid-write
+                }
+            }
+        }
+        return completed;
+    }
+
+    // Rows that have a prompt, for progress
+    private int countRows() throws IOException {
+        try (Reader in = openInput()) {
+            CsvReader counter = new CsvReader(in);
+            List<String> cells = counter.readRow();
+            if (cells == null) {
+                return 0;
+            }
+            int[] header = CsvReader.headerColumns(cells, COLUMNS);
+            int column = header == null ? 0 : promptIndex(header);
+            int count = 0;
+            if (header != null) {
+                cells = counter.readRow();
+            }
+            for (; cells != null; cells = counter.readRow()) {
+                if (!cell(cells, column).trim().isEmpty()) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private synchronized void open() throws IOException {
+        input = openInput();
+        reader = new CsvReader(input);
+        List<String> firstRow = reader.readRow();
+        int[] header = firstRow == null ? null : CsvReader.headerColumns(firstRow, COLUMNS);
+        rowNumber = 0;
+        if (header != null) {
+            promptColumn = promptIndex(header);
+            modelColumn = header[MODEL];
+        } else {
+            // No header: the first line is already a prompt
+            input.close();
+            input = openInput();
+            reader = new CsvReader(input);
+            promptColumn = 0;
+            modelColumn = -1;
+        }
+
+        File csv = new File(directory, RESULTS_CSV);
+        boolean newCsv = !csv.exists() || csv.length() == 0;
+        endWithNewline(new File(directory, RESULTS_JSONL));
+        endWithNewline(csv);
+        jsonlWriter = new OutputStreamWriter(new FileOutputStream(new File(directory, RESULTS_JSONL), true),
+            StandardCharsets.UTF_8);
+        csvWriter = new OutputStreamWriter(new FileOutputStream(csv, true), StandardCharsets.UTF_8);
+        if (newCsv) {
+            csvWriter.write("row,prompt,model,status,response\r\n");
+        }
+    }
+
+    private synchronized void close(boolean finished) {
+        try {
+            input.close();
+            jsonlWriter.close();
+            csvWriter.close();
+        } catch (IOException e) {
+            // Everything written was already flushed
+        }
+        if (finished) {
+            try {
+                File configFile = new File(directory, CONFIG_FILE);
+                writeFile(configFile, new JSONObject(readFile(configFile)).put("finished", true).toString());
+            } catch (Exception e) {
+                // Offered for resume once more; every row is already done, so it finishes at once
+            }
+        }
+    }
+
+    private Reader openInput() throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+            new FileInputStream(new File(directory, INPUT_FILE)), StandardCharsets.UTF_8));
+        // Spreadsheet apps often save CSV with a byte order mark, which would hide the "prompt" header
+        in.mark(1);
+        if (in.read() != '\uFEFF') {
+            in.reset();
+        }
+        return in;
+    }
+
+    // A crash can leave a torn last line; start the next append on a fresh one
+    private static void endWithNewline(File file) throws IOException {
+        if (!file.exists() || file.length() == 0) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 1);
+            if (raf.read() != '\n') {
+                raf.write('\n');
+            }
+        }
+    }
+
+    // A header naming other columns but not "prompt", e.g. "question,model", has it first
+    private static int promptIndex(int[] header) {
+        return header[PROMPT] >= 0 ? header[PROMPT] : 0;
+    }
+
+    private static String cell(List<String> cells, int column) {
+        return column >= 0 && column < cells.size() ? cells.get(column) : "";
+    }
+
+    private static boolean isFailure(String response) {
+        return response.isEmpty()
+            || response.equals(CohereApiClient.FALLBACK_RESPONSE)
+            || response.equals(CohereApiClient.BUDGET_EXCEEDED_RESPONSE)
+            || response.startsWith("API Error")
+            || response.startsWith("Exception");
+    }
+
+    // Rate limits, server errors and dropped connections are worth another try; bad requests aren't
+    private static boolean isRetryable(String response) {
+        return response.equals(CohereApiClient.FALLBACK_RESPONSE)
+            || response.startsWith("API Error 429")
+            || response.startsWith("API Error 5")
+            || (response.startsWith("Exception") && !response.equals("Exception: cancelled"));
+    }
+
+    private static String readFile(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int offset = 0;
+            int read;
+            while (offset < bytes.length && (read = in.read(bytes, offset, bytes.length - offset)) != -1) {
+                offset += read;
+            }
+            return new String(bytes, 0, offset, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void writeFile(File file, String text) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+            writer.write(text);
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Can't replace " + file);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.chatbot_app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * Every in-memory cache in the app, so memory pressure can be answered in one
+ * place. Each cache joins a tier. Under pressure whole tiers are shed, cheapest
+ * to rebuild first:
+ * - TIER_SPARE: pools and decoded copies, rebuilt for free;
+ * - TIER_DISPLAY: what the chat screen shows, rebuilt from disk on the next look;
+ * - TIER_FETCHED: results that cost a network call to get back.
+ * TIER_KEEP entries are never shed and are only listed with their size.
+ *
+ * ChatApplication maps onTrimMemory levels to tiers. Sizes are estimates, for
+ * diagnostics.
+ */
+public class CacheRegistry {
+
+    public static final int TIER_SPARE = 0;
+    public static final int TIER_DISPLAY = 1;
+    public static final int TIER_FETCHED = 2;
+    public static final int TIER_KEEP = Integer.MAX_VALUE;
+    public static final int TIER_ALL = TIER_FETCHED;
+
+    private static final String[] TIER_NAMES = {"spare", "display", "fetched"};
+
+    public interface Cache {
+        long sizeBytes();
+
+        // Drops what the cache holds; it refills on demand
+        void trim();
+    }
+
+    private static CacheRegistry instance;
+
+    private final List<Entry> entries = new ArrayList<>();
+    private int trims = 0;
+    private long lastTrimFreedBytes = 0;
+
+    private static class Entry {
+        final String name;
+        final int tier;
+        final Cache cache;
+
+        Entry(String name, int tier, Cache cache) {
+            this.name = name;
+            this.tier = tier;
+            this.cache = cache;
+        }
+    }
+
+    // For caches that expose their size and trim as plain methods
+    public static Cache of(LongSupplier sizeBytes, Runnable trim) {
+        return new Cache() {
+            @Override
+            public long sizeBytes() {
+                return sizeBytes.getAsLong();
+            }
+
+            @Override
+            public void trim() {
+                trim.run();
+            }
+        };
+    }
+
+    public static synchronized CacheRegistry getInstance() {
+        if (instance == null) {
+            instance = new CacheRegistry();
+        }
+        return instance;
+    }
+
+    // A cache registered again under the same name replaces the earlier one, e.g. after recreation
+    public synchronized void register(String name, int tier, Cache cache) {
+        unregister(name);
+        entries.add(new Entry(name, tier, cache));
+    }
+
+    public synchronized void unregister(String name) {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            if (entries.get(i).name.equals(name)) {
+                entries.remove(i);
+            }
+        }
+    }
+
+    // Sheds every tier up to and including maxTier, lowest first; returns the bytes freed
+    public long trim(int maxTier) {
+        List<Entry> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(entries);
+        }
+        long freed = 0;
+        for (int tier = TIER_SPARE; tier <= Math.min(maxTier, TIER_ALL); tier++) {
+            for (Entry entry : snapshot) {
+                if (entry.tier == tier) {
+                    long before = entry.cache.sizeBytes();
+                    entry.cache.trim();
+                    freed += Math.max(0, before - entry.cache.sizeBytes());
+                }
+            }
+        }
+        synchronized (this) {
+            trims++;
+            lastTrimFreedBytes = freed;
+        }
+        return freed;
+    }
+
+    public synchronized long totalBytes() {
+        long total = 0;
+        for (Entry entry : entries) {
+            total += entry.cache.sizeBytes();
+        }
+        return total;
+    }
+
+    public synchronized String describe() {
+        StringBuilder sb = new StringBuilder("Caches:\n");
+        for (Entry entry : entries) {
+            String tier = entry.tier == TIER_KEEP ? "kept" : TIER_NAMES[entry.tier];
+            sb.append(String.format(Locale.US, "  %s (%s): %s\n", entry.name, tier,
+                formatBytes(entry.cache.sizeBytes())));
+        }
+        sb.append(String.format(Locale.US, "  Total: %s; %d trims, last freed %s\n", formatBytes(totalBytes()),
+            trims, formatBytes(lastTrimFreedBytes)));
+        return sb.toString();
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        } else if (bytes < 1024 * 1024) {
+            return String.format(Locale.US, "%.1f KB", bytes / 1024.0);
+        }
+        return String.format(Locale.US, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.chatbot_app;
+
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+
+/**
+ * Answers system memory pressure by shedding cache tiers, so the process is a
+ * smaller target for the low-memory killer and more often comes back warm.
+ */
+public class ChatApplication extends Application {
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        int tier;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            // Next in line to be killed: drop everything that can be rebuilt
+            tier = CacheRegistry.TIER_ALL;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            // UI hidden or critically low: display caches refill from disk on the next look
+            tier = CacheRegistry.TIER_DISPLAY;
+        } else {
+            // RUNNING_MODERATE and RUNNING_LOW: still in use, so only spare copies go
+            tier = CacheRegistry.TIER_SPARE;
+        }
+        CacheRegistry.getInstance().trim(tier);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        CacheRegistry.getInstance().trim(CacheRegistry.TIER_ALL);
+    }
+}
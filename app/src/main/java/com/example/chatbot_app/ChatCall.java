@@ -0,0 +1,50 @@
+package com.example.chatbot_app;
+
+import java.net.HttpURLConnection;
+
+/**
+ * Cancellation handle for one chat request across all of its model attempts.
+ * Cancelling disconnects the attempt in progress, which unblocks its socket read.
+ */
+public class ChatCall {
+
+    private final String requestKey;
+    private volatile boolean cancelled = false;
+    private HttpURLConnection connection;
+
+    public ChatCall(String requestKey) {
+        this.requestKey = requestKey;
+    }
+
+    // Stable across replays of the same message, so the server can drop duplicates
+    public String getRequestKey() {
+        return requestKey;
+    }
+
+    public synchronized void attach(HttpURLConnection connection) {
+        this.connection = connection;
+        if (cancelled) {
+            connection.disconnect();
+        }
+    }
+
+    public synchronized void detach() {
+        connection = null;
+    }
+
+    public void cancel() {
+        HttpURLConnection current;
+        synchronized (this) {
+            cancelled = true;
+            current = connection;
+            connection = null;
+        }
+        if (current != null) {
+            current.disconnect();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.chatbot_app;
+
+/**
+ * One message in the conversation.
+ */
+public class ChatMessage {
+
+    private final long id;
+    private final boolean isUser;
+    private final String text;
+    private final long timestamp;
+    // Outbox key of the request a bot reply answers; null for user messages
+    private final String requestKey;
+    // Hash of an attached image in ThumbnailCache; null when there is none
+    private final String imageHash;
+
+    public ChatMessage(long id, boolean isUser, String text, long timestamp) {
+        this(id, isUser, text, timestamp, null);
+    }
+
+    public ChatMessage(long id, boolean isUser, String text, long timestamp, String requestKey) {
+        this(id, isUser, text, timestamp, requestKey, null);
+    }
+
+    public ChatMessage(long id, boolean isUser, String text, long timestamp, String requestKey, String imageHash) {
+        this.id = id;
+        this.isUser = isUser;
+        this.text = text;
+        this.timestamp = timestamp;
+        this.requestKey = requestKey;
+        this.imageHash = imageHash;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public boolean isUser() {
+        return isUser;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getRequestKey() {
+        return requestKey;
+    }
+
+    public String getImageHash() {
+        return imageHash;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.chatbot_app;
+
+import org.json.JSONObject;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Durable queue of user messages still waiting for a reply, in send order.
+ * Entries are written before the request goes out and dropped once the reply
+ * is in the conversation log, so anything left over after a crash or an
+ * offline stretch is replayed. Not thread-safe; use from a single I/O thread.
+ */
+public class ChatOutbox {
+
+    public static class Entry {
+        // Sent as Idempotency-Key and stamped on the reply to suppress duplicate sends
+        final String key;
+        final String prompt;
+        final boolean hasAttachment;
+        // Id of the user message it answers; -1 in entries written before ids were kept
+        final long messageId;
+
+        Entry(String key, String prompt, boolean hasAttachment, long messageId) {
+            this.key = key;
+            this.prompt = prompt;
+            this.hasAttachment = hasAttachment;
+            this.messageId = messageId;
+        }
+    }
+
+    private final File file;
+
+    public ChatOutbox(File file) {
+        this.file = file;
+    }
+
+    public List<Entry> load() {
+        List<Entry> entries = new ArrayList<>();
+        if (!file.exists()) {
+            return entries;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Entry entry = parse(line);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+        } catch (IOException e) {
+            // Keep whatever was read before the error
+        }
+        return entries;
+    }
+
+    // Replaces the whole queue; written to a temp file and renamed so a crash never leaves it half-written
+    public void save(List<Entry> entries) throws IOException {
+        if (entries.isEmpty()) {
+            file.delete();
+            return;
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+            for (Entry entry : entries) {
+                writer.write(serialize(entry));
+                writer.write('\n');
+            }
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    static String serialize(Entry entry) {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("key", entry.key);
+            json.put("prompt", entry.prompt);
+            json.put("attachment", entry.hasAttachment);
+            json.put("message", entry.messageId);
+            return json.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static Entry parse(String line) {
+        try {
+            JSONObject json = new JSONObject(line);
+            return new Entry(json.getString("key"), json.getString("prompt"), json.getBoolean("attachment"),
+                json.optLong("message", -1));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package com.example.chatbot_app;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.widget.LinearLayout;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.NestedScrollView;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Renders only a window of the conversation into the chat container, so opening
+ * a long chat costs the same as opening a short one.
+ *
+ * The newest page is shown first. Spacer views stand in for the messages above
+ * and below the window, sized from measured heights where a card has been shown
+ * before and from a running per-character estimate otherwise. Scrolling near
+ * either edge of the window loads the next page, with its text laid out on a
+ * background thread. Pages far from the viewport are dropped again, so the
+ * number of live views stays bounded. The scroll position is anchored across
+ * every change, so nothing on screen jumps.
+ *
+ * Main thread only.
+ */
+public class ChatPager {
+
+    public interface CardFactory {
+        // Called on a background thread
+        CharSequence displayText(ChatMessage message);
+
+        // text is displayText(message), possibly precomputed
+        View createCard(ChatMessage message, CharSequence text);
+    }
+
+    private static final int PAGE_SIZE = 30;
+    private static final int MAX_RENDERED = PAGE_SIZE * 4;
+    // Start loading when the window edge is within this many viewport heights
+    private static final float PREFETCH_SCREENS = 1.5f;
+    // Starting guesses in dp until real cards have been measured
+    private static final float INITIAL_BASE_HEIGHT_DP = 72f;
+    private static final float INITIAL_HEIGHT_PER_CHAR_DP = 0.6f;
+    // Rough heap per rendered card (card, layout, two text views and their layouts), for diagnostics
+    private static final int CARD_BYTES_ESTIMATE = 4 * 1024;
+
+    private final NestedScrollView scrollView;
+    private final LinearLayout container;
+    private final CardFactory factory;
+    private final PrecomputedTextCompat.Params textParams;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final View topSpacer;
+    private final View bottomSpacer;
+
+    private List<ChatMessage> messages = Collections.emptyList();
+    // Rendered window is messages[from, to)
+    private int from = 0;
+    private int to = 0;
+    private boolean loadingBefore = false;
+    private boolean loadingAfter = false;
+    // Bumped on every reset so page loads started before it are dropped
+    private int generation = 0;
+
+    // Outer heights of cards seen so far, and the estimate fitted to them
+    private final Map<Long, Integer> measuredHeights = new HashMap<>();
+    private float baseHeight;
+    private float heightPerChar;
+    // Running sums for a least-squares fit of height against text length
+    private double n = 0;
+    private double sumChars = 0;
+    private double sumHeight = 0;
+    private double sumCharsSquared = 0;
+    private double sumCharsHeight = 0;
+
+    public ChatPager(NestedScrollView scrollView, LinearLayout container, CardFactory factory,
+                     PrecomputedTextCompat.Params textParams) {
+        this.scrollView = scrollView;
+        this.container = container;
+        this.factory = factory;
+        this.textParams = textParams;
+        float density = container.getResources().getDisplayMetrics().density;
+        baseHeight = INITIAL_BASE_HEIGHT_DP * density;
+        heightPerChar = INITIAL_HEIGHT_PER_CHAR_DP * density;
+        topSpacer = new View(container.getContext());
+        bottomSpacer = new View(container.getContext());
+        scrollView.setOnScrollChangeListener(
+            (NestedScrollView.OnScrollChangeListener) (v, x, y, oldX, oldY) -> loadNearViewport());
+    }
+
+    // Shows the latest list: appends at the bottom, keeps the window when older history arrives
+    public void submit(List<ChatMessage> newMessages) {
+        if (newMessages.isEmpty()) {
+            messages = newMessages;
+            reset(0, 0, -1);
+            return;
+        }
+        int newFrom = from < to ? indexOf(newMessages, MessageTable.idAt(messages, from)) : -1;
+        int newTo = from < to ? indexOf(newMessages, MessageTable.idAt(messages, to - 1)) + 1 : 0;
+        if (newFrom < 0 || newTo <= 0 || container.indexOfChild(topSpacer) != 0) {
+            messages = newMessages;
+            reset(Math.max(0, messages.size() - PAGE_SIZE), messages.size(), -1);
+            return;
+        }
+
+        boolean atBottom = to == messages.size();
+        boolean grew = MessageTable.idAt(newMessages, newMessages.size() - 1) != MessageTable.idAt(messages, messages.size() - 1);
+        messages = newMessages;
+        if (grew && !atBottom) {
+            // A new message while reading far back: jump to it, as a short chat would
+            reset(Math.max(0, messages.size() - PAGE_SIZE), messages.size(), -1);
+            return;
+        }
+        Runnable change = () -> {
+            from = newFrom;
+            to = newTo;
+            setHeight(topSpacer, estimate(0, from));
+            if (atBottom && to < messages.size()) {
+                List<View> cards = new ArrayList<>();
+                for (int i = to; i < messages.size(); i++) {
+                    ChatMessage message = messages.get(i);
+                    cards.add(factory.createCard(message, factory.displayText(message)));
+                }
+                addCards(container.indexOfChild(bottomSpacer), cards);
+                to = messages.size();
+            }
+            setHeight(bottomSpacer, estimate(to, messages.size()));
+            evict(true);
+        };
+        if (atBottom) {
+            change.run();
+            afterLayout(this::scrollToBottom);
+        } else {
+            anchored(change);
+        }
+    }
+
+    // Scrolls to a message, loading its page first if needed; false if it isn't in the chat
+    public boolean reveal(long messageId) {
+        int index = indexOf(messages, messageId);
+        if (index < 0) {
+            return false;
+        }
+        if (index < from || index >= to) {
+            int start = Math.max(0, Math.min(index - PAGE_SIZE / 2, messages.size() - PAGE_SIZE));
+            reset(start, Math.min(messages.size(), start + PAGE_SIZE), messageId);
+            return true;
+        }
+        View card = container.findViewWithTag(messageId);
+        if (card != null) {
+            scrollView.post(() -> scrollView.smoothScrollTo(0, card.getTop()));
+        }
+        return true;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Rebuilds the window as messages[start, end), scrolled to the bottom or to scrollToId
+    private void reset(int start, int end, long scrollToId) {
+        generation++;
+        loadingBefore = false;
+        loadingAfter = false;
+        container.removeAllViews();
+        container.addView(topSpacer);
+        container.addView(bottomSpacer);
+        from = start;
+        to = end;
+        List<View> cards = new ArrayList<>();
+        for (int i = start; i < end; i++) {
+            ChatMessage message = messages.get(i);
+            cards.add(factory.createCard(message, factory.displayText(message)));
+        }
+        addCards(1, cards);
+        setHeight(topSpacer, estimate(0, from));
+        setHeight(bottomSpacer, estimate(to, messages.size()));
+        if (scrollToId < 0) {
+            scrollToBottom();
+        } else {
+            View target = container.findViewWithTag(scrollToId);
+            afterLayout(() -> {
+                if (target != null && target.getParent() == container) {
+                    scrollView.scrollTo(0, target.getTop());
+                }
+            });
+        }
+        // A short first page may leave the window edge inside the prefetch distance
+        afterLayout(this::loadNearViewport);
+    }
+
+    private void loadNearViewport() {
+        int viewport = scrollView.getHeight();
+        int prefetch = (int) (viewport * PREFETCH_SCREENS);
+        int y = scrollView.getScrollY();
+        if (from > 0 && !loadingBefore && y < topSpacer.getBottom() + prefetch) {
+            loadPage(true);
+        }
+        if (to < messages.size() && !loadingAfter && y + viewport > bottomSpacer.getTop() - prefetch) {
+            loadPage(false);
+        }
+    }
+
+    private void loadPage(boolean before) {
+        int start = before ? Math.max(0, from - PAGE_SIZE) : to;
+        int end = before ? from : Math.min(messages.size(), to + PAGE_SIZE);
+        List<ChatMessage> page = new ArrayList<>(messages.subList(start, end));
+        int loadGeneration = generation;
+        if (before) {
+            loadingBefore = true;
+        } else {
+            loadingAfter = true;
+        }
+        executor.execute(() -> {
+            List<CharSequence> texts = new ArrayList<>();
+            for (ChatMessage message : page) {
+                texts.add(precompute(factory.displayText(message)));
+            }
+            mainHandler.post(() -> {
+                if (loadGeneration != generation) {
+                    return;
+                }
+                if (before) {
+                    loadingBefore = false;
+                } else {
+                    loadingAfter = false;
+                }
+                // The list may have changed while the page was prepared; only apply if it still fits
+                int expected = before ? from - page.size() : to;
+                if (expected < 0 || expected + page.size() > messages.size()
+                        || MessageTable.idAt(messages, expected) != page.get(0).getId()) {
+                    loadNearViewport();
+                    return;
+                }
+                List<View> cards = new ArrayList<>();
+                for (int i = 0; i < page.size(); i++) {
+                    cards.add(factory.createCard(page.get(i), texts.get(i)));
+                }
+                anchored(() -> {
+                    if (before) {
+                        addCards(1, cards);
+                        from -= page.size();
+                        setHeight(topSpacer, estimate(0, from));
+                    } else {
+                        addCards(container.indexOfChild(bottomSpacer), cards);
+                        to += page.size();
+                        setHeight(bottomSpacer, estimate(to, messages.size()));
+                    }
+                    evict(!before);
+                });
+                afterLayout(ChatPager.this::loadNearViewport);
+            });
+        });
+    }
+
+    // Drops pages from the end away from where the window just grew; run inside the same anchored change
+    private void evict(boolean fromTop) {
+        int excess = (to - from) - MAX_RENDERED;
+        if (excess <= 0) {
+            return;
+        }
+        int count = (excess + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+        for (int i = 0; i < count; i++) {
+            dropCard(fromTop);
+        }
+        setHeight(topSpacer, estimate(0, from));
+        setHeight(bottomSpacer, estimate(to, messages.size()));
+    }
+
+    public long renderedBytes() {
+        return (long) (to - from) * CARD_BYTES_ESTIMATE;
+    }
+
+    // Memory pressure: drops cards more than a screen away from the viewport, keeping at least a page
+    public void trim() {
+        int viewport = scrollView.getHeight();
+        int keepTop = scrollView.getScrollY() - viewport;
+        int keepBottom = scrollView.getScrollY() + 2 * viewport;
+        anchored(() -> {
+            while (to - from > PAGE_SIZE && container.getChildAt(1).getBottom() < keepTop) {
+                dropCard(true);
+            }
+            while (to - from > PAGE_SIZE
+                    && container.getChildAt(container.indexOfChild(bottomSpacer) - 1).getTop() > keepBottom) {
+                dropCard(false);
+            }
+            setHeight(topSpacer, estimate(0, from));
+            setHeight(bottomSpacer, estimate(to, messages.size()));
+        });
+    }
+
+    private void dropCard(boolean fromTop) {
+        int index = fromTop ? 1 : container.indexOfChild(bottomSpacer) - 1;
+        View card = container.getChildAt(index);
+        record(fromTop ? from : to - 1, card);
+        container.removeViewAt(index);
+        if (fromTop) {
+            from++;
+        } else {
+            to--;
+        }
+    }
+
+    private void addCards(int index, List<View> cards) {
+        for (int i = 0; i < cards.size(); i++) {
+            container.addView(cards.get(i), index + i);
+        }
+        afterLayout(() -> {
+            for (View card : cards) {
+                Object tag = card.getTag();
+                if (card.getParent() == container && tag instanceof Long) {
+                    int position = indexOf(messages, (Long) tag);
+                    if (position >= 0) {
+                        record(position, card);
+                    }
+                }
+            }
+        });
+    }
+
+    // Runs change, then scrolls by however far the first visible card moved
+    private void anchored(Runnable change) {
+        View anchor = firstVisibleCard();
+        int anchorTop = anchor == null ? 0 : anchor.getTop();
+        change.run();
+        if (anchor == null) {
+            return;
+        }
+        afterLayout(() -> {
+            if (anchor.getParent() == container) {
+                scrollView.scrollBy(0, anchor.getTop() - anchorTop);
+            }
+        });
+    }
+
+    private View firstVisibleCard() {
+        int y = scrollView.getScrollY();
+        int last = container.indexOfChild(bottomSpacer);
+        for (int i = 1; i < last; i++) {
+            View child = container.getChildAt(i);
+            if (child.getBottom() > y) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private void afterLayout(Runnable action) {
+        container.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                container.getViewTreeObserver().removeOnPreDrawListener(this);
+                action.run();
+                return true;
+            }
+        });
+    }
+
+    private void scrollToBottom() {
+        scrollView.post(() -> scrollView.fullScroll(View.FOCUS_DOWN));
+    }
+
+    private CharSequence precompute(CharSequence text) {
+        if (textParams == null) {
+            return text;
+        }
+        try {
+            return PrecomputedTextCompat.create(text, textParams);
+        } catch (RuntimeException e) {
+            return text;
+        }
+    }
+
+    private void record(int index, View card) {
+        int height = outerHeight(card);
+        if (height <= 0) {
+            return;
+        }
+        if (measuredHeights.put(MessageTable.idAt(messages, index), height) != null) {
+            return;
+        }
+        double chars = MessageTable.textSizeAt(messages, index);
+        n++;
+        sumChars += chars;
+        sumHeight += height;
+        sumCharsSquared += chars * chars;
+        sumCharsHeight += chars * height;
+        double variance = n * sumCharsSquared - sumChars * sumChars;
+        if (n >= 4 && variance > 0) {
+            double slope = (n * sumCharsHeight - sumChars * sumHeight) / variance;
+            heightPerChar = (float) Math.max(0, slope);
+            baseHeight = (float) Math.max(0, (sumHeight - heightPerChar * sumChars) / n);
+        }
+    }
+
+    private int estimate(int start, int end) {
+        long total = 0;
+        // Column reads only; decoding every off-screen message here would defeat the table
+        for (int i = start; i < end; i++) {
+            Integer measured = measuredHeights.get(MessageTable.idAt(messages, i));
+            total += measured != null ? measured
+                : (long) (baseHeight + heightPerChar * MessageTable.textSizeAt(messages, i));
+        }
+        return (int) Math.min(Integer.MAX_VALUE, total);
+    }
+
+    private static int outerHeight(View view) {
+        int height = view.getHeight();
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        if (params instanceof ViewGroup.MarginLayoutParams) {
+            height += ((ViewGroup.MarginLayoutParams) params).topMargin
+                + ((ViewGroup.MarginLayoutParams) params).bottomMargin;
+        }
+        return height;
+    }
+
+    private static void setHeight(View spacer, int height) {
+        ViewGroup.LayoutParams params = spacer.getLayoutParams();
+        if (params == null) {
+            spacer.setLayoutParams(new LinearLayout.LayoutParams(LinearLayout.LayoutParams.MATCH_PARENT, height));
+        } else if (params.height != height) {
+            params.height = height;
+            spacer.setLayoutParams(params);
+        }
+    }
+
+    // Ids come from the clock and can go back after a clock change, so no binary search;
+    // the ids looked up sit near the end of the list
+    private static int indexOf(List<ChatMessage> list, long id) {
+        for (int i = list.size() - 1; i >= 0; i--) {
+            if (MessageTable.idAt(list, i) == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,920 @@
+package com.example.chatbot_app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.tracing.Trace;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide owner of the conversation, in-flight replies and the draft input.
+ * Activities come and go (rotation, theme changes); this outlives them, so a
+ * recreated activity re-binds to the same state instead of re-requesting.
+ *
+ * All public methods must be called on the main thread.
+ */
+public class ChatRepository {
+
+    private static final String PREFS_NAME = "ChatbotSettings";
+    private static final String DEFAULT_API_KEY = "SderZMSzs5pN6rcYptXBGOZ1llgZbqjZz3KIR8Fe";
+    private static final String CONVERSATION_FILE = "conversation.jsonl";
+    private static final String OUTBOX_FILE = "outbox.jsonl";
+    private static final String ATTACHMENT_DIR = "attachments";
+    private static final String THUMBNAIL_DIR = "thumbnails";
+    private static final String TOKEN_USAGE_FILE = "token_usage.json";
+    // Replays after a reconnect run side by side, but only this many at once
+    private static final int MAX_REPLAY_CONCURRENCY = 2;
+    private static final int SEARCH_RESULT_LIMIT = 50;
+    // Recalled snippets sent with each request
+    private static final int MEMORY_TOP_K = 3;
+    // Messages shown before the full history has been scanned
+    private static final int FIRST_PAGE_SIZE = 30;
+    // Log lines scanned per ioExecutor task while history loads (~50 ms), so saves and searches get a turn
+    private static final int HISTORY_SLICE_ROWS = 1000;
+    private static final String BATCH_DIR = "batch";
+
+    // Trace section measured by the macrobenchmark module
+    private static final String TRACE_FIRST_RESPONSE = "ChatFirstResponse";
+
+    private static ChatRepository instance;
+
+    public interface SearchListener {
+        // While indexing, the results cover only the history scanned so far; the search runs
+        // again once the whole log is indexed
+        void onSearchResults(String query, List<ChatMessage> results, boolean indexing);
+    }
+
+    private final Context context;
+    private final SharedPreferences settings;
+    private final CohereApiClient apiClient;
+    private final ApiWarmup apiWarmup;
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    // Disk writes are kept off both the main thread and the request thread
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService replayExecutor = Executors.newFixedThreadPool(MAX_REPLAY_CONCURRENCY);
+    // Embedding and summary calls can be slow; they get their own thread so they never delay a save
+    private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor();
+    private final VectorMemory vectorMemory;
+    private final ConversationCompactor compactor;
+    private final ChipPrefetcher chipPrefetcher;
+    private final ModelComparison modelComparison;
+    private final ConversationStore conversationStore;
+    // Only touched on ioExecutor
+    private final SearchIndex searchIndex = new SearchIndex();
+    // Also ioExecutor only: set while loadHistory scans the log. The index must grow in log order,
+    // so index updates for messages saved meanwhile wait in afterIndexing
+    private boolean indexing = false;
+    private final List<Runnable> afterIndexing = new ArrayList<>();
+    private String searchAfterIndexing;
+    private SearchListener searchAfterIndexingListener;
+    private final ChatOutbox chatOutbox;
+    private final ThumbnailCache thumbnailCache;
+    private final ReplyNotifier replyNotifier;
+    private final NetworkMonitor networkMonitor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // The running batch, and an interrupted one waiting to be resumed
+    private BatchJob batchJob;
+    private BatchJob unfinishedJob;
+
+    // Conversation state
+    // Columnar and append-only; rebuilt rather than edited, so published snapshots stay valid
+    private MessageTable messages = new MessageTable();
+    private final List<PendingReply> inFlightReplies = new ArrayList<>();
+    // Committed replies not yet in the conversation, in send order; mirrored to disk
+    private final List<PendingReply> outbox = new ArrayList<>();
+    // Time-based so ids stay unique across sessions without waiting for history to load
+    private long nextMessageId = System.currentTimeMillis();
+    // Leading messages that are only the newest-page preview, replaced once the full scan lands
+    private int previewCount = 0;
+    private boolean historyDiscarded = false;
+    // Until the stored history has been merged in, the conversation can't be cut back
+    private boolean historyLoading = true;
+    private boolean firstResponseTraced = false;
+    private boolean firstResponsePending = false;
+
+    // Draft input
+    private String draft = "";
+    private boolean draftHasAttachment = false;
+    // Image attached to the draft, by its ThumbnailCache hash
+    private String draftImageHash = null;
+    // Whether ChatRequestService was started for the requests now in flight
+    private boolean serviceStarted = false;
+    private int refusedServiceStarts = 0;
+
+    // Observable state
+    private final MutableLiveData<List<ChatMessage>> messagesLiveData = new MutableLiveData<>(Collections.emptyList());
+    private final MutableLiveData<Boolean> awaitingReply = new MutableLiveData<>(false);
+    private final MutableLiveData<Boolean> requestsInFlight = new MutableLiveData<>(false);
+    private final MutableLiveData<String> modelInfo;
+    private final MutableLiveData<String> unfinishedBatch = new MutableLiveData<>(null);
+
+    public static synchronized ChatRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new ChatRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ChatRepository(Context context) {
+        this.context = context;
+        settings = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        conversationStore = new ConversationStore(new File(context.getFilesDir(), CONVERSATION_FILE));
+        chatOutbox = new ChatOutbox(new File(context.getFilesDir(), OUTBOX_FILE));
+        thumbnailCache = new ThumbnailCache(new File(context.getFilesDir(), ATTACHMENT_DIR),
+            new File(context.getCacheDir(), THUMBNAIL_DIR));
+        replyNotifier = new ReplyNotifier(context);
+        networkMonitor = new NetworkMonitor(context);
+        apiClient = new CohereApiClient(CohereApiClient.DEFAULT_COHERE_URL, DEFAULT_API_KEY,
+            new TokenMeter(new File(context.getFilesDir(), TOKEN_USAGE_FILE)));
+        apiClient.setModelInfoListener(info -> mainHandler.post(() -> setModelInfo(info)));
+        apiClient.setTracer(AppTracer.INSTANCE);
+        refreshApiSettings();
+        apiWarmup = new ApiWarmup(CohereApiClient.DEFAULT_COHERE_URL);
+        vectorMemory = new VectorMemory(new File(context.getFilesDir(), "memory"), apiClient);
+        backgroundExecutor.execute(vectorMemory::load);
+        compactor = new ConversationCompactor(new File(context.getFilesDir(), "summary.json"), apiClient::summarize);
+        backgroundExecutor.execute(compactor::load);
+        chipPrefetcher = new ChipPrefetcher(context, settings, apiClient, networkMonitor);
+        modelComparison = new ModelComparison(apiClient);
+        modelInfo = new MutableLiveData<>("Model: " + apiClient.getAvailableModels()[0] + " • Ready to help");
+        registerCaches();
+        loadHistory();
+        findUnfinishedBatch();
+        networkMonitor.getOnline().observeForever(online -> {
+            if (online) {
+                replayOutbox();
+            }
+        });
+    }
+
+    // Shed by ChatApplication under memory pressure; trims run on the main thread
+    private void registerCaches() {
+        CacheRegistry registry = CacheRegistry.getInstance();
+        registry.register("Bitmap pool", CacheRegistry.TIER_SPARE, CacheRegistry.of(
+            thumbnailCache::pooledBytes, thumbnailCache::trimPool));
+        // Looked up on each call: the table is replaced when history loads or the chat is cleared
+        registry.register("Decoded message text", CacheRegistry.TIER_SPARE, CacheRegistry.of(
+            () -> messages.decodedBytes(), () -> messages.trimDecoded()));
+        registry.register("Thumbnails", CacheRegistry.TIER_DISPLAY, CacheRegistry.of(
+            thumbnailCache::cachedBytes, thumbnailCache::trimCached));
+        registry.register("Summary cache", CacheRegistry.TIER_FETCHED, CacheRegistry.of(
+            compactor::cacheBytes, compactor::trimCache));
+        registry.register("Query embeddings", CacheRegistry.TIER_FETCHED, CacheRegistry.of(
+            vectorMemory::queryCacheBytes, vectorMemory::trimQueryCache));
+        registry.register("Conversation", CacheRegistry.TIER_KEEP, CacheRegistry.of(() -> messages.sizeBytes(), () -> { }));
+        // Costly to rebuild (a full log scan, or embed calls), so never shed; listed for the diagnostics total
+        registry.register("Search index", CacheRegistry.TIER_KEEP, CacheRegistry.of(searchIndex::sizeBytes, () -> { }));
+        registry.register("Long-term memory", CacheRegistry.TIER_KEEP, CacheRegistry.of(vectorMemory::sizeBytes, () -> { }));
+    }
+
+    private void loadHistory() {
+        ioExecutor.execute(() -> {
+            // Newest page first, so a long chat opens as fast as an empty one
+            List<ChatMessage> preview = conversationStore.readTail(FIRST_PAGE_SIZE);
+            if (!preview.isEmpty()) {
+                mainHandler.post(() -> {
+                    if (historyDiscarded) {
+                        return;
+                    }
+                    for (ChatMessage message : preview) {
+                        advanceIdsPast(message.getId());
+                    }
+                    MessageTable withPreview = new MessageTable();
+                    withPreview.addAll(preview);
+                    withPreview.addAll(messages.snapshot());
+                    messages = withPreview;
+                    previewCount = preview.size();
+                    publishMessages();
+                });
+            }
+
+            indexing = true;
+            conversationStore.startScan();
+            scanHistory(new HistoryScan());
+        });
+    }
+
+    private static class HistoryScan {
+        // Straight into columns, so a long history never sits in memory as objects
+        final MessageTable loaded = new MessageTable();
+        // A reply that reached the log before a crash must not be requested again
+        final Set<String> answered = new HashSet<>();
+        long maxId = -1;
+    }
+
+    // One slice of the log per task; the next slice queues behind whatever arrived meanwhile
+    private void scanHistory(HistoryScan scan) {
+        boolean more = conversationStore.scanSlice(HISTORY_SLICE_ROWS, (offset, message) -> {
+            scan.loaded.add(message);
+            scan.maxId = Math.max(scan.maxId, message.getId());
+            searchIndex.add(offset, message.getText());
+            if (message.getRequestKey() != null) {
+                scan.answered.add(message.getRequestKey());
+            }
+        });
+        if (more) {
+            ioExecutor.execute(() -> scanHistory(scan));
+            return;
+        }
+        finishIndexing();
+
+        MessageTable loaded = scan.loaded;
+        List<PendingReply> restored = new ArrayList<>();
+        List<ChatMessage> loadedRows = loaded.snapshot();
+        Set<Long> claimed = new HashSet<>();
+        for (ChatOutbox.Entry entry : chatOutbox.load()) {
+            if (!scan.answered.contains(entry.key)) {
+                PendingReply reply = new PendingReply(entry.key, entry.prompt, entry.hasAttachment);
+                reply.userMessageId = entry.messageId >= 0
+                    ? entry.messageId : findUnclaimedPrompt(loadedRows, entry.prompt, claimed);
+                claimed.add(reply.userMessageId);
+                reply.committed = true;
+                traceStart(reply);
+                restored.add(reply);
+            }
+        }
+
+        long maxId = scan.maxId;
+        mainHandler.post(() -> {
+            advanceIdsPast(maxId);
+            if (historyDiscarded) {
+                return;
+            }
+            // Anything sent while loading is newer than the stored history
+            List<ChatMessage> sentSince = messages.snapshot();
+            loaded.addAll(sentSince.subList(previewCount, sentSince.size()));
+            messages = loaded;
+            previewCount = 0;
+            historyLoading = false;
+            outbox.addAll(0, restored);
+            persistOutbox();
+            publishMessages();
+            if (networkMonitor.isOnline()) {
+                replayOutbox();
+            }
+        });
+    }
+
+    // On ioExecutor: runs task now, or once the history scan has finished
+    private void whenIndexed(Runnable task) {
+        if (indexing) {
+            afterIndexing.add(task);
+        } else {
+            task.run();
+        }
+    }
+
+    private void finishIndexing() {
+        indexing = false;
+        for (Runnable task : afterIndexing) {
+            task.run();
+        }
+        afterIndexing.clear();
+        if (searchAfterIndexing != null) {
+            runSearch(searchAfterIndexing, searchAfterIndexingListener);
+            searchAfterIndexing = null;
+            searchAfterIndexingListener = null;
+        }
+    }
+
+    public LiveData<List<ChatMessage>> getMessages() {
+        return messagesLiveData;
+    }
+
+    public LiveData<Boolean> isAwaitingReply() {
+        return awaitingReply;
+    }
+
+    // True while any request is running; the foreground service lives exactly this long
+    public LiveData<Boolean> hasRequestsInFlight() {
+        return requestsInFlight;
+    }
+
+    public LiveData<Boolean> isOnline() {
+        return networkMonitor.getOnline();
+    }
+
+    public LiveData<String> getModelInfo() {
+        return modelInfo;
+    }
+
+    // Name of an interrupted batch that can be resumed, or null
+    public LiveData<String> getUnfinishedBatch() {
+        return unfinishedBatch;
+    }
+
+    public CohereApiClient getApiClient() {
+        return apiClient;
+    }
+
+    public ApiWarmup getApiWarmup() {
+        return apiWarmup;
+    }
+
+    // Background starts of ChatRequestService the system refused, for diagnostics
+    public int getRefusedServiceStarts() {
+        return refusedServiceStarts;
+    }
+
+    // A start refused in the background is allowed again once the app is in front
+    public void retryServiceStart() {
+        startServiceIfNeeded(Boolean.TRUE.equals(requestsInFlight.getValue()));
+    }
+
+    public String getDraft() {
+        return draft;
+    }
+
+    public boolean draftHasAttachment() {
+        return draftHasAttachment;
+    }
+
+    public void setDraft(String text, boolean hasAttachment) {
+        draft = text;
+        draftHasAttachment = hasAttachment;
+        if (!hasAttachment) {
+            draftImageHash = null;
+        }
+    }
+
+    public ThumbnailCache getThumbnailCache() {
+        return thumbnailCache;
+    }
+
+    // Attaches an image already handed to the thumbnail cache to the next message; null drops it
+    public void setDraftImageHash(String imageHash) {
+        draftImageHash = imageHash;
+    }
+
+    // Sends a user message and appends the reply when it lands; offline, it waits in the outbox
+    public void sendMessage(String text, boolean hasAttachment) {
+        chipPrefetcher.stop();
+        PendingReply reply = new PendingReply(text, hasAttachment);
+        traceStart(reply);
+        Trace.beginSection(RequestTracer.label("ChatRepository.sendMessage", reply.key));
+        try {
+            // Prefetched chip answers were fetched without context, so only an empty chat can use them
+            String prefetched = messages.isEmpty() && !hasAttachment ? chipPrefetcher.take(text) : null;
+            if (prefetched != null) {
+                reply.response = prefetched;
+            } else if (networkMonitor.isOnline()) {
+                dispatch(reply, executorService);
+            }
+            commitReply(reply, text);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    // Starts a request without adding anything to the conversation yet
+    public PendingReply requestReply(String prompt, boolean hasAttachment) {
+        chipPrefetcher.stop();
+        PendingReply reply = new PendingReply(prompt, hasAttachment);
+        traceStart(reply);
+        if (networkMonitor.isOnline()) {
+            dispatch(reply, executorService);
+        }
+        return reply;
+    }
+
+    private void dispatch(PendingReply reply, ExecutorService executor) {
+        reply.dispatched = true;
+        // Committed replies already have their user message posted; fresh ones don't yet
+        List<ChatMessage> history = reply.committed ? historyBefore(reply.prompt) : messages.snapshot();
+        executor.execute(() -> {
+            if (reply.call.isCancelled()) {
+                return;
+            }
+            refreshApiSettings();
+            Trace.beginSection(RequestTracer.label("buildPromptContext", reply.key));
+            PromptContext context;
+            try {
+                context = compactor.buildContext(history)
+                    .withDocuments(vectorMemory.recall(reply.prompt, MEMORY_TOP_K));
+            } finally {
+                Trace.endSection();
+            }
+            // Recall didn't wait for the query's embedding; have it ready if this prompt comes again
+            backgroundExecutor.execute(() -> vectorMemory.embedQuery(reply.prompt));
+            String response = apiClient.callCohereAPI(reply.prompt, reply.hasAttachment,
+                SettingsActivity.getPreferredModel(settings), context, reply.call);
+            mainHandler.post(() -> {
+                if (reply.call.isCancelled()) {
+                    return;
+                }
+                if (CohereApiClient.FALLBACK_RESPONSE.equals(response) && !networkMonitor.isOnline()) {
+                    // Network dropped mid-request: keep it queued rather than answer with an apology
+                    reply.dispatched = false;
+                    if (inFlightReplies.remove(reply)) {
+                        updateInFlight();
+                    }
+                    return;
+                }
+                reply.response = response;
+                if (reply.committed) {
+                    drainOutbox();
+                }
+            });
+        });
+    }
+
+    // Adds the user message for a pending reply; the reply follows when it lands
+    public void commitReply(PendingReply reply, String userText) {
+        String imageHash = reply.hasAttachment ? draftImageHash : null;
+        draft = "";
+        draftHasAttachment = false;
+        draftImageHash = null;
+        commitTurn(reply, userText, imageHash);
+    }
+
+    // Replaces a user message: the conversation is cut back to just before it and text is sent
+    // in its place, with the same image. Returns false if the message can't be edited now.
+    public boolean editMessage(long messageId, String text) {
+        int index = indexOf(messageId);
+        if (index < 0 || historyLoading) {
+            return false;
+        }
+        ChatMessage original = messages.snapshot().get(index);
+        if (!original.isUser()) {
+            return false;
+        }
+        chipPrefetcher.stop();
+        truncate(index, index);
+        String imageHash = original.getImageHash();
+        PendingReply reply = new PendingReply(text, imageHash != null);
+        traceStart(reply);
+        commitTurn(reply, text, imageHash);
+        return true;
+    }
+
+    // Asks again for a reply: the conversation is cut back to the user message it answered,
+    // which is sent again as is. Returns false if the message can't be regenerated now.
+    public boolean regenerateReply(long messageId) {
+        int index = indexOf(messageId);
+        if (index < 0 || historyLoading) {
+            return false;
+        }
+        List<ChatMessage> snapshot = messages.snapshot();
+        int userIndex = index;
+        while (userIndex >= 0 && !snapshot.get(userIndex).isUser()) {
+            userIndex--;
+        }
+        if (userIndex < 0) {
+            return false;
+        }
+        ChatMessage question = snapshot.get(userIndex);
+        chipPrefetcher.stop();
+        // Its reply may still be on the way; that one is superseded too
+        truncate(userIndex + 1, userIndex);
+        PendingReply reply = new PendingReply(question.getText(), question.getImageHash() != null);
+        traceStart(reply);
+        reply.userMessageId = question.getId();
+        enqueueReply(reply);
+        return true;
+    }
+
+    private void commitTurn(PendingReply reply, String userText, String imageHash) {
+        reply.userMessageId = appendMessage(userText, true, null, imageHash);
+        backgroundExecutor.execute(() -> vectorMemory.remember(userText, "You said"));
+        enqueueReply(reply);
+    }
+
+    // Queues a reply whose user message is already in the conversation
+    private void enqueueReply(PendingReply reply) {
+        if (!firstResponseTraced) {
+            firstResponseTraced = true;
+            firstResponsePending = true;
+            Trace.beginAsyncSection(TRACE_FIRST_RESPONSE, 0);
+        }
+
+        reply.committed = true;
+        outbox.add(reply);
+        persistOutbox();
+        if (reply.response != null) {
+            drainOutbox();
+            return;
+        }
+        if (!reply.dispatched && networkMonitor.isOnline()) {
+            dispatch(reply, executorService);
+        }
+        if (reply.dispatched) {
+            inFlightReplies.add(reply);
+            updateInFlight();
+        }
+    }
+
+    // Keeps the first keep messages and cancels replies still owed to the user messages at
+    // firstSuperseded and after. Positions, not ids, say what comes after the cut: ids follow
+    // the clock. The summary of older turns is kept when it still fits, so the next request
+    // reuses it instead of waiting for a new one.
+    private void truncate(int keep, int firstSuperseded) {
+        List<ChatMessage> snapshot = messages.snapshot();
+        Set<Long> supersededIds = new HashSet<>();
+        for (int i = firstSuperseded; i < snapshot.size(); i++) {
+            if (snapshot.get(i).isUser()) {
+                supersededIds.add(snapshot.get(i).getId());
+            }
+        }
+        boolean cancelled = false;
+        for (int i = outbox.size() - 1; i >= 0; i--) {
+            PendingReply reply = outbox.get(i);
+            if (supersededIds.contains(reply.userMessageId)) {
+                reply.call.cancel();
+                traceEnd(reply);
+                outbox.remove(i);
+                inFlightReplies.remove(reply);
+                cancelled = true;
+            }
+        }
+        if (cancelled) {
+            persistOutbox();
+            updateInFlight();
+        }
+        if (keep == snapshot.size()) {
+            return;
+        }
+
+        long cutId = snapshot.get(keep).getId();
+        messages = messages.prefix(keep);
+        publishMessages();
+        List<ChatMessage> kept = messages.snapshot();
+        ioExecutor.execute(() -> whenIndexed(() -> {
+            try {
+                long cut = conversationStore.truncateAt(cutId);
+                if (cut >= 0) {
+                    searchIndex.removeFrom(cut);
+                }
+            } catch (IOException e) {
+                // The dropped messages come back after a restart
+            }
+        }));
+        backgroundExecutor.execute(() -> compactor.truncate(kept));
+    }
+
+    // Id of the latest user message with text not yet claimed by another restored reply, or -1.
+    // Outbox entries from before message ids were stored only know their prompt.
+    private static long findUnclaimedPrompt(List<ChatMessage> history, String text, Set<Long> claimed) {
+        for (int i = history.size() - 1; i >= 0; i--) {
+            ChatMessage message = history.get(i);
+            if (message.isUser() && !claimed.contains(message.getId()) && message.getText().equals(text)) {
+                return message.getId();
+            }
+        }
+        return -1;
+    }
+
+    // Position of the message with id, or -1. Ids aren't assumed to be ordered: they come from
+    // the clock, which can go back between runs. Edits are near the end, so search from there.
+    private int indexOf(long messageId) {
+        List<ChatMessage> snapshot = messages.snapshot();
+        for (int i = snapshot.size() - 1; i >= 0; i--) {
+            if (MessageTable.idAt(snapshot, i) == messageId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public void cancelReply(PendingReply reply) {
+        reply.call.cancel();
+        traceEnd(reply);
+        if (outbox.remove(reply)) {
+            persistOutbox();
+        }
+        if (inFlightReplies.remove(reply)) {
+            updateInFlight();
+        }
+    }
+
+    public void clearChat() {
+        for (PendingReply reply : outbox) {
+            reply.call.cancel();
+            traceEnd(reply);
+        }
+        outbox.clear();
+        persistOutbox();
+        inFlightReplies.clear();
+        updateInFlight();
+        messages = new MessageTable();
+        // History still loading belongs to the conversation being cleared
+        previewCount = 0;
+        historyDiscarded = true;
+        historyLoading = false;
+        publishMessages();
+        ioExecutor.execute(() -> {
+            // Also abandons a history scan still under way, and whatever waited on it
+            conversationStore.clear();
+            searchIndex.clear();
+            indexing = false;
+            afterIndexing.clear();
+        });
+        backgroundExecutor.execute(vectorMemory::clear);
+        backgroundExecutor.execute(compactor::clear);
+        thumbnailCache.clear();
+    }
+
+    // Makes an attached file's text recallable in later prompts
+    public void rememberAttachment(String fileName, String text) {
+        backgroundExecutor.execute(() -> vectorMemory.remember(text, "From " + fileName));
+    }
+
+    // Full-text search over the stored conversation, newest first; only the hits are read from disk
+    public void search(String query, SearchListener listener) {
+        ioExecutor.execute(() -> {
+            runSearch(query, listener);
+            if (indexing) {
+                // Only the latest query is worth repeating
+                searchAfterIndexing = query;
+                searchAfterIndexingListener = listener;
+            }
+        });
+    }
+
+    private void runSearch(String query, SearchListener listener) {
+        List<SearchIndex.Hit> hits = searchIndex.search(query, SEARCH_RESULT_LIMIT);
+        long[] offsets = new long[hits.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = hits.get(i).offset;
+        }
+        List<ChatMessage> results = new ArrayList<>();
+        for (ChatMessage message : conversationStore.readAt(offsets)) {
+            if (message != null) {
+                results.add(message);
+            }
+        }
+        boolean partial = indexing;
+        mainHandler.post(() -> listener.onSearchResults(query, results, partial));
+    }
+
+    public void preconnect() {
+        apiWarmup.preconnect();
+    }
+
+    // Streams prompt from each model side by side; outside the conversation
+    public void compareModels(String prompt, List<String> models, ModelComparison.Listener listener) {
+        chipPrefetcher.stop();
+        refreshApiSettings();
+        modelComparison.run(prompt, models, listener);
+    }
+
+    public void cancelComparison() {
+        modelComparison.cancel();
+    }
+
+    // Runs every row of a CSV through the API; the input is copied first so the job can resume later
+    public void startBatch(String fileName, Uri uri, int parallelism, int requestsPerMinute) {
+        if (batchJob != null) {
+            return;
+        }
+        ioExecutor.execute(() -> {
+            BatchJob job;
+            try (InputStream csv = context.getContentResolver().openInputStream(uri)) {
+                if (csv == null) {
+                    throw new IOException("Unable to read " + fileName);
+                }
+                job = BatchJob.create(batchRoot(), fileName, csv, parallelism, requestsPerMinute, apiClient);
+            } catch (IOException | SecurityException e) {
+                mainHandler.post(() -> setModelInfo("Batch failed to start: " + e.getMessage()));
+                return;
+            }
+            mainHandler.post(() -> runBatch(job));
+        });
+    }
+
+    public void resumeBatch() {
+        if (batchJob == null && unfinishedJob != null) {
+            runBatch(unfinishedJob);
+        }
+    }
+
+    // Stops the running batch; it stays resumable
+    public void cancelBatch() {
+        if (batchJob != null) {
+            batchJob.cancel();
+        }
+    }
+
+    public boolean isBatchRunning() {
+        return batchJob != null;
+    }
+
+    private void runBatch(BatchJob job) {
+        chipPrefetcher.stop();
+        batchJob = job;
+        unfinishedJob = null;
+        unfinishedBatch.setValue(null);
+        updateInFlight();
+        refreshApiSettings();
+        job.start(SettingsActivity.getPreferredModel(settings), new BatchJob.Listener() {
+            @Override
+            public void onProgress(int done, int failed, int total) {
+                setModelInfo("Batch " + job.getName() + ": " + done + "/" + total
+                    + (failed > 0 ? " • " + failed + " failed" : ""));
+            }
+
+            @Override
+            public void onFinished(int succeeded, int failed, boolean cancelled) {
+                batchJob = null;
+                updateInFlight();
+                if (cancelled) {
+                    unfinishedJob = job;
+                    unfinishedBatch.setValue(job.getName());
+                    setModelInfo("Batch " + job.getName() + " paused");
+                    return;
+                }
+                appendMessage("Batch " + job.getName() + " finished: " + succeeded + " answered, " + failed
+                    + " failed.\nResults: " + job.getResultsFile().getPath(), false, null);
+            }
+        });
+    }
+
+    private void findUnfinishedBatch() {
+        ioExecutor.execute(() -> {
+            BatchJob job = BatchJob.findUnfinished(batchRoot(), apiClient);
+            if (job == null) {
+                return;
+            }
+            mainHandler.post(() -> {
+                if (batchJob == null) {
+                    unfinishedJob = job;
+                    unfinishedBatch.setValue(job.getName());
+                }
+            });
+        });
+    }
+
+    // App-specific external storage, so results can be pulled off the device; internal as a fallback
+    private File batchRoot() {
+        File external = context.getExternalFilesDir(BATCH_DIR);
+        return external != null ? external : new File(context.getFilesDir(), BATCH_DIR);
+    }
+
+    // Custom API key and token budget may have changed in settings since the last request
+    private void refreshApiSettings() {
+        String customApiKey = SettingsActivity.getCustomApiKey(settings);
+        apiClient.setApiKey(customApiKey.isEmpty() ? DEFAULT_API_KEY : customApiKey);
+        apiClient.getTokenMeter().setDailyBudget(SettingsActivity.getDailyTokenBudget(settings));
+    }
+
+    // Idle-time fetching of suggestion-chip answers; only while the chat is empty
+    public void startPrefetch() {
+        if (messages.isEmpty()) {
+            refreshApiSettings();
+            chipPrefetcher.start();
+        }
+    }
+
+    public void stopPrefetch() {
+        chipPrefetcher.stop();
+    }
+
+    // Sends everything still queued; replies are still added in send order
+    private void replayOutbox() {
+        for (PendingReply reply : outbox) {
+            if (!reply.dispatched && reply.response == null) {
+                dispatch(reply, replayExecutor);
+                inFlightReplies.add(reply);
+            }
+        }
+        updateInFlight();
+    }
+
+    // Appends every reply at the head of the outbox that has landed
+    private void drainOutbox() {
+        boolean landed = false;
+        while (!outbox.isEmpty() && outbox.get(0).response != null) {
+            PendingReply reply = outbox.remove(0);
+            inFlightReplies.remove(reply);
+            // Logged before the outbox is rewritten, so a crash in between can't cause a resend
+            appendMessage(reply.response, false, reply.key);
+            traceEnd(reply);
+            landed = true;
+
+            // Nobody is looking at the chat: announce the reply
+            if (!messagesLiveData.hasActiveObservers() && SettingsActivity.areNotificationsEnabled(settings)) {
+                replyNotifier.notifyReply(reply.response);
+            }
+        }
+        if (!landed) {
+            return;
+        }
+        persistOutbox();
+        updateInFlight();
+
+        // Summarize older turns in the background so the next request stays small
+        List<ChatMessage> snapshot = messages.snapshot();
+        backgroundExecutor.execute(() -> compactor.compactIfNeeded(snapshot));
+
+        if (firstResponsePending) {
+            firstResponsePending = false;
+            Trace.endAsyncSection(TRACE_FIRST_RESPONSE, 0);
+        }
+    }
+
+    // The conversation up to the last user message for prompt
+    private List<ChatMessage> historyBefore(String prompt) {
+        List<ChatMessage> snapshot = messages.snapshot();
+        for (int i = snapshot.size() - 1; i >= 0; i--) {
+            ChatMessage message = snapshot.get(i);
+            if (message.isUser() && message.getText().equals(prompt)) {
+                return snapshot.subList(0, i);
+            }
+        }
+        return snapshot;
+    }
+
+    private void persistOutbox() {
+        List<ChatOutbox.Entry> snapshot = new ArrayList<>();
+        for (PendingReply reply : outbox) {
+            snapshot.add(reply.toOutboxEntry());
+        }
+        ioExecutor.execute(() -> {
+            try {
+                chatOutbox.save(snapshot);
+            } catch (IOException e) {
+                // The in-memory queue still replays; it just won't survive a restart
+            }
+        });
+    }
+
+    // One ChatRequest async slice per reply, from the send until it joins the conversation
+    private static void traceStart(PendingReply reply) {
+        Trace.beginAsyncSection(AppTracer.CHAT_REQUEST, AppTracer.cookie(reply.key));
+    }
+
+    private static void traceEnd(PendingReply reply) {
+        Trace.endAsyncSection(AppTracer.CHAT_REQUEST, AppTracer.cookie(reply.key));
+    }
+
+    private void updateInFlight() {
+        boolean awaiting = !inFlightReplies.isEmpty();
+        awaitingReply.setValue(awaiting);
+        // A running batch keeps the service alive too, so it isn't killed in the background
+        boolean inFlight = awaiting || batchJob != null;
+        startServiceIfNeeded(inFlight);
+        requestsInFlight.setValue(inFlight);
+    }
+
+    // Retried on every in-flight change until it takes; the service stops itself when idle
+    private void startServiceIfNeeded(boolean inFlight) {
+        if (!inFlight) {
+            serviceStarted = false;
+            return;
+        }
+        if (serviceStarted) {
+            return;
+        }
+        serviceStarted = ChatRequestService.start(context);
+        if (!serviceStarted) {
+            refusedServiceStarts++;
+        }
+    }
+
+    private void appendMessage(String text, boolean isUser, String requestKey) {
+        appendMessage(text, isUser, requestKey, null);
+    }
+
+    // Returns the new message's id
+    private long appendMessage(String text, boolean isUser, String requestKey, String imageHash) {
+        ChatMessage message = new ChatMessage(nextMessageId++, isUser, text, System.currentTimeMillis(), requestKey,
+            imageHash);
+        messages.add(message);
+        publishMessages();
+        ioExecutor.execute(() -> {
+            try {
+                long offset = conversationStore.append(message);
+                whenIndexed(() -> searchIndex.add(offset, message.getText()));
+            } catch (IOException e) {
+                // Message stays in memory; it just won't survive a restart
+            }
+        });
+        return message.getId();
+    }
+
+    // Ids come from the clock, which may have gone back since the stored messages were written
+    private void advanceIdsPast(long id) {
+        nextMessageId = Math.max(nextMessageId, id + 1);
+    }
+
+    private void publishMessages() {
+        // A snapshot shares the columns, so publishing doesn't copy the conversation
+        messagesLiveData.setValue(messages.snapshot());
+    }
+
+    private void setModelInfo(String info) {
+        modelInfo.setValue(info);
+    }
+}
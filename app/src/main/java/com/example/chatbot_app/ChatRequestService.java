@@ -0,0 +1,71 @@
+package com.example.chatbot_app;
+
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+import android.os.IBinder;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.Observer;
+
+/**
+ * Foreground service that hosts the request engine while replies are in flight,
+ * so switching apps mid-generation doesn't get the process killed. Stops itself
+ * once the repository has nothing left in flight.
+ */
+public class ChatRequestService extends Service {
+
+    private ChatRepository repository;
+    private Observer<Boolean> inFlightObserver;
+
+    // Returns false if the system refused the start; the caller tries again later
+    public static boolean start(Context context) {
+        try {
+            ContextCompat.startForegroundService(context, new Intent(context, ChatRequestService.class));
+            return true;
+        } catch (IllegalStateException e) {
+            // Background start not allowed (Android 12+); requests still run, just without the guarantee
+            return false;
+        }
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        repository = ChatRepository.getInstance(this);
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        ReplyNotifier notifier = new ReplyNotifier(this);
+        int type = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q ? ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC : 0;
+        ServiceCompat.startForeground(this, ReplyNotifier.PROGRESS_NOTIFICATION_ID,
+            notifier.buildProgressNotification(), type);
+
+        if (inFlightObserver == null) {
+            inFlightObserver = inFlight -> {
+                if (!inFlight) {
+                    stopSelf();
+                }
+            };
+            repository.hasRequestsInFlight().observeForever(inFlightObserver);
+        }
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        if (inFlightObserver != null) {
+            repository.hasRequestsInFlight().removeObserver(inFlightObserver);
+        }
+        ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+        super.onDestroy();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+}
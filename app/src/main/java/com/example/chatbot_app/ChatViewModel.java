@@ -0,0 +1,158 @@
+package com.example.chatbot_app;
+
+import android.app.Application;
+import android.net.Uri;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import java.util.List;
+
+/**
+ * Screen-level view of the chat for MainActivity. Survives configuration changes
+ * and delegates to the process-wide ChatRepository.
+ */
+public class ChatViewModel extends AndroidViewModel {
+
+    private final ChatRepository repository;
+
+    public ChatViewModel(@NonNull Application application) {
+        super(application);
+        repository = ChatRepository.getInstance(application);
+    }
+
+    public LiveData<List<ChatMessage>> getMessages() {
+        return repository.getMessages();
+    }
+
+    public LiveData<Boolean> isAwaitingReply() {
+        return repository.isAwaitingReply();
+    }
+
+    public LiveData<Boolean> isOnline() {
+        return repository.isOnline();
+    }
+
+    public LiveData<String> getModelInfo() {
+        return repository.getModelInfo();
+    }
+
+    public LatencyStats getLatencyStats() {
+        return repository.getApiClient().getLatencyStats();
+    }
+
+    public TokenMeter getTokenMeter() {
+        return repository.getApiClient().getTokenMeter();
+    }
+
+    public MaxTokensPolicy getMaxTokensPolicy() {
+        return repository.getApiClient().getMaxTokensPolicy();
+    }
+
+    public long getWarmupMs() {
+        return repository.getApiWarmup().getWarmupMs();
+    }
+
+    public int getRefusedServiceStarts() {
+        return repository.getRefusedServiceStarts();
+    }
+
+    public void retryServiceStart() {
+        repository.retryServiceStart();
+    }
+
+    public String getDraft() {
+        return repository.getDraft();
+    }
+
+    public boolean draftHasAttachment() {
+        return repository.draftHasAttachment();
+    }
+
+    public void setDraft(String text, boolean hasAttachment) {
+        repository.setDraft(text, hasAttachment);
+    }
+
+    public void setDraftImageHash(String imageHash) {
+        repository.setDraftImageHash(imageHash);
+    }
+
+    public ThumbnailCache getThumbnailCache() {
+        return repository.getThumbnailCache();
+    }
+
+    public void sendMessage(String text, boolean hasAttachment) {
+        repository.sendMessage(text, hasAttachment);
+    }
+
+    public PendingReply requestSpeculativeReply(String prompt) {
+        return repository.requestReply(prompt, false);
+    }
+
+    public void commitSpeculativeReply(PendingReply reply, String userText) {
+        repository.commitReply(reply, userText);
+    }
+
+    public void cancelReply(PendingReply reply) {
+        repository.cancelReply(reply);
+    }
+
+    public void clearChat() {
+        repository.clearChat();
+    }
+
+    public boolean editMessage(long messageId, String text) {
+        return repository.editMessage(messageId, text);
+    }
+
+    public boolean regenerateReply(long messageId) {
+        return repository.regenerateReply(messageId);
+    }
+
+    public void rememberAttachment(String fileName, String text) {
+        repository.rememberAttachment(fileName, text);
+    }
+
+    public void search(String query, ChatRepository.SearchListener listener) {
+        repository.search(query, listener);
+    }
+
+    public void preconnect() {
+        repository.preconnect();
+    }
+
+    public void compareModels(String prompt, List<String> models, ModelComparison.Listener listener) {
+        repository.compareModels(prompt, models, listener);
+    }
+
+    public void cancelComparison() {
+        repository.cancelComparison();
+    }
+
+    public void startPrefetch() {
+        repository.startPrefetch();
+    }
+
+    public void stopPrefetch() {
+        repository.stopPrefetch();
+    }
+
+    public LiveData<String> getUnfinishedBatch() {
+        return repository.getUnfinishedBatch();
+    }
+
+    public void startBatch(String fileName, Uri uri, int parallelism, int requestsPerMinute) {
+        repository.startBatch(fileName, uri, parallelism, requestsPerMinute);
+    }
+
+    public void resumeBatch() {
+        repository.resumeBatch();
+    }
+
+    public void cancelBatch() {
+        repository.cancelBatch();
+    }
+
+    public boolean isBatchRunning() {
+        return repository.isBatchRunning();
+    }
+}
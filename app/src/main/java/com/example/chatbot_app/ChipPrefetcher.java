@@ -0,0 +1,188 @@
+package com.example.chatbot_app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.BatteryManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.Process;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Fetches answers for the suggestion chips while the welcome screen sits idle,
+ * so tapping a chip shows its answer at once. It runs only when all of these
+ * hold:
+ * - the network is unmetered;
+ * - the battery is not low and power saver is off;
+ * - the daily quota from settings is not used up.
+ *
+ * Requests go one at a time on a background-priority thread. Any real user
+ * activity cancels the request in progress. They are side calls, so they
+ * don't show up in the model info or the latency stats the chat relies on.
+ *
+ * All methods must be called on the main thread.
+ */
+public class ChipPrefetcher {
+
+    // Prompts sent by the suggestion chips on the welcome screen
+    public static final String[] CHIP_PROMPTS = {
+        "Tell me a joke",
+        "Explain quantum physics",
+        "Write a poem",
+        "Help with coding",
+        "What can you help me with?"
+    };
+
+    private static final String CACHE_PREFS = "ChipPrefetchCache";
+    // Let startup finish before spending anything
+    private static final long IDLE_DELAY_MS = 3000;
+    // Conditions not met: look again later rather than give up for the session
+    private static final long RECHECK_DELAY_MS = 60_000;
+    private static final long ANSWER_TTL_MS = 6 * 60 * 60 * 1000L;
+    private static final int MIN_BATTERY_PERCENT = 30;
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+    private final Context context;
+    private final SharedPreferences settings;
+    private final SharedPreferences cache;
+    private final CohereApiClient apiClient;
+    private final NetworkMonitor networkMonitor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "chip-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Runnable prefetchRunnable = this::prefetchNext;
+
+    private boolean active = false;
+    private ChatCall currentCall;
+
+    public ChipPrefetcher(Context context, SharedPreferences settings, CohereApiClient apiClient,
+                          NetworkMonitor networkMonitor) {
+        this.context = context;
+        this.settings = settings;
+        this.cache = context.getSharedPreferences(CACHE_PREFS, Context.MODE_PRIVATE);
+        this.apiClient = apiClient;
+        this.networkMonitor = networkMonitor;
+    }
+
+    public void start() {
+        if (active) {
+            return;
+        }
+        active = true;
+        mainHandler.postDelayed(prefetchRunnable, IDLE_DELAY_MS);
+    }
+
+    public void stop() {
+        active = false;
+        mainHandler.removeCallbacks(prefetchRunnable);
+        if (currentCall != null) {
+            currentCall.cancel();
+            currentCall = null;
+        }
+    }
+
+    // A fresh prefetched answer for prompt, or null; each answer is used once
+    public String take(String prompt) {
+        String answer = cache.getString(prompt, null);
+        long fetchedAt = cache.getLong(prompt + "#time", 0);
+        if (answer == null) {
+            return null;
+        }
+        cache.edit().remove(prompt).remove(prompt + "#time").apply();
+        return System.currentTimeMillis() - fetchedAt < ANSWER_TTL_MS ? answer : null;
+    }
+
+    private void prefetchNext() {
+        if (!active || currentCall != null) {
+            return;
+        }
+        String prompt = nextPrompt();
+        if (prompt == null) {
+            return;
+        }
+        if (!conditionsMet() || !consumeQuota()) {
+            mainHandler.postDelayed(prefetchRunnable, RECHECK_DELAY_MS);
+            return;
+        }
+
+        ChatCall call = new ChatCall(null);
+        currentCall = call;
+        String preferredModel = SettingsActivity.getPreferredModel(settings);
+        executor.execute(() -> {
+            if (call.isCancelled()) {
+                return;
+            }
+            String answer = apiClient.prefetchAnswer(prompt, preferredModel, call);
+            mainHandler.post(() -> {
+                if (currentCall == call) {
+                    currentCall = null;
+                }
+                if (call.isCancelled()) {
+                    return;
+                }
+                if (answer == null) {
+                    // Failed this time; try again later instead of giving up for the session
+                    if (active) {
+                        mainHandler.postDelayed(prefetchRunnable, RECHECK_DELAY_MS);
+                    }
+                    return;
+                }
+                cache.edit()
+                    .putString(prompt, answer)
+                    .putLong(prompt + "#time", System.currentTimeMillis())
+                    .apply();
+                if (active) {
+                    mainHandler.post(prefetchRunnable);
+                }
+            });
+        });
+    }
+
+    private String nextPrompt() {
+        long now = System.currentTimeMillis();
+        for (String prompt : CHIP_PROMPTS) {
+            if (!cache.contains(prompt) || now - cache.getLong(prompt + "#time", 0) >= ANSWER_TTL_MS) {
+                return prompt;
+            }
+        }
+        return null;
+    }
+
+    private boolean conditionsMet() {
+        if (!networkMonitor.isOnline() || !networkMonitor.isUnmetered()) {
+            return false;
+        }
+        if (apiClient.getTokenMeter().isOverBudget()) {
+            return false;
+        }
+        PowerManager powerManager = context.getSystemService(PowerManager.class);
+        if (powerManager != null && powerManager.isPowerSaveMode()) {
+            return false;
+        }
+        BatteryManager batteryManager = context.getSystemService(BatteryManager.class);
+        if (batteryManager == null || batteryManager.isCharging()) {
+            return true;
+        }
+        return batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY) >= MIN_BATTERY_PERCENT;
+    }
+
+    // Counts one prefetch against today's quota; false once it is used up
+    private boolean consumeQuota() {
+        int quota = SettingsActivity.getPrefetchQuota(settings);
+        long today = System.currentTimeMillis() / DAY_MS;
+        int used = cache.getLong("quota_day", -1) == today ? cache.getInt("quota_used", 0) : 0;
+        if (used >= quota) {
+            return false;
+        }
+        cache.edit().putLong("quota_day", today).putInt("quota_used", used + 1).apply();
+        return true;
+    }
+}
@@ -0,0 +1,637 @@
+package com.example.chatbot_app;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Blocking Cohere chat client with routed model fallback, adaptive timeouts and
+ * cancellation. Call from a background thread.
+ */
+public class CohereApiClient {
+
+    public static final String DEFAULT_COHERE_URL = "https://api.cohere.ai/v1/chat";
+    public static final String[] AVAILABLE_MODELS = {"command-r", "command-r-08-2024", "command", "command-light", "command-nightly"};
+    public static final String EMBED_URL = "https://api.cohere.ai/v1/embed";
+    public static final String EMBED_MODEL = "embed-english-light-v3.0";
+    // Cheap model for background summaries of older turns
+    public static final String SUMMARY_MODEL = "command-light";
+    private static final int SUMMARY_MAX_TOKENS = 300;
+    // Embeddings and summaries are optional extras; never let them hold up a reply for long
+    private static final int SIDE_CALL_CONNECT_TIMEOUT_MS = 2000;
+    private static final int EMBED_READ_TIMEOUT_MS = 4000;
+    private static final int SUMMARY_READ_TIMEOUT_MS = 20000;
+    private static final int PREFETCH_READ_TIMEOUT_MS = 30000;
+
+    public static final String FALLBACK_RESPONSE =
+        "I apologize, but I'm currently unable to process your request. This could be due to:\n\n" +
+        "• Network connectivity issues\n" +
+        "• API service maintenance\n" +
+        "• Model availability\n\n" +
+        "Please check your internet connection and try again in a moment.";
+
+    public static final String BUDGET_EXCEEDED_RESPONSE =
+        "Today's token budget has been used up. Raise the daily budget in Settings to keep chatting.";
+
+    public interface ModelInfoListener {
+        void onModelInfo(String info);
+    }
+
+    public interface StreamListener {
+        // Called on the calling thread with the whole answer so far
+        void onText(String textSoFar);
+    }
+
+    // Timings and billed token counts for one streamed answer
+    public static class StreamResult {
+        public final String model;
+        public final String text;
+        public final String error;
+        public final long firstTokenMs;
+        public final long totalMs;
+        public final int inputTokens;
+        public final int outputTokens;
+
+        StreamResult(String model, String text, String error, long firstTokenMs, long totalMs,
+                     int inputTokens, int outputTokens) {
+            this.model = model;
+            this.text = text;
+            this.error = error;
+            this.firstTokenMs = firstTokenMs;
+            this.totalMs = totalMs;
+            this.inputTokens = inputTokens;
+            this.outputTokens = outputTokens;
+        }
+    }
+
+    private final String cohereUrl;
+    private final String[] availableModels;
+    private final LatencyStats latencyStats = new LatencyStats();
+    private final ModelRouter modelRouter;
+    private final TokenMeter tokenMeter;
+    private final MaxTokensPolicy maxTokensPolicy = new MaxTokensPolicy();
+    private volatile String apiKey;
+    private volatile ModelInfoListener modelInfoListener;
+    private volatile RequestTracer tracer = RequestTracer.NONE;
+    private volatile boolean gzipRequests = true;
+    // Set once the chat endpoint turns a gzipped body away; cleared only by setGzipRequests()
+    private volatile boolean gzipRejected = false;
+
+    public CohereApiClient(String cohereUrl, String apiKey) {
+        this(cohereUrl, apiKey, new TokenMeter(null));
+    }
+
+    public CohereApiClient(String cohereUrl, String apiKey, TokenMeter tokenMeter) {
+        this.cohereUrl = cohereUrl;
+        this.apiKey = apiKey;
+        this.availableModels = AVAILABLE_MODELS;
+        this.modelRouter = new ModelRouter(availableModels, latencyStats);
+        this.tokenMeter = tokenMeter;
+    }
+
+    public void setApiKey(String apiKey) {
+        this.apiKey = apiKey;
+    }
+
+    public void setModelInfoListener(ModelInfoListener listener) {
+        this.modelInfoListener = listener;
+    }
+
+    public void setTracer(RequestTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    // Large chat bodies go gzipped unless this is off or the endpoint refused one
+    public void setGzipRequests(boolean enabled) {
+        gzipRequests = enabled;
+        gzipRejected = false;
+    }
+
+    public String getCohereUrl() {
+        return cohereUrl;
+    }
+
+    public String[] getAvailableModels() {
+        return availableModels;
+    }
+
+    public LatencyStats getLatencyStats() {
+        return latencyStats;
+    }
+
+    public TokenMeter getTokenMeter() {
+        return tokenMeter;
+    }
+
+    public MaxTokensPolicy getMaxTokensPolicy() {
+        return maxTokensPolicy;
+    }
+
+    // Returns "" if the call was cancelled
+    public String callCohereAPI(String userPrompt, boolean hasAttachment, String preferredModel,
+                                PromptContext context, ChatCall call) {
+        RequestTracer tracer = this.tracer;
+        tracer.beginSection(RequestTracer.label("callCohereAPI", call.getRequestKey()));
+        try {
+            return callWithFallback(userPrompt, hasAttachment, preferredModel, context, call);
+        } finally {
+            tracer.endSection();
+        }
+    }
+
+    private String callWithFallback(String userPrompt, boolean hasAttachment, String preferredModel,
+                                    PromptContext context, ChatCall call) {
+        if (tokenMeter.isOverBudget()) {
+            updateModelInfo("Daily token budget reached");
+            return BUDGET_EXCEEDED_RESPONSE;
+        }
+        // One deadline covers the whole fallback loop
+        RequestDeadline deadline = RequestDeadline.forPrompt(userPrompt.length());
+        // Sized per prompt kind so short questions don't reserve a long answer
+        int kind = MaxTokensPolicy.classify(userPrompt, hasAttachment);
+        int maxTokens = maxTokensPolicy.maxTokens(kind);
+
+        // Pick the model order for this request
+        ModelRouter.Route route = modelRouter.route(userPrompt, hasAttachment, preferredModel);
+        updateModelInfo("Model: " + route.primaryModel() + " • " + route.reason);
+
+        // Try models in routed order, falling back in case one is deprecated or failing
+        for (String model : route.order) {
+            if (call.isCancelled()) {
+                return "";
+            }
+            if (!deadline.canStartAttempt()) {
+                latencyStats.recordDeadlineExhausted();
+                break;
+            }
+            try {
+                String result = tryAPICallWithModel(userPrompt, model, context, deadline, call, kind, maxTokens);
+                if (call.isCancelled()) {
+                    return "";
+                }
+                if (!result.startsWith("API Error 404") && !result.startsWith("Exception")) {
+                    latencyStats.recordOutcome(model, !result.startsWith("API Error"));
+                    // Update model info on success
+                    String reason = model.equals(route.primaryModel()) ? route.reason : "fallback";
+                    updateModelInfo("Model: " + model + " • " + reason);
+                    return result; // Success with this model
+                }
+                latencyStats.recordOutcome(model, false);
+            } catch (Exception e) {
+                latencyStats.recordOutcome(model, false);
+                continue; // Try next model
+            }
+        }
+
+        return FALLBACK_RESPONSE;
+    }
+
+    private static JSONObject buildRequestBody(String userPrompt, String model, PromptContext context,
+                                               int maxTokens) throws JSONException {
+        JSONObject data = new JSONObject();
+        data.put("model", model);
+        data.put("message", userPrompt);
+        data.put("max_tokens", maxTokens);
+        data.put("temperature", 0.7);
+
+        // Older turns arrive as one summary, recent ones verbatim
+        JSONArray history = new JSONArray();
+        if (context.summary != null) {
+            history.put(new JSONObject().put("role", "SYSTEM")
+                .put("message", "Summary of the earlier conversation: " + context.summary));
+        }
+        for (ChatMessage turn : context.turns) {
+            history.put(new JSONObject().put("role", turn.isUser() ? "USER" : "CHATBOT")
+                .put("message", turn.getText()));
+        }
+        if (history.length() > 0) {
+            data.put("chat_history", history);
+        }
+
+        if (!context.documents.isEmpty()) {
+            // Recalled from earlier chats; Cohere grounds the reply in these
+            JSONArray docs = new JSONArray();
+            for (String snippet : context.documents) {
+                docs.put(new JSONObject().put("title", "Earlier conversation").put("snippet", snippet));
+            }
+            data.put("documents", docs);
+        }
+        return data;
+    }
+
+    // Meters billed tokens and feeds the answer length back into max_tokens sizing
+    private void recordUsage(JSONObject response, int kind, int maxTokens) {
+        int outputTokens = recordBilledUnits(response);
+        if (outputTokens <= 0) {
+            // No usage block: estimate from the text at about four characters per token
+            outputTokens = response.optString("text", "").length() / 4;
+        }
+        boolean truncated = "MAX_TOKENS".equals(response.optString("finish_reason", ""));
+        maxTokensPolicy.record(kind, outputTokens, maxTokens, truncated);
+    }
+
+    // Adds meta.billed_units to the meter; returns the output token count (0 if absent)
+    private int recordBilledUnits(JSONObject response) {
+        JSONObject meta = response == null ? null : response.optJSONObject("meta");
+        JSONObject billed = meta == null ? null : meta.optJSONObject("billed_units");
+        if (billed == null) {
+            return 0;
+        }
+        int inputTokens = billed.optInt("input_tokens", 0);
+        int outputTokens = billed.optInt("output_tokens", 0);
+        tokenMeter.record(inputTokens, outputTokens);
+        return outputTokens;
+    }
+
+    private void updateModelInfo(String info) {
+        ModelInfoListener listener = modelInfoListener;
+        if (listener != null) {
+            listener.onModelInfo(info);
+        }
+    }
+
+    private String tryAPICallWithModel(String userPrompt, String model, PromptContext context,
+                                       RequestDeadline deadline, ChatCall call, int kind, int maxTokens) {
+        long attemptStart = System.nanoTime();
+        boolean connected = false;
+        RequestTracer tracer = this.tracer;
+        tracer.beginSection(RequestTracer.label("attempt " + model, call.getRequestKey()));
+        // Phases of the attempt are sibling sections; at most one is open at a time
+        boolean phaseOpen = false;
+        try {
+            URL url = new URL(cohereUrl);
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            call.attach(connection);
+
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("Authorization", "Bearer " + apiKey);
+            if (call.getRequestKey() != null) {
+                connection.setRequestProperty("Idempotency-Key", call.getRequestKey());
+            }
+            connection.setRequestProperty("Accept-Encoding", HttpCompression.GZIP);
+            boolean gzipped = gzipRequests && !gzipRejected
+                && estimateBodyChars(userPrompt, context) >= HttpCompression.MIN_GZIP_CHARS;
+            if (gzipped) {
+                connection.setRequestProperty("Content-Encoding", HttpCompression.GZIP);
+            }
+            connection.setDoOutput(true);
+            // Chunked, so the connection doesn't buffer the whole body to learn its length
+            connection.setChunkedStreamingMode(JsonStreamWriter.BUFFER_SIZE);
+            // Timeouts follow observed latency, capped by the remaining request deadline
+            connection.setConnectTimeout(deadline.connectTimeoutMs(latencyStats));
+            connection.setReadTimeout(deadline.readTimeoutMs(latencyStats, model, userPrompt.length()));
+
+            // Create request JSON
+            phaseOpen = nextPhase(tracer, phaseOpen, "buildRequestBody");
+            JSONObject data = buildRequestBody(userPrompt, model, context, maxTokens);
+
+            // Connect first so connect latency is measured on its own
+            phaseOpen = nextPhase(tracer, phaseOpen, "connect");
+            connection.connect();
+            connected = true;
+            long connectedAt = System.nanoTime();
+            latencyStats.recordConnect((connectedAt - attemptStart) / 1_000_000L);
+
+            // Send request
+            phaseOpen = nextPhase(tracer, phaseOpen, "sendRequest");
+            long[] sent = HttpCompression.writeJson(data, connection.getOutputStream(), gzipped);
+            latencyStats.recordSent(sent[0], sent[1], (System.nanoTime() - connectedAt) / 1_000_000L);
+
+            // Read response
+            phaseOpen = nextPhase(tracer, phaseOpen, "awaitResponse");
+            int responseCode = connection.getResponseCode();
+            long responseMs = (System.nanoTime() - connectedAt) / 1_000_000L;
+            String errorBody = responseCode == HttpURLConnection.HTTP_OK ? null : readError(connection);
+            if (gzipped && rejectsGzip(responseCode, errorBody)) {
+                // The endpoint won't take compressed bodies: remember that and resend this attempt
+                // plainly, if the deadline leaves room for it. The refusal isn't a model latency.
+                gzipRejected = true;
+                connection.disconnect();
+                if (!deadline.canStartAttempt()) {
+                    return "API Error " + responseCode + ": " + errorBody;
+                }
+                return tryAPICallWithModel(userPrompt, model, context, deadline, call, kind, maxTokens);
+            }
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                // Error pages come back at their own pace; only answers size the read timeout
+                latencyStats.recordResponse(model, userPrompt.length(), responseMs);
+                phaseOpen = nextPhase(tracer, phaseOpen, "readResponse");
+                long readStart = System.nanoTime();
+                HttpCompression.ResponseBody body = HttpCompression.openResponse(connection.getInputStream(),
+                    connection.getContentEncoding());
+                BufferedReader in = new BufferedReader(new InputStreamReader(body, "utf-8"));
+                String inputLine;
+                StringBuilder response = new StringBuilder();
+
+                while ((inputLine = in.readLine()) != null) {
+                    response.append(inputLine);
+                }
+                in.close();
+                latencyStats.recordReceived(body.bodyBytes(), body.wireBytes(),
+                    (System.nanoTime() - readStart) / 1_000_000L);
+
+                // Parse JSON response
+                phaseOpen = nextPhase(tracer, phaseOpen, "parseResponse");
+                JSONObject jsonResponse = new JSONObject(response.toString());
+                recordUsage(jsonResponse, kind, maxTokens);
+                if (jsonResponse.has("text")) {
+                    return jsonResponse.getString("text").trim();
+                } else if (jsonResponse.has("message")) {
+                    return jsonResponse.getString("message").trim();
+                } else {
+                    return "Received response but couldn't parse it properly.";
+                }
+            } else {
+                latencyStats.recordErrorResponse();
+                return "API Error " + responseCode + ": " + errorBody;
+            }
+
+        } catch (SocketTimeoutException e) {
+            if (call.isCancelled()) {
+                return "Exception: cancelled";
+            }
+            long elapsedMs = (System.nanoTime() - attemptStart) / 1_000_000L;
+            if (connected) {
+                latencyStats.recordReadTimeout(elapsedMs);
+            } else {
+                latencyStats.recordConnectTimeout(elapsedMs);
+            }
+            return "Exception: " + (connected ? "read" : "connect") + " timed out after " + elapsedMs + " ms";
+        } catch (Exception e) {
+            return "Exception: " + e.getMessage();
+        } finally {
+            call.detach();
+            if (phaseOpen) {
+                tracer.endSection();
+            }
+            tracer.endSection();
+        }
+    }
+
+    // 415 says so outright; a 400 counts only when its message is about the encoding, since a
+    // gzipped body can also be turned away for reasons that a plain resend wouldn't fix
+    private static boolean rejectsGzip(int responseCode, String errorBody) {
+        if (responseCode == 415) {
+            return true;
+        }
+        if (responseCode != HttpURLConnection.HTTP_BAD_REQUEST || errorBody == null) {
+            return false;
+        }
+        String message = errorBody.toLowerCase(Locale.ROOT);
+        return message.contains("encoding") || message.contains("gzip");
+    }
+
+    private static String readError(HttpURLConnection connection) throws IOException {
+        InputStream error = connection.getErrorStream();
+        if (error == null) {
+            return "";
+        }
+        StringBuilder errorResponse = new StringBuilder();
+        try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(
+                HttpCompression.openResponse(error, connection.getContentEncoding()), "utf-8"))) {
+            String errorLine;
+            while ((errorLine = errorReader.readLine()) != null) {
+                errorResponse.append(errorLine);
+            }
+        }
+        return errorResponse.toString();
+    }
+
+    // Rough size of the request body, to decide whether it is worth compressing
+    private static int estimateBodyChars(String userPrompt, PromptContext context) {
+        long chars = userPrompt.length();
+        if (context.summary != null) {
+            chars += context.summary.length();
+        }
+        for (ChatMessage turn : context.turns) {
+            chars += turn.getText().length();
+        }
+        for (String document : context.documents) {
+            chars += document.length();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, chars);
+    }
+
+    // Ends the open phase section, if any, and begins the next
+    private static boolean nextPhase(RequestTracer tracer, boolean phaseOpen, String name) {
+        if (phaseOpen) {
+            tracer.endSection();
+        }
+        tracer.beginSection(name);
+        return true;
+    }
+
+    // Streams one model's answer without fallback; for comparing models side by side
+    public StreamResult streamChat(String userPrompt, String model, StreamListener listener, ChatCall call) {
+        RequestDeadline deadline = RequestDeadline.forPrompt(userPrompt.length());
+        long start = System.nanoTime();
+        long firstTokenMs = -1;
+        if (tokenMeter.isOverBudget()) {
+            return new StreamResult(model, "", "daily token budget reached", -1, 0, 0, 0);
+        }
+        StringBuilder text = new StringBuilder();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(cohereUrl).openConnection();
+            call.attach(connection);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("Authorization", "Bearer " + apiKey);
+            connection.setDoOutput(true);
+            connection.setChunkedStreamingMode(JsonStreamWriter.BUFFER_SIZE);
+            connection.setConnectTimeout(deadline.connectTimeoutMs(latencyStats));
+            // Between stream events, not for the whole answer
+            connection.setReadTimeout(deadline.readTimeoutMs(latencyStats, model, userPrompt.length()));
+
+            // Same fixed cap for every model, so the comparison is fair
+            JSONObject data = buildRequestBody(userPrompt, model, PromptContext.EMPTY, MaxTokensPolicy.MAX_MAX_TOKENS);
+            data.put("stream", true);
+            JsonStreamWriter.write(data, connection.getOutputStream());
+
+            int responseCode = connection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                latencyStats.recordOutcome(model, false);
+                return new StreamResult(model, "", "API Error " + responseCode, -1, elapsedMs(start), 0, 0);
+            }
+
+            // One JSON event per line
+            BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), "utf-8"));
+            int inputTokens = 0;
+            int outputTokens = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                JSONObject event = new JSONObject(line);
+                String type = event.optString("event_type", "");
+                if (type.equals("text-generation")) {
+                    if (firstTokenMs < 0) {
+                        firstTokenMs = elapsedMs(start);
+                    }
+                    text.append(event.optString("text", ""));
+                    listener.onText(text.toString());
+                } else if (type.equals("stream-end")) {
+                    JSONObject response = event.optJSONObject("response");
+                    JSONObject meta = response == null ? null : response.optJSONObject("meta");
+                    JSONObject billed = meta == null ? null : meta.optJSONObject("billed_units");
+                    if (billed != null) {
+                        inputTokens = billed.optInt("input_tokens", 0);
+                        outputTokens = billed.optInt("output_tokens", 0);
+                        tokenMeter.record(inputTokens, outputTokens);
+                    }
+                }
+            }
+            in.close();
+
+            // Not a response latency: a streamed answer's total time includes generating every token,
+            // which would stretch the read timeouts of ordinary requests
+            long totalMs = elapsedMs(start);
+            latencyStats.recordOutcome(model, true);
+            return new StreamResult(model, text.toString().trim(), null, firstTokenMs, totalMs,
+                inputTokens, outputTokens);
+        } catch (Exception e) {
+            if (!call.isCancelled()) {
+                latencyStats.recordOutcome(model, false);
+            }
+            return new StreamResult(model, text.toString(), call.isCancelled() ? "cancelled" : e.getMessage(),
+                firstTokenMs, elapsedMs(start), 0, 0);
+        } finally {
+            call.detach();
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    // One vector per text, or null if the embed endpoint can't be reached. inputType is
+    // "search_document" for stored text and "search_query" for lookups.
+    public float[][] embed(List<String> texts, String inputType) {
+        try {
+            JSONObject data = new JSONObject();
+            data.put("model", EMBED_MODEL);
+            data.put("input_type", inputType);
+            data.put("texts", new JSONArray(texts));
+
+            JSONObject response = postForJson(EMBED_URL, data, EMBED_READ_TIMEOUT_MS);
+            if (response == null) {
+                return null;
+            }
+            JSONArray embeddings = response.getJSONArray("embeddings");
+            if (embeddings.length() != texts.size()) {
+                return null;
+            }
+            float[][] vectors = new float[embeddings.length()][];
+            for (int i = 0; i < embeddings.length(); i++) {
+                JSONArray values = embeddings.getJSONArray(i);
+                vectors[i] = new float[values.length()];
+                for (int j = 0; j < values.length(); j++) {
+                    vectors[i][j] = (float) values.getDouble(j);
+                }
+            }
+            return vectors;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // Folds new turns into a running summary with the cheap model; null on failure
+    public String summarize(String previousSummary, String transcript) {
+        StringBuilder prompt = new StringBuilder(
+            "Summarize this conversation for your own later reference. Keep facts about the user, " +
+            "names, numbers, decisions and open questions. Use at most 150 words.\n\n");
+        if (previousSummary != null) {
+            prompt.append("Summary so far:\n").append(previousSummary).append("\n\n");
+        }
+        prompt.append("New turns:\n").append(transcript);
+        try {
+            JSONObject data = new JSONObject();
+            data.put("model", SUMMARY_MODEL);
+            data.put("message", prompt.toString());
+            data.put("max_tokens", SUMMARY_MAX_TOKENS);
+            data.put("temperature", 0.3);
+
+            JSONObject response = postForJson(cohereUrl, data, SUMMARY_READ_TIMEOUT_MS);
+            return response == null ? null : response.optString("text", "").trim();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // Answers prompt ahead of time for a suggestion chip; null on failure. A side call, so the
+    // model shown to the user, the latency histograms, the routing windows and max_tokens
+    // sizing are left alone, and there is no fallback to other models.
+    public String prefetchAnswer(String userPrompt, String preferredModel, ChatCall call) {
+        try {
+            String model = modelRouter.route(userPrompt, false, preferredModel).primaryModel();
+            int maxTokens = maxTokensPolicy.maxTokens(MaxTokensPolicy.classify(userPrompt, false));
+            JSONObject data = buildRequestBody(userPrompt, model, PromptContext.EMPTY, maxTokens);
+            JSONObject response = postForJson(cohereUrl, data, PREFETCH_READ_TIMEOUT_MS, call);
+            String text = response == null ? "" : response.optString("text", "").trim();
+            return text.isEmpty() ? null : text;
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    // Side calls are skipped once the daily budget is spent; callers already handle null
+    private JSONObject postForJson(String endpoint, JSONObject body, int readTimeoutMs) {
+        return postForJson(endpoint, body, readTimeoutMs, null);
+    }
+
+    // call, if given, can cancel the request
+    private JSONObject postForJson(String endpoint, JSONObject body, int readTimeoutMs, ChatCall call) {
+        if (tokenMeter.isOverBudget()) {
+            return null;
+        }
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(endpoint).openConnection();
+            if (call != null) {
+                call.attach(connection);
+            }
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("Authorization", "Bearer " + apiKey);
+            connection.setDoOutput(true);
+            connection.setChunkedStreamingMode(JsonStreamWriter.BUFFER_SIZE);
+            connection.setConnectTimeout(SIDE_CALL_CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(readTimeoutMs);
+            connection.setRequestProperty("Accept-Encoding", HttpCompression.GZIP);
+
+            JsonStreamWriter.write(body, connection.getOutputStream());
+
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                connection.disconnect();
+                return null;
+            }
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                HttpCompression.openResponse(connection.getInputStream(), connection.getContentEncoding()), "utf-8"));
+            StringBuilder response = new StringBuilder();
+            String inputLine;
+            while ((inputLine = in.readLine()) != null) {
+                response.append(inputLine);
+            }
+            in.close();
+            JSONObject json = new JSONObject(response.toString());
+            recordBilledUnits(json);
+            return json;
+        } catch (Exception e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            return null;
+        } finally {
+            if (call != null) {
+                call.detach();
+            }
+        }
+    }
+}
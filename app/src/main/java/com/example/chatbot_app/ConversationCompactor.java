@@ -0,0 +1,263 @@
+package com.example.chatbot_app;
+
+import org.json.JSONObject;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the outgoing context roughly flat over a long session. Recent turns are
+ * sent verbatim. Once the conversation passes a token threshold, older turns
+ * are folded into a rolling summary written by a cheap model, and the summary
+ * replaces them in the request.
+ *
+ * Summaries are cached per message range, and the latest one is saved to disk.
+ * When an edit cuts the conversation back, the longest cached summary that still
+ * fits is used again rather than summarizing the kept turns anew.
+ * Compaction runs in the background; requests use whatever summary exists at
+ * the time and never wait for one. Thread-safe.
+ */
+public class ConversationCompactor {
+
+    // Rough English average; close enough for budgeting
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int TOKENS_PER_TURN_OVERHEAD = 4;
+    private static final int COMPACTION_THRESHOLD_TOKENS = 2000;
+    // Kept verbatim when compacting
+    private static final int RECENT_TOKEN_BUDGET = 1000;
+    // Summarize only once this much has piled up behind the summary, not every turn
+    private static final int COMPACTION_STEP_TOKENS = 500;
+    // Hard cap on verbatim turns, in case compaction falls behind (e.g. offline)
+    private static final int MAX_VERBATIM_TOKENS = 2000;
+    private static final int SUMMARY_CACHE_SIZE = 16;
+
+    public interface Summarizer {
+        // Returns null on failure
+        String summarize(String previousSummary, String transcript);
+    }
+
+    private final File file;
+    private final Summarizer summarizer;
+
+    // Latest summary covers messages firstId..lastId of the current conversation
+    private String summary;
+    private long firstId = -1;
+    private long lastId = -1;
+
+    private final Map<String, String> cache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > SUMMARY_CACHE_SIZE;
+        }
+    };
+
+    public ConversationCompactor(File file, Summarizer summarizer) {
+        this.file = file;
+        this.summarizer = summarizer;
+    }
+
+    public synchronized void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+            JSONObject json = new JSONObject(new String(bytes, 0, read, StandardCharsets.UTF_8));
+            summary = json.getString("summary");
+            firstId = json.getLong("first");
+            lastId = json.getLong("last");
+        } catch (Exception e) {
+            summary = null;
+        }
+    }
+
+    // Context for a request whose earlier conversation is history (oldest first)
+    public synchronized PromptContext buildContext(List<ChatMessage> history) {
+        int start = 0;
+        String usableSummary = null;
+        int covered = summary != null ? coveredCount(history, firstId, lastId) : 0;
+        if (covered > 0) {
+            start = covered;
+            usableSummary = summary;
+        } else {
+            // Cut back by an edit: a summary cached for an earlier range may still fit
+            int cachedCount = cachedPrefixCount(history);
+            if (cachedCount > 0) {
+                start = cachedCount;
+                usableSummary = cache.get(prefixKey(history, cachedCount));
+            }
+        }
+        int from = history.size();
+        int tokens = 0;
+        while (from > start && tokens + estimateTokens(history.get(from - 1)) <= MAX_VERBATIM_TOKENS) {
+            from--;
+            tokens += estimateTokens(history.get(from));
+        }
+        return new PromptContext(usableSummary, new ArrayList<>(history.subList(from, history.size())),
+            new ArrayList<>());
+    }
+
+    // Call from a background thread after the conversation grows; may block on the network
+    public void compactIfNeeded(List<ChatMessage> history) {
+        String previousSummary;
+        String key;
+        int start;
+        int split;
+        synchronized (this) {
+            if (totalTokens(history, 0, history.size()) <= COMPACTION_THRESHOLD_TOKENS) {
+                return;
+            }
+            int covered = summary != null ? coveredCount(history, firstId, lastId) : 0;
+            start = covered;
+            previousSummary = covered > 0 ? summary : null;
+
+            split = history.size();
+            int recent = 0;
+            while (split > start && recent + estimateTokens(history.get(split - 1)) <= RECENT_TOKEN_BUDGET) {
+                split--;
+                recent += estimateTokens(history.get(split));
+            }
+            if (totalTokens(history, start, split) < COMPACTION_STEP_TOKENS) {
+                return;
+            }
+            key = history.get(0).getId() + "-" + history.get(split - 1).getId();
+            String cached = cache.get(key);
+            if (cached != null) {
+                apply(cached, history.get(0).getId(), history.get(split - 1).getId());
+                return;
+            }
+        }
+
+        StringBuilder transcript = new StringBuilder();
+        for (int i = start; i < split; i++) {
+            ChatMessage message = history.get(i);
+            transcript.append(message.isUser() ? "User: " : "Assistant: ").append(message.getText()).append('\n');
+        }
+        String newSummary = summarizer.summarize(previousSummary, transcript.toString());
+        if (newSummary == null || newSummary.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            cache.put(key, newSummary);
+            apply(newSummary, history.get(0).getId(), history.get(split - 1).getId());
+        }
+    }
+
+    // The conversation was cut back to history. A summary covering removed turns no longer
+    // applies; the longest cached one that still fits takes its place on disk too
+    public synchronized void truncate(List<ChatMessage> history) {
+        if (summary == null || coveredCount(history, firstId, lastId) > 0) {
+            return;
+        }
+        int cachedCount = cachedPrefixCount(history);
+        if (cachedCount > 0) {
+            apply(cache.get(prefixKey(history, cachedCount)), history.get(0).getId(),
+                history.get(cachedCount - 1).getId());
+        } else {
+            summary = null;
+            firstId = -1;
+            lastId = -1;
+            file.delete();
+        }
+    }
+
+    // Approximate heap held by cached summaries, counted as two bytes per char
+    public synchronized long cacheBytes() {
+        long bytes = 0;
+        for (Map.Entry<String, String> entry : cache.entrySet()) {
+            bytes += 2L * (entry.getKey().length() + entry.getValue().length());
+        }
+        return bytes;
+    }
+
+    // The latest summary stays; only older cached ones go
+    public synchronized void trimCache() {
+        cache.clear();
+    }
+
+    public synchronized void clear() {
+        summary = null;
+        firstId = -1;
+        lastId = -1;
+        cache.clear();
+        file.delete();
+    }
+
+    private void apply(String newSummary, long newFirstId, long newLastId) {
+        summary = newSummary;
+        firstId = newFirstId;
+        lastId = newLastId;
+        try (OutputStream out = new FileOutputStream(file)) {
+            JSONObject json = new JSONObject();
+            json.put("summary", summary);
+            json.put("first", firstId);
+            json.put("last", lastId);
+            out.write(json.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            // Recomputed after a restart
+        }
+    }
+
+    // Number of leading messages a summary of firstId..lastId stands in for; 0 if it doesn't apply
+    private int coveredCount(List<ChatMessage> history, long firstId, long lastId) {
+        if (history.isEmpty() || history.get(0).getId() != firstId) {
+            return 0;
+        }
+        // Ids can go back after a clock change, so look for lastId rather than bisect
+        for (int i = 0; i < history.size(); i++) {
+            if (MessageTable.idAt(history, i) == lastId) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    // Number of leading messages the longest fitting cached summary covers, or 0. A cached
+    // range fits only if its last message is still in history: after an edit and new turns,
+    // the history's last id can be newer than turns that the edit removed.
+    private int cachedPrefixCount(List<ChatMessage> history) {
+        if (history.isEmpty()) {
+            return 0;
+        }
+        long first = history.get(0).getId();
+        String prefix = first + "-";
+        int best = 0;
+        for (String key : cache.keySet()) {
+            if (key.startsWith(prefix)) {
+                best = Math.max(best, coveredCount(history, first, Long.parseLong(key.substring(prefix.length()))));
+            }
+        }
+        return best;
+    }
+
+    private static String prefixKey(List<ChatMessage> history, int count) {
+        return history.get(0).getId() + "-" + history.get(count - 1).getId();
+    }
+
+    private static int totalTokens(List<ChatMessage> history, int from, int to) {
+        int tokens = 0;
+        for (int i = from; i < to; i++) {
+            tokens += estimateTokens(history.get(i));
+        }
+        return tokens;
+    }
+
+    static int estimateTokens(ChatMessage message) {
+        return message.getText().length() / CHARS_PER_TOKEN + TOKENS_PER_TURN_OVERHEAD;
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.chatbot_app;
+
+import org.json.JSONObject;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Append-only JSON-lines log of the conversation on disk. One message per line,
+ * so a reply that lands while the app is in the background is kept even if the
+ * process dies right after. Not thread-safe; use from a single I/O thread.
+ *
+ * The offset of every line is recorded as it is scanned or appended, so an edit
+ * can cut the log at an exact row without reading it again.
+ *
+ * A long log can be scanned a slice at a time (startScan, scanSlice), so other
+ * work on the I/O thread runs in between. Messages appended meanwhile land past
+ * the scanned range and are recorded after it.
+ */
+public class ConversationStore {
+
+    private static final int TAIL_BLOCK_SIZE = 16 * 1024;
+    // Most lines fit in one block
+    private static final int READ_BLOCK_SIZE = 4 * 1024;
+    private static final int INITIAL_ROW_CAPACITY = 256;
+
+    private final File file;
+    // The tail is repaired once, before the first append after opening
+    private boolean tailChecked = false;
+    // Id and line offset of each message in log order, from the last scan() and later appends
+    private long[] rowIds = new long[INITIAL_ROW_CAPACITY];
+    private long[] rowOffsets = new long[INITIAL_ROW_CAPACITY];
+    private int rows = 0;
+    // The scan under way, if any: reads stop at scanEnd, the log length when it started
+    private InputStream scanInput;
+    private long scanOffset;
+    private long scanEnd;
+    private long scanLineStart;
+    private final ByteArrayOutputStream scanLine = new ByteArrayOutputStream();
+    // Id and offset of each message appended during the scan, recorded once it ends
+    private final List<long[]> appendedDuringScan = new ArrayList<>();
+
+    public ConversationStore(File file) {
+        this.file = file;
+    }
+
+    public interface Visitor {
+        // offset is the byte position of the message's line, for readAt
+        void visit(long offset, ChatMessage message);
+    }
+
+    public List<ChatMessage> loadAll() {
+        List<ChatMessage> messages = new ArrayList<>();
+        scan((offset, message) -> messages.add(message));
+        return messages;
+    }
+
+    // Streams every stored message without holding the log in memory
+    public void scan(Visitor visitor) {
+        startScan();
+        while (scanSlice(Integer.MAX_VALUE, visitor)) {
+            // Runs to the end in one slice
+        }
+    }
+
+    // Begins a scan of the log as it is now; read it with scanSlice
+    public void startScan() {
+        closeScan();
+        rows = 0;
+        appendedDuringScan.clear();
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            scanInput = new BufferedInputStream(new FileInputStream(file));
+        } catch (IOException e) {
+            return;
+        }
+        scanEnd = file.length();
+        scanOffset = 0;
+        scanLineStart = 0;
+        scanLine.reset();
+    }
+
+    // Visits up to maxRows more messages; returns false once the scan has ended
+    public boolean scanSlice(int maxRows, Visitor visitor) {
+        if (scanInput == null) {
+            return false;
+        }
+        int visited = 0;
+        try {
+            while (visited < maxRows && scanOffset < scanEnd) {
+                int b = scanInput.read();
+                if (b == -1) {
+                    break;
+                }
+                scanOffset++;
+                if (b != '\n') {
+                    scanLine.write(b);
+                    continue;
+                }
+                ChatMessage message = parse(scanLine.toString("UTF-8"));
+                if (message != null) {
+                    recordRow(message.getId(), scanLineStart);
+                    visitor.visit(scanLineStart, message);
+                    visited++;
+                }
+                scanLine.reset();
+                scanLineStart = scanOffset;
+            }
+            if (visited == maxRows && scanOffset < scanEnd) {
+                return true;
+            }
+        } catch (IOException e) {
+            // Keep whatever was read before the error
+        }
+        closeScan();
+        for (long[] row : appendedDuringScan) {
+            recordRow(row[0], row[1]);
+        }
+        appendedDuringScan.clear();
+        return false;
+    }
+
+    public boolean isScanning() {
+        return scanInput != null;
+    }
+
+    private void closeScan() {
+        if (scanInput == null) {
+            return;
+        }
+        try {
+            scanInput.close();
+        } catch (IOException e) {
+            // Only read from
+        }
+        scanInput = null;
+    }
+
+    // The newest count messages, oldest first, read backwards from the end of the log
+    public List<ChatMessage> readTail(int count) {
+        List<ChatMessage> tail = new ArrayList<>();
+        if (!file.exists()) {
+            return tail;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long end = raf.length();
+            long position = end;
+            byte[] block = new byte[TAIL_BLOCK_SIZE];
+            ByteArrayOutputStream reversed = new ByteArrayOutputStream();
+            // A last line without a newline is torn; scan() skips it too
+            boolean inLine = false;
+            while (position > 0 && tail.size() < count) {
+                int length = (int) Math.min(block.length, position);
+                position -= length;
+                raf.seek(position);
+                raf.readFully(block, 0, length);
+                for (int i = length - 1; i >= 0 && tail.size() < count; i--) {
+                    if (block[i] == '\n') {
+                        if (inLine) {
+                            addReversed(reversed, tail);
+                        }
+                        reversed.reset();
+                        inLine = true;
+                    } else if (inLine) {
+                        reversed.write(block[i]);
+                    }
+                }
+            }
+            if (position == 0 && inLine && tail.size() < count) {
+                addReversed(reversed, tail);
+            }
+        } catch (IOException e) {
+            // Fall back to whatever was read
+        }
+        Collections.reverse(tail);
+        return tail;
+    }
+
+    private static void addReversed(ByteArrayOutputStream reversed, List<ChatMessage> tail) {
+        byte[] bytes = reversed.toByteArray();
+        for (int i = 0, j = bytes.length - 1; i < j; i++, j--) {
+            byte b = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = b;
+        }
+        ChatMessage message = parse(new String(bytes, StandardCharsets.UTF_8));
+        if (message != null) {
+            tail.add(message);
+        }
+    }
+
+    // Returns null if the line at offset is missing or corrupt
+    public ChatMessage readAt(long offset) {
+        return readAt(new long[] {offset}).get(0);
+    }
+
+    // Messages at each offset, in the same order, with the file opened once; null entries
+    // for lines that are missing or corrupt
+    public List<ChatMessage> readAt(long[] offsets) {
+        List<ChatMessage> messages = new ArrayList<>(offsets.length);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] block = new byte[READ_BLOCK_SIZE];
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            for (long offset : offsets) {
+                messages.add(readLine(raf, offset, block, line));
+            }
+        } catch (IOException e) {
+            // Lines not reached stay unread
+        }
+        while (messages.size() < offsets.length) {
+            messages.add(null);
+        }
+        return messages;
+    }
+
+    // RandomAccessFile.read() is a system call per byte, so the line is read in blocks
+    private static ChatMessage readLine(RandomAccessFile raf, long offset, byte[] block,
+                                        ByteArrayOutputStream line) throws IOException {
+        raf.seek(offset);
+        line.reset();
+        int n;
+        while ((n = raf.read(block)) > 0) {
+            int end = 0;
+            while (end < n && block[end] != '\n') {
+                end++;
+            }
+            line.write(block, 0, end);
+            if (end < n) {
+                break;
+            }
+        }
+        return parse(line.toString("UTF-8"));
+    }
+
+    // Returns the byte offset the message was written at
+    public long append(ChatMessage message) throws IOException {
+        if (!tailChecked) {
+            endWithNewline(file);
+            tailChecked = true;
+        }
+        long offset = file.length();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+            writer.write(serialize(message));
+            writer.write('\n');
+        }
+        if (scanInput != null) {
+            // Past scanEnd, so the scan won't visit it; rows stay in log order
+            appendedDuringScan.add(new long[]{message.getId(), offset});
+        } else {
+            recordRow(message.getId(), offset);
+        }
+        return offset;
+    }
+
+    // Also abandons a scan under way
+    public void clear() {
+        closeScan();
+        appendedDuringScan.clear();
+        file.delete();
+        rows = 0;
+    }
+
+    // Cuts the log at the line of the message with id, dropping it and everything after.
+    // Returns the offset cut at, or -1 if the message isn't in the log (nothing is cut).
+    // Not during a scan: the rows it would search aren't all recorded yet.
+    public long truncateAt(long id) throws IOException {
+        if (scanInput != null) {
+            throw new IllegalStateException("The log is still being scanned");
+        }
+        int row = rows - 1;
+        while (row >= 0 && rowIds[row] != id) {
+            row--;
+        }
+        if (row < 0) {
+            return -1;
+        }
+        long offset = rowOffsets[row];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(offset);
+        }
+        rows = row;
+        return offset;
+    }
+
+    private void recordRow(long id, long offset) {
+        if (rows == rowIds.length) {
+            rowIds = Arrays.copyOf(rowIds, rows * 2);
+            rowOffsets = Arrays.copyOf(rowOffsets, rows * 2);
+        }
+        rowIds[rows] = id;
+        rowOffsets[rows] = offset;
+        rows++;
+    }
+
+    // A crash can leave a torn last line; start the next append on a fresh one, so the torn
+    // line is skipped on its own instead of swallowing the message written after it
+    static void endWithNewline(File file) throws IOException {
+        if (!file.exists() || file.length() == 0) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 1);
+            if (raf.read() != '\n') {
+                raf.write('\n');
+            }
+        }
+    }
+
+    static String serialize(ChatMessage message) {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("id", message.getId());
+            json.put("user", message.isUser());
+            json.put("text", message.getText());
+            json.put("ts", message.getTimestamp());
+            if (message.getRequestKey() != null) {
+                json.put("key", message.getRequestKey());
+            }
+            if (message.getImageHash() != null) {
+                json.put("img", message.getImageHash());
+            }
+            return json.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Returns null for a torn or corrupt line, e.g. after a crash mid-write
+    static ChatMessage parse(String line) {
+        try {
+            JSONObject json = new JSONObject(line);
+            return new ChatMessage(json.getLong("id"), json.getBoolean("user"),
+                json.getString("text"), json.getLong("ts"), json.optString("key", null),
+                json.optString("img", null));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
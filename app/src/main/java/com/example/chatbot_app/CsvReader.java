@@ -0,0 +1,109 @@
+package com.example.chatbot_app;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming RFC 4180 CSV reader: quoted fields, doubled quotes and line breaks
+ * inside quotes. One row is held in memory at a time.
+ */
+public class CsvReader {
+
+    private final Reader reader;
+    private int peeked = -2;
+
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    // Next row, or null at end of input
+    public List<String> readRow() throws IOException {
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> row = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    // Unterminated quote: keep what we have
+                    row.add(field.toString());
+                    return row;
+                }
+                if (c == '"') {
+                    if (peek() == '"') {
+                        read();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                row.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == -1) {
+                row.add(field.toString());
+                return row;
+            } else if (c == '\r') {
+                if (peek() == '\n') {
+                    read();
+                }
+                row.add(field.toString());
+                return row;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    // Position of each name in row (trimmed, any case), -1 where absent; null if the row names
+    // none of them and so isn't a header
+    public static int[] headerColumns(List<String> row, String... names) {
+        int[] columns = new int[names.length];
+        boolean header = false;
+        for (int n = 0; n < names.length; n++) {
+            columns[n] = -1;
+            for (int i = 0; i < row.size(); i++) {
+                if (row.get(i).trim().equalsIgnoreCase(names[n])) {
+                    columns[n] = i;
+                    header = true;
+                    break;
+                }
+            }
+        }
+        return header ? columns : null;
+    }
+
+    // Quotes a value for writing when it needs it
+    public static String escape(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private int read() throws IOException {
+        if (peeked != -2) {
+            int c = peeked;
+            peeked = -2;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = reader.read();
+        }
+        return peeked;
+    }
+}
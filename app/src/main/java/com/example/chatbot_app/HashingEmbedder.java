@@ -0,0 +1,59 @@
+package com.example.chatbot_app;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Offline text embedder: words and word pairs are hashed into a fixed number of
+ * signed buckets and the result is L2-normalized. Much weaker than a trained
+ * model, but it needs no network and shared wording still scores high.
+ */
+public final class HashingEmbedder {
+
+    public static final int DIMENSIONS = 256;
+    private static final float BIGRAM_WEIGHT = 0.5f;
+
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+        "a", "an", "and", "are", "as", "at", "be", "but", "by", "do", "for", "from", "have",
+        "i", "in", "is", "it", "me", "my", "of", "on", "or", "so", "that", "the", "this",
+        "to", "was", "what", "with", "you", "your"));
+
+    private HashingEmbedder() {
+    }
+
+    public static float[] embed(String text) {
+        float[] vector = new float[DIMENSIONS];
+        List<String> tokens = SearchIndex.tokenize(text);
+        String previous = null;
+        for (String token : tokens) {
+            if (STOP_WORDS.contains(token)) {
+                previous = null;
+                continue;
+            }
+            addFeature(vector, token, 1f);
+            if (previous != null) {
+                addFeature(vector, previous + ' ' + token, BIGRAM_WEIGHT);
+            }
+            previous = token;
+        }
+        VectorIndex.normalize(vector);
+        return vector;
+    }
+
+    private static void addFeature(float[] vector, String feature, float weight) {
+        int hash = mix(feature.hashCode());
+        // Low bits pick the bucket, the top bit the sign, so collisions tend to cancel out
+        vector[hash & (DIMENSIONS - 1)] += hash < 0 ? -weight : weight;
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
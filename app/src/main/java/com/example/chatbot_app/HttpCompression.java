@@ -0,0 +1,135 @@
+package com.example.chatbot_app;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip for request and response bodies, as streams, counting bytes on both
+ * sides of the compressor so the savings can be reported.
+ *
+ * Setting Accept-Encoding ourselves turns off the platform's transparent
+ * decompression. Responses are therefore always opened with openResponse(),
+ * which decodes them when the server compressed them.
+ */
+public final class HttpCompression {
+
+    public static final String GZIP = "gzip";
+    // Smaller bodies gain less than the gzip header and the compressor cost
+    public static final int MIN_GZIP_CHARS = 1024;
+
+    private static final int GZIP_BUFFER_SIZE = 8 * 1024;
+
+    private HttpCompression() {
+    }
+
+    // Writes body, compressed if gzip is set, and closes out; returns {body bytes, bytes on the wire}
+    public static long[] writeJson(JSONObject body, OutputStream out, boolean gzip)
+            throws IOException, JSONException {
+        CountingOutputStream wire = new CountingOutputStream(out);
+        CountingOutputStream raw = new CountingOutputStream(
+            gzip ? new GZIPOutputStream(wire, GZIP_BUFFER_SIZE) : wire);
+        JsonStreamWriter.write(body, raw);
+        return new long[] {raw.count, wire.count};
+    }
+
+    public static ResponseBody openResponse(InputStream in, String contentEncoding) throws IOException {
+        return new ResponseBody(new CountingInputStream(in), GZIP.equalsIgnoreCase(contentEncoding));
+    }
+
+    /**
+     * A response body, decoded if it arrived gzipped. Counts the decoded bytes
+     * read and the bytes that came over the wire for them.
+     */
+    public static class ResponseBody extends FilterInputStream {
+
+        private final CountingInputStream wire;
+        private long bodyBytes = 0;
+
+        private ResponseBody(CountingInputStream wire, boolean gzipped) throws IOException {
+            super(gzipped ? new GZIPInputStream(wire, GZIP_BUFFER_SIZE) : wire);
+            this.wire = wire;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                bodyBytes++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = in.read(buffer, offset, length);
+            if (n > 0) {
+                bodyBytes += n;
+            }
+            return n;
+        }
+
+        public long bodyBytes() {
+            return bodyBytes;
+        }
+
+        public long wireBytes() {
+            return wire.count;
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        // FilterOutputStream would otherwise write byte by byte
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+            count += length;
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = in.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.chatbot_app;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Writes a JSONObject to a stream as UTF-8, value by value.
+ *
+ * JSONObject.toString() builds the whole document as one String, and getBytes()
+ * then copies it again. Here the strings a request body already refers to, such
+ * as history turns and recalled documents, go through a fixed-size buffer, so the
+ * extra memory a request needs doesn't grow with the payload.
+ *
+ * The output is the same as toString()'s except that "/" is not escaped.
+ */
+public final class JsonStreamWriter {
+
+    public static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private JsonStreamWriter() {
+    }
+
+    // Writes body and closes out, which for a streaming connection sends the last chunk
+    public static void write(JSONObject body, OutputStream out) throws IOException, JSONException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            writeValue(writer, body);
+        }
+    }
+
+    private static void writeValue(Writer out, Object value) throws IOException, JSONException {
+        if (value == null || value == JSONObject.NULL) {
+            out.write("null");
+        } else if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            out.write('{');
+            Iterator<String> keys = object.keys();
+            boolean first = true;
+            while (keys.hasNext()) {
+                String key = keys.next();
+                if (!first) {
+                    out.write(',');
+                }
+                first = false;
+                writeString(out, key);
+                out.write(':');
+                writeValue(out, object.get(key));
+            }
+            out.write('}');
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            out.write('[');
+            for (int i = 0; i < array.length(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                writeValue(out, array.get(i));
+            }
+            out.write(']');
+        } else if (value instanceof Number) {
+            out.write(JSONObject.numberToString((Number) value));
+        } else if (value instanceof Boolean) {
+            out.write(value.toString());
+        } else {
+            writeString(out, value.toString());
+        }
+    }
+
+    private static void writeString(Writer out, String s) throws IOException {
+        out.write('"');
+        // Runs of plain characters go out in one call rather than char by char
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            String escape;
+            if (c == '"') {
+                escape = "\\\"";
+            } else if (c == '\\') {
+                escape = "\\\\";
+            } else if (c == '\n') {
+                escape = "\\n";
+            } else if (c == '\r') {
+                escape = "\\r";
+            } else if (c == '\t') {
+                escape = "\\t";
+            } else if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                escape = null;
+            } else {
+                continue;
+            }
+            out.write(s, start, i - start);
+            if (escape != null) {
+                out.write(escape);
+            } else {
+                out.write("\\u");
+                out.write(HEX[(c >> 12) & 0xf]);
+                out.write(HEX[(c >> 8) & 0xf]);
+                out.write(HEX[(c >> 4) & 0xf]);
+                out.write(HEX[c & 0xf]);
+            }
+            start = i + 1;
+        }
+        out.write(s, start, s.length() - start);
+        out.write('"');
+    }
+}
@@ -0,0 +1,296 @@
+package com.example.chatbot_app;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Rolling latency histograms keyed by model and prompt-size bucket, used to size
+ * per-attempt timeouts from what the API has actually been doing recently.
+ */
+public class LatencyStats {
+
+    // Prompt size buckets (characters)
+    public static final int BUCKET_SHORT = 0;
+    public static final int BUCKET_MEDIUM = 1;
+    public static final int BUCKET_LONG = 2;
+    private static final String[] BUCKET_NAMES = {"short", "medium", "long"};
+
+    // Log-scale histogram bin upper bounds in milliseconds
+    private static final long[] BIN_BOUNDS_MS = {
+        100, 200, 350, 500, 750, 1000, 1500, 2000, 3000, 4000, 5000, 7500,
+        10000, 15000, 20000, 30000, 45000, 60000, 90000, 120000
+    };
+
+    // Number of recent samples each histogram covers
+    private static final int WINDOW_SIZE = 50;
+    // Samples required before a percentile is trusted
+    private static final int MIN_SAMPLES = 5;
+    // Number of recent attempt outcomes kept per model for error rates
+    private static final int OUTCOME_WINDOW = 20;
+    // A typical initial TCP congestion window (10 segments); a body within it moves in one round trip
+    private static final long FIRST_WINDOW_BYTES = 10 * 1460;
+
+    private final Map<String, RollingHistogram> responseHistograms = new HashMap<>();
+    private final RollingHistogram connectHistogram = new RollingHistogram();
+    private final Map<String, OutcomeWindow> outcomes = new HashMap<>();
+    // End of speech to first bot output, per voice turn
+    private final RollingHistogram voiceTurnHistogram = new RollingHistogram();
+
+    // Failure diagnostics
+    private int attempts = 0;
+    private int connectTimeouts = 0;
+    private int readTimeouts = 0;
+    private int deadlineExhausted = 0;
+    private long totalTimeToFailMs = 0;
+    private int timedFailures = 0;
+
+    // Request and response bodies, before and after gzip
+    private final TransferTotals sent = new TransferTotals();
+    private final TransferTotals received = new TransferTotals();
+
+    public static int bucketFor(int promptLength) {
+        if (promptLength < 200) {
+            return BUCKET_SHORT;
+        } else if (promptLength < 2000) {
+            return BUCKET_MEDIUM;
+        }
+        return BUCKET_LONG;
+    }
+
+    public synchronized void recordConnect(long latencyMs) {
+        connectHistogram.add(latencyMs);
+    }
+
+    public synchronized void recordResponse(String model, int promptLength, long latencyMs) {
+        attempts++;
+        histogramFor(model, bucketFor(promptLength)).add(latencyMs);
+    }
+
+    // A status other than 200: an attempt, but not a latency sample
+    public synchronized void recordErrorResponse() {
+        attempts++;
+    }
+
+    public synchronized void recordConnectTimeout(long elapsedMs) {
+        attempts++;
+        connectTimeouts++;
+        recordTimeToFail(elapsedMs);
+    }
+
+    public synchronized void recordReadTimeout(long elapsedMs) {
+        attempts++;
+        readTimeouts++;
+        recordTimeToFail(elapsedMs);
+    }
+
+    public synchronized void recordVoiceTurn(long latencyMs) {
+        voiceTurnHistogram.add(latencyMs);
+    }
+
+    public synchronized void recordOutcome(String model, boolean success) {
+        OutcomeWindow window = outcomes.get(model);
+        if (window == null) {
+            window = new OutcomeWindow();
+            outcomes.put(model, window);
+        }
+        window.add(success);
+    }
+
+    // Fraction of recent attempts on this model that failed, 0 if unknown
+    public synchronized double errorRate(String model) {
+        OutcomeWindow window = outcomes.get(model);
+        return window != null ? window.errorRate() : 0;
+    }
+
+    public synchronized int outcomeCount(String model) {
+        OutcomeWindow window = outcomes.get(model);
+        return window != null ? window.count : 0;
+    }
+
+    public synchronized void recordSent(long bodyBytes, long wireBytes, long transferMs) {
+        sent.add(bodyBytes, wireBytes, transferMs);
+    }
+
+    public synchronized void recordReceived(long bodyBytes, long wireBytes, long transferMs) {
+        received.add(bodyBytes, wireBytes, transferMs);
+    }
+
+    public synchronized String describeTransfers() {
+        StringBuilder sb = new StringBuilder();
+        sent.describe(sb, "Sent");
+        received.describe(sb, "Received");
+        return sb.toString();
+    }
+
+    public synchronized void recordDeadlineExhausted() {
+        deadlineExhausted++;
+    }
+
+    private void recordTimeToFail(long elapsedMs) {
+        totalTimeToFailMs += elapsedMs;
+        timedFailures++;
+    }
+
+    // Returns the given percentile in ms, or -1 if there are not enough samples yet
+    public synchronized long responsePercentile(String model, int promptLength, double percentile) {
+        RollingHistogram histogram = responseHistograms.get(key(model, bucketFor(promptLength)));
+        return histogram != null ? histogram.percentile(percentile) : -1;
+    }
+
+    public synchronized long connectPercentile(double percentile) {
+        return connectHistogram.percentile(percentile);
+    }
+
+    public synchronized String describe() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Attempts: ").append(attempts).append('\n');
+        sb.append("Connect timeouts: ").append(connectTimeouts).append('\n');
+        sb.append("Read timeouts: ").append(readTimeouts).append('\n');
+        sb.append("Deadline exhausted: ").append(deadlineExhausted).append('\n');
+        if (timedFailures > 0) {
+            sb.append("Mean time to fail: ").append(totalTimeToFailMs / timedFailures).append(" ms\n");
+        }
+        long connectP95 = connectHistogram.percentile(0.95);
+        if (connectP95 >= 0) {
+            sb.append("Connect p95: ").append(connectP95).append(" ms\n");
+        }
+        for (Map.Entry<String, RollingHistogram> entry : responseHistograms.entrySet()) {
+            RollingHistogram histogram = entry.getValue();
+            // Too few samples for a percentile yet
+            if (histogram.percentile(0.5) < 0) {
+                continue;
+            }
+            sb.append(String.format(Locale.US, "%s: p50 %d ms, p95 %d ms (%d samples)\n",
+                entry.getKey(), histogram.percentile(0.5), histogram.percentile(0.95), histogram.size()));
+        }
+        if (voiceTurnHistogram.percentile(0.5) >= 0) {
+            sb.append(String.format(Locale.US, "Voice turn: p50 %d ms, p95 %d ms (%d turns)\n",
+                voiceTurnHistogram.percentile(0.5), voiceTurnHistogram.percentile(0.95), voiceTurnHistogram.size()));
+        }
+        sb.append(describeTransfers());
+        for (Map.Entry<String, OutcomeWindow> entry : outcomes.entrySet()) {
+            sb.append(String.format(Locale.US, "%s errors: %.0f%% of last %d\n",
+                entry.getKey(), entry.getValue().errorRate() * 100, entry.getValue().count));
+        }
+        return sb.toString().trim();
+    }
+
+    private RollingHistogram histogramFor(String model, int bucket) {
+        String key = key(model, bucket);
+        RollingHistogram histogram = responseHistograms.get(key);
+        if (histogram == null) {
+            histogram = new RollingHistogram();
+            responseHistograms.put(key, histogram);
+        }
+        return histogram;
+    }
+
+    private static String key(String model, int bucket) {
+        return model + "/" + BUCKET_NAMES[bucket];
+    }
+
+    private static int binFor(long latencyMs) {
+        for (int i = 0; i < BIN_BOUNDS_MS.length; i++) {
+            if (latencyMs <= BIN_BOUNDS_MS[i]) {
+                return i;
+            }
+        }
+        return BIN_BOUNDS_MS.length - 1;
+    }
+
+    // Bodies moved in one direction. Time saved is estimated per transfer: the bytes gzip removed,
+    // at the rate the compressed bytes actually moved. Bytes inside the first congestion window
+    // cost no extra round trip, so shrinking a small body saves no time
+    private static class TransferTotals {
+        private int count = 0;
+        private long bodyBytes = 0;
+        private long wireBytes = 0;
+        private double savedMs = 0;
+
+        void add(long body, long wire, long transferMs) {
+            count++;
+            bodyBytes += body;
+            wireBytes += wire;
+            long floor = Math.max(wire, FIRST_WINDOW_BYTES);
+            if (body > floor) {
+                savedMs += (double) (body - floor) * transferMs / floor;
+            }
+        }
+
+        void describe(StringBuilder sb, String label) {
+            if (count == 0 || bodyBytes == 0) {
+                return;
+            }
+            sb.append(String.format(Locale.US, "%s: %d bodies, %.1f KB as %.1f KB on the wire (%.0f%%), ~%d ms saved\n",
+                label, count, bodyBytes / 1024.0, wireBytes / 1024.0, wireBytes * 100.0 / bodyBytes,
+                Math.round(savedMs)));
+        }
+    }
+
+    // Success/failure ring over the last OUTCOME_WINDOW attempts
+    private static class OutcomeWindow {
+        private final boolean[] failures = new boolean[OUTCOME_WINDOW];
+        private int next = 0;
+        private int count = 0;
+        private int failureCount = 0;
+
+        void add(boolean success) {
+            if (count == OUTCOME_WINDOW) {
+                if (failures[next]) {
+                    failureCount--;
+                }
+            } else {
+                count++;
+            }
+            failures[next] = !success;
+            if (!success) {
+                failureCount++;
+            }
+            next = (next + 1) % OUTCOME_WINDOW;
+        }
+
+        double errorRate() {
+            return count == 0 ? 0 : (double) failureCount / count;
+        }
+    }
+
+    // Histogram over the last WINDOW_SIZE samples; evicted samples leave their bin
+    private static class RollingHistogram {
+        private final int[] binCounts = new int[BIN_BOUNDS_MS.length];
+        private final int[] window = new int[WINDOW_SIZE];
+        private int next = 0;
+        private int count = 0;
+
+        void add(long latencyMs) {
+            int bin = binFor(latencyMs);
+            if (count == WINDOW_SIZE) {
+                binCounts[window[next]]--;
+            } else {
+                count++;
+            }
+            window[next] = bin;
+            binCounts[bin]++;
+            next = (next + 1) % WINDOW_SIZE;
+        }
+
+        int size() {
+            return count;
+        }
+
+        long percentile(double percentile) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            int target = (int) Math.ceil(percentile * count);
+            int seen = 0;
+            for (int i = 0; i < binCounts.length; i++) {
+                seen += binCounts[i];
+                if (seen >= target) {
+                    return BIN_BOUNDS_MS[i];
+                }
+            }
+            return BIN_BOUNDS_MS[BIN_BOUNDS_MS.length - 1];
+        }
+    }
+}
@@ -1,20 +1,39 @@
 package com.example.chatbot_app;
 
+import android.Manifest;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.graphics.Bitmap;
+import android.content.pm.PackageManager;
 import android.graphics.Color;
+import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
+import android.text.Editable;
+import android.text.InputType;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.TextWatcher;
+import android.text.style.BackgroundColorSpan;
+import android.text.style.StyleSpan;
+import android.util.Base64;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.inputmethod.EditorInfo;
 import android.widget.*;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
+import androidx.core.text.PrecomputedTextCompat;
 import androidx.core.widget.NestedScrollView;
+import androidx.core.widget.TextViewCompat;
+import androidx.tracing.Trace;
+import androidx.lifecycle.ViewModelProvider;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.card.MaterialCardView;
@@ -24,15 +43,15 @@ import com.google.android.material.floatingactionbutton.ExtendedFloatingActionBu
 import com.google.android.material.progressindicator.CircularProgressIndicator;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.textfield.TextInputEditText;
-import org.json.JSONObject;
-import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
 
 public class MainActivity extends AppCompatActivity implements 
     AttachmentHandler.AttachmentCallback, 
@@ -46,6 +65,7 @@ public class MainActivity extends AppCompatActivity implements
     private ImageButton voiceButton;
     private ImageButton menuButton;
     private LinearLayout chatContainer;
+    private LinearLayout comparisonContainer;
     private NestedScrollView scrollView;
     private MaterialCardView welcomeCard;
     private CircularProgressIndicator typingIndicator;
@@ -61,22 +81,61 @@ public class MainActivity extends AppCompatActivity implements
     private AttachmentHandler attachmentHandler;
     private VoiceInputHandler voiceInputHandler;
     
-    // API Configuration
-    private String apiKey = "SderZMSzs5pN6rcYptXBGOZ1llgZbqjZz3KIR8Fe";
-    private String cohereUrl = "https://api.cohere.ai/v1/chat";
-    private String[] availableModels = {"command-r", "command-r-08-2024", "command", "command-light", "command-nightly"};
+    // Conversation state lives in the ViewModel so it survives recreation
+    private ChatViewModel viewModel;
+    private int renderedMessageCount = 0;
+    private long renderedLastId = -1;
+    // Renders only the part of a long chat near the viewport
+    private ChatPager chatPager;
+    
+    // Speculative voice send: start the request once partial results stop changing
+    private static final long PARTIAL_STABLE_MS = 600;
+    private static final int MIN_SPECULATIVE_WORDS = 2;
+    private String lastPartialText = "";
+    private PendingReply speculativeRequest;
+    private int speculativeHits = 0;
+    private int speculativeMisses = 0;
+    private final Runnable speculateRunnable = this::startSpeculativeRequest;
     
     // Threading
-    private ExecutorService executorService;
     private Handler mainHandler;
     
     // Settings
     private SharedPreferences settings;
     private static final String PREFS_NAME = "ChatbotSettings";
     
+    // Cached settings, refreshed in onResume
+    private boolean voiceInputEnabled = true;
+    private boolean autoSendEnabled = false;
+    private boolean continuousVoiceEnabled = false;
+    
+    // Hands-free conversation loop
+    private static final long REARM_DELAY_MS = 250;
+    private static final int MAX_SILENT_REARMS = 3;
+    private boolean continuousConversation = false;
+    private int silentRearms = 0;
+    private long voiceTurnStartMs = -1;
+    private final Runnable rearmRunnable = this::rearmVoiceInput;
+    
     // State
     private boolean isVoiceRecording = false;
-    private int messageCount = 0;
+    private boolean hasPendingAttachment = false;
+    
+    // Reply notifications (Android 13+ needs a runtime grant)
+    private ActivityResultLauncher<String> notificationPermissionLauncher;
+    private boolean notificationPermissionAsked = false;
+    
+    // Search results are refreshed this long after the last keystroke
+    private static final long SEARCH_DEBOUNCE_MS = 150;
+    private static final int SEARCH_SNIPPET_CONTEXT = 60;
+    
+    // Model comparison
+    private static final int COMPARE_DEFAULT_MODELS = 4;
+    private static final int COMPARE_CARD_WIDTH_DP = 280;
+    
+    // Image attachments show as a square thumbnail in their bubble
+    private static final int THUMBNAIL_DP = 160;
+    private static final String CHAT_VIEW_CACHE = "Chat view window";
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -90,28 +149,42 @@ public class MainActivity extends AppCompatActivity implements
         getWindow().setStatusBarColor(android.graphics.Color.TRANSPARENT);
         
         setContentView(R.layout.activity_main);
+        // Debug builds time every frame and flag main-thread I/O; a no-op in release
+        JankMonitor.install(this);
 
         // Initialize components
         initializeComponents();
         initializeUI();
         setupEventListeners();
-        loadSettings();
+        
+        // Re-bind to existing conversation state
+        observeViewModel();
         
         // Show welcome message
         showWelcomeMessage();
+        
+        // Warm up DNS and TLS to the API host once the first frame is up
+        if (welcomeCard.getVisibility() == View.VISIBLE) {
+            welcomeCard.post(viewModel::preconnect);
+        }
     }
     
     private void initializeComponents() {
         // Initialize threading
-        executorService = Executors.newSingleThreadExecutor();
         mainHandler = new Handler(Looper.getMainLooper());
         
+        // Initialize view model
+        viewModel = new ViewModelProvider(this).get(ChatViewModel.class);
+        
         // Initialize settings
         settings = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
         
-        // Initialize handlers
+        // Initialize handlers; these only register result launchers here, which must
+        // happen before the activity starts. Heavier setup waits for first use.
         attachmentHandler = new AttachmentHandler(this, this);
         voiceInputHandler = new VoiceInputHandler(this, this);
+        notificationPermissionLauncher = registerForActivityResult(
+            new ActivityResultContracts.RequestPermission(), granted -> { });
     }
     
     private void initializeUI() {
@@ -123,6 +196,7 @@ public class MainActivity extends AppCompatActivity implements
         voiceButton = findViewById(R.id.voiceButton);
         menuButton = findViewById(R.id.menuButton);
         chatContainer = findViewById(R.id.chatContainer);
+        comparisonContainer = findViewById(R.id.comparisonContainer);
         scrollView = findViewById(R.id.scrollView);
         welcomeCard = findViewById(R.id.welcomeCard);
         typingIndicator = findViewById(R.id.typingIndicator);
@@ -167,71 +241,227 @@ public class MainActivity extends AppCompatActivity implements
             return false;
         });
         
+        // Keep the draft in the view model
+        userInput.setText(viewModel.getDraft());
+        hasPendingAttachment = viewModel.draftHasAttachment();
+        userInput.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+            
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+            
+            @Override
+            public void afterTextChanged(Editable s) {
+                viewModel.setDraft(s.toString(), hasPendingAttachment);
+                // The user is about to send something real; idle work gets out of the way
+                if (s.length() > 0) {
+                    viewModel.stopPrefetch();
+                }
+            }
+        });
+        
         // Suggestion chips
         setupSuggestionChips();
     }
     
+    private void observeViewModel() {
+        chatPager = new ChatPager(scrollView, chatContainer, new ChatPager.CardFactory() {
+            @Override
+            public CharSequence displayText(ChatMessage message) {
+                return cleanMessageText(message);
+            }
+            
+            @Override
+            public View createCard(ChatMessage message, CharSequence text) {
+                return createMessageCard(message, text);
+            }
+        }, messageTextParams());
+        CacheRegistry.getInstance().register(CHAT_VIEW_CACHE, CacheRegistry.TIER_DISPLAY,
+            CacheRegistry.of(chatPager::renderedBytes, chatPager::trim));
+        viewModel.getMessages().observe(this, this::renderMessages);
+        
+        viewModel.isAwaitingReply().observe(this, awaiting -> {
+            if (awaiting) {
+                showTypingIndicator();
+            } else {
+                hideTypingIndicator();
+            }
+        });
+        
+        viewModel.getModelInfo().observe(this, info -> modelInfoText.setText(info));
+        
+        viewModel.isOnline().observe(this, online -> {
+            if (typingIndicator.getVisibility() != View.VISIBLE && !isVoiceRecording) {
+                statusText.setText(idleStatus());
+            }
+        });
+        
+        viewModel.getUnfinishedBatch().observe(this, name -> {
+            if (name != null) {
+                Snackbar.make(findViewById(R.id.snackbarContainer), "Batch " + name + " was interrupted", Snackbar.LENGTH_INDEFINITE)
+                    .setAction("Resume", v -> viewModel.resumeBatch())
+                    .show();
+            }
+        });
+    }
+    
+    // Offline messages wait in the outbox and send on reconnect
+    private String idleStatus() {
+        return Boolean.FALSE.equals(viewModel.isOnline().getValue())
+            ? "Offline • messages will send when connected" : "Online";
+    }
+    
+    // Appends bubbles for messages not yet on screen; a fresh activity renders them all
+    private void renderMessages(List<ChatMessage> messages) {
+        JankMonitor.operation(JankMonitor.OP_RENDER);
+        Trace.beginSection("MainActivity.renderMessages");
+        try {
+            bindMessages(messages);
+        } finally {
+            Trace.endSection();
+        }
+    }
+    
+    private void bindMessages(List<ChatMessage> messages) {
+        long lastId = messages.isEmpty() ? -1 : messages.get(messages.size() - 1).getId();
+        boolean rebinding = renderedMessageCount == 0;
+        boolean botReplyArrived = lastId != renderedLastId && !messages.isEmpty()
+            && !messages.get(messages.size() - 1).isUser();
+        chatPager.submit(messages);
+        renderedMessageCount = messages.size();
+        renderedLastId = lastId;
+        
+        if (messages.isEmpty()) {
+            welcomeCard.setVisibility(View.VISIBLE);
+            quickActionsFab.setVisibility(View.GONE);
+            startPrefetchIfIdle();
+        } else {
+            welcomeCard.setVisibility(View.GONE);
+            quickActionsFab.setVisibility(View.VISIBLE);
+            viewModel.stopPrefetch();
+        }
+        
+        if (botReplyArrived && !rebinding) {
+            onBotReplyShown();
+        }
+    }
+    
     private void setupSuggestionChips() {
         chipSuggestion1.setOnClickListener(v -> {
-            userInput.setText("Tell me a joke");
+            userInput.setText(ChipPrefetcher.CHIP_PROMPTS[0]);
             sendMessage();
         });
         
         chipSuggestion2.setOnClickListener(v -> {
-            userInput.setText("Explain quantum physics");
+            userInput.setText(ChipPrefetcher.CHIP_PROMPTS[1]);
             sendMessage();
         });
         
         chipSuggestion3.setOnClickListener(v -> {
-            userInput.setText("Write a poem");
+            userInput.setText(ChipPrefetcher.CHIP_PROMPTS[2]);
             sendMessage();
         });
         
         chipSuggestion4.setOnClickListener(v -> {
-            userInput.setText("Help with coding");
+            userInput.setText(ChipPrefetcher.CHIP_PROMPTS[3]);
             sendMessage();
         });
         
         chipHelp.setOnClickListener(v -> {
-            userInput.setText("What can you help me with?");
+            userInput.setText(ChipPrefetcher.CHIP_PROMPTS[4]);
             sendMessage();
         });
         
         chipExamples.setOnClickListener(v -> showExamplesDialog());
     }
     
-    private void loadSettings() {
-        // Load custom API key if available
-        String customApiKey = SettingsActivity.getCustomApiKey(settings);
-        if (!customApiKey.isEmpty()) {
-            apiKey = customApiKey;
+    @Override
+    protected void onResume() {
+        super.onResume();
+        loadSettings();
+        viewModel.retryServiceStart();
+        if (welcomeCard.getVisibility() == View.VISIBLE) {
+            startPrefetchIfIdle();
         }
-        
+    }
+    
+    @Override
+    protected void onPause() {
+        super.onPause();
+        viewModel.stopPrefetch();
+        JankMonitor.flush();
+    }
+    
+    // Suggestion-chip answers are fetched only while the welcome screen sits untouched
+    private void startPrefetchIfIdle() {
+        if (userInput.getText() == null || userInput.getText().length() == 0) {
+            viewModel.startPrefetch();
+        }
+    }
+    
+    private void loadSettings() {
         // Apply text size setting
         float textSize = SettingsActivity.getTextSize(settings);
         userInput.setTextSize(textSize);
+        
+        // Voice settings are read here once instead of on every tap and callback
+        voiceInputEnabled = SettingsActivity.isVoiceInputEnabled(settings);
+        autoSendEnabled = SettingsActivity.isAutoSendEnabled(settings);
+        continuousVoiceEnabled = SettingsActivity.isContinuousVoiceEnabled(settings);
+        if (!continuousVoiceEnabled) {
+            continuousConversation = false;
+        }
     }
     
     private void showWelcomeMessage() {
-        if (messageCount == 0) {
+        if (renderedMessageCount == 0) {
             welcomeCard.setVisibility(View.VISIBLE);
         }
     }
 
     // Voice Input Methods
     private void toggleVoiceInput() {
-        if (!SettingsActivity.isVoiceInputEnabled(settings)) {
+        JankMonitor.operation(JankMonitor.OP_VOICE);
+        if (!voiceInputEnabled) {
             Toast.makeText(this, "Voice input is disabled in settings", Toast.LENGTH_SHORT).show();
             return;
         }
         
+        if (continuousConversation) {
+            // Tapping during a hands-free session ends it
+            stopContinuousConversation();
+            return;
+        }
+        
         if (isVoiceRecording) {
             voiceInputHandler.stopVoiceInput();
         } else {
+            continuousConversation = continuousVoiceEnabled;
+            silentRearms = 0;
+            voiceInputHandler.startVoiceInput();
+        }
+    }
+    
+    private void stopContinuousConversation() {
+        continuousConversation = false;
+        mainHandler.removeCallbacks(rearmRunnable);
+        voiceInputHandler.stopVoiceInput();
+        showSnackbar("Hands-free conversation ended", Snackbar.LENGTH_SHORT);
+    }
+    
+    private void rearmVoiceInput() {
+        if (continuousConversation && !isVoiceRecording && !isFinishing()) {
             voiceInputHandler.startVoiceInput();
         }
     }
     
+    private boolean shouldAutoSendVoice() {
+        return autoSendEnabled || continuousConversation;
+    }
+    
     @Override
     public void onVoiceInputStarted() {
         runOnUiThread(() -> {
@@ -243,11 +473,51 @@ public class MainActivity extends AppCompatActivity implements
         });
     }
     
+    @Override
+    public void onVoiceInputPartialResult(String text) {
+        runOnUiThread(() -> {
+            // Show the live transcript
+            userInput.setText(text);
+            userInput.setSelection(text.length());
+            
+            if (!shouldAutoSendVoice() || text.equals(lastPartialText)) {
+                return;
+            }
+            lastPartialText = text;
+            
+            // Transcript moved on from what we speculated on
+            if (speculativeRequest != null && !sameTranscript(speculativeRequest.getPrompt(), text)) {
+                cancelSpeculativeRequest();
+            }
+            mainHandler.removeCallbacks(speculateRunnable);
+            mainHandler.postDelayed(speculateRunnable, PARTIAL_STABLE_MS);
+        });
+    }
+    
     @Override
     public void onVoiceInputResult(String text) {
         runOnUiThread(() -> {
+            mainHandler.removeCallbacks(speculateRunnable);
+            lastPartialText = "";
+            silentRearms = 0;
             userInput.setText(text);
-            if (SettingsActivity.isAutoSendEnabled(settings)) {
+            if (!shouldAutoSendVoice()) {
+                cancelSpeculativeRequest();
+                return;
+            }
+            
+            // Turn latency runs from end of speech until the reply shows up
+            long endOfSpeech = voiceInputHandler.getEndOfSpeechMs();
+            voiceTurnStartMs = endOfSpeech >= 0 ? endOfSpeech : SystemClock.elapsedRealtime();
+            
+            if (speculativeRequest != null && sameTranscript(speculativeRequest.getPrompt(), text)) {
+                commitSpeculativeRequest(text);
+            } else {
+                // Final transcript differs: drop the speculative reply and send the real one
+                if (speculativeRequest != null) {
+                    speculativeMisses++;
+                }
+                cancelSpeculativeRequest();
                 sendMessage();
             }
         });
@@ -256,23 +526,99 @@ public class MainActivity extends AppCompatActivity implements
     @Override
     public void onVoiceInputError(String error) {
         runOnUiThread(() -> {
+            mainHandler.removeCallbacks(speculateRunnable);
+            lastPartialText = "";
+            cancelSpeculativeRequest();
+            if (continuousConversation) {
+                continuousConversation = false;
+                mainHandler.removeCallbacks(rearmRunnable);
+            }
             showSnackbar("Voice input error: " + error, Snackbar.LENGTH_LONG);
         });
     }
     
+    @Override
+    public void onNoSpeechDetected() {
+        runOnUiThread(() -> {
+            mainHandler.removeCallbacks(speculateRunnable);
+            lastPartialText = "";
+            cancelSpeculativeRequest();
+            if (continuousConversation) {
+                // Keep listening through short silences, give up after a few
+                silentRearms++;
+                if (silentRearms <= MAX_SILENT_REARMS) {
+                    mainHandler.postDelayed(rearmRunnable, REARM_DELAY_MS);
+                } else {
+                    continuousConversation = false;
+                    showSnackbar("Hands-free conversation paused: no speech detected", Snackbar.LENGTH_LONG);
+                }
+            } else {
+                showSnackbar("Voice input error: No speech input detected", Snackbar.LENGTH_LONG);
+            }
+        });
+    }
+    
     @Override
     public void onVoiceInputStopped() {
         runOnUiThread(() -> {
+            // Stopped without a final result
+            mainHandler.removeCallbacks(speculateRunnable);
+            cancelSpeculativeRequest();
             isVoiceRecording = false;
             voiceButton.setImageResource(R.drawable.ic_mic);
             voiceButton.setColorFilter(getColor(R.color.on_surface_variant));
-            statusText.setText("Online");
+            voiceButton.setScaleX(1f);
+            voiceButton.setScaleY(1f);
+            statusText.setText(idleStatus());
         });
     }
     
+    private void startSpeculativeRequest() {
+        String text = lastPartialText.trim();
+        if (text.split("\\s+").length < MIN_SPECULATIVE_WORDS) {
+            return;
+        }
+        if (speculativeRequest != null && sameTranscript(speculativeRequest.getPrompt(), text)) {
+            return;
+        }
+        cancelSpeculativeRequest();
+        speculativeRequest = viewModel.requestSpeculativeReply(text);
+    }
+    
+    private void commitSpeculativeRequest(String text) {
+        PendingReply request = speculativeRequest;
+        speculativeRequest = null;
+        speculativeHits++;
+        
+        // Same bookkeeping as sendMessage, minus the network call already in flight
+        hasPendingAttachment = false;
+        userInput.setText("");
+        userInput.clearFocus();
+        viewModel.commitSpeculativeReply(request, text);
+    }
+    
+    private void cancelSpeculativeRequest() {
+        if (speculativeRequest != null) {
+            viewModel.cancelReply(speculativeRequest);
+        }
+        speculativeRequest = null;
+    }
+    
+    // Recognizers revise punctuation and casing between partial and final results
+    private static boolean sameTranscript(String a, String b) {
+        return normalizeTranscript(a).equals(normalizeTranscript(b));
+    }
+    
+    private static String normalizeTranscript(String text) {
+        return text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}\\s]", "").trim().replaceAll("\\s+", " ");
+    }
+    
     @Override
     public void onVolumeChanged(float volume) {
-        // Could animate microphone icon based on volume
+        // Already throttled to the display frame rate by VoiceInputHandler
+        float scale = 1f + 0.25f * volume;
+        voiceButton.setScaleX(scale);
+        voiceButton.setScaleY(scale);
     }
     
     // Attachment Methods
@@ -280,20 +626,100 @@ public class MainActivity extends AppCompatActivity implements
     public void onFileSelected(String fileName, String fileType, String fileContent) {
         runOnUiThread(() -> {
             String message = "📎 File attached: " + fileName + "\n\nPlease analyze this " + fileType + " file.";
+            hasPendingAttachment = true;
+            viewModel.setDraftImageHash(null);
+            rememberAttachmentText(fileName, fileType, fileContent);
             userInput.setText(message);
             showSnackbar("File attached: " + fileName, Snackbar.LENGTH_SHORT);
         });
     }
     
+    // Text files go into long-term memory so later prompts can draw on them
+    private void rememberAttachmentText(String fileName, String fileType, String base64Content) {
+        if (fileType == null || !(fileType.startsWith("text/") || fileType.endsWith("json") || fileType.endsWith("xml"))) {
+            return;
+        }
+        try {
+            byte[] bytes = Base64.decode(base64Content, Base64.DEFAULT);
+            viewModel.rememberAttachment(fileName, new String(bytes, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            // Not valid base64; nothing to remember
+        }
+    }
+    
     @Override
-    public void onImageSelected(String fileName, Bitmap bitmap, String base64) {
+    public void onImageSelected(String fileName, byte[] jpegBytes) {
+        // Hashing the JPEG stays on the attachment worker; only the hash reaches the UI thread
+        String imageHash = viewModel.getThumbnailCache().store(jpegBytes);
         runOnUiThread(() -> {
             String message = "🖼️ Image attached: " + fileName + "\n\nPlease describe this image.";
+            hasPendingAttachment = true;
+            // Only the stored JPEG is kept; the bubble shows a thumbnail decoded from it
+            viewModel.setDraftImageHash(imageHash);
             userInput.setText(message);
             showSnackbar("Image attached: " + fileName, Snackbar.LENGTH_SHORT);
         });
     }
     
+    @Override
+    public void onCsvSelected(String fileName, Uri uri) {
+        runOnUiThread(() -> new AlertDialog.Builder(this)
+            .setTitle(fileName)
+            .setItems(new String[]{"Run each row as a prompt", "Attach to message"}, (dialog, which) -> {
+                if (which == 0) {
+                    showBatchDialog(fileName, uri);
+                } else {
+                    attachmentHandler.attachDocument(uri);
+                }
+            })
+            .show());
+    }
+    
+    private void showBatchDialog(String fileName, Uri uri) {
+        if (viewModel.isBatchRunning()) {
+            showSnackbar("A batch is already running", Snackbar.LENGTH_SHORT);
+            return;
+        }
+        EditText parallelismInput = new EditText(this);
+        parallelismInput.setInputType(InputType.TYPE_CLASS_NUMBER);
+        parallelismInput.setHint("Parallel requests (1-" + BatchJob.MAX_PARALLELISM + ")");
+        parallelismInput.setText(String.valueOf(BatchJob.DEFAULT_PARALLELISM));
+        
+        EditText rateInput = new EditText(this);
+        rateInput.setInputType(InputType.TYPE_CLASS_NUMBER);
+        rateInput.setHint("Requests per minute");
+        rateInput.setText(String.valueOf(BatchJob.DEFAULT_REQUESTS_PER_MINUTE));
+        
+        LinearLayout form = new LinearLayout(this);
+        form.setOrientation(LinearLayout.VERTICAL);
+        form.setPadding(48, 32, 48, 0);
+        form.addView(parallelismInput);
+        form.addView(rateInput);
+        
+        new AlertDialog.Builder(this)
+            .setTitle("Run Batch")
+            .setMessage("Results are written as each row finishes. An interrupted batch can be resumed.")
+            .setView(form)
+            .setPositiveButton("Run", (dialog, which) -> {
+                int parallelism = parseOrDefault(parallelismInput, BatchJob.DEFAULT_PARALLELISM);
+                int requestsPerMinute = parseOrDefault(rateInput, BatchJob.DEFAULT_REQUESTS_PER_MINUTE);
+                viewModel.startBatch(fileName, uri, parallelism, requestsPerMinute);
+                Snackbar.make(findViewById(R.id.snackbarContainer), "Batch started", Snackbar.LENGTH_LONG)
+                    .setAction("Stop", v -> viewModel.cancelBatch())
+                    .show();
+            })
+            .setNegativeButton("Cancel", null)
+            .show();
+    }
+    
+    private static int parseOrDefault(EditText input, int fallback) {
+        try {
+            return Integer.parseInt(input.getText().toString().trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+    
     @Override
     public void onError(String error) {
         runOnUiThread(() -> {
@@ -303,9 +729,13 @@ public class MainActivity extends AppCompatActivity implements
     
     // Menu and Dialog Methods
     private void showOptionsMenu() {
+        List<String> items = new ArrayList<>(Arrays.asList("Settings", "Clear Chat", "Compare Models", "Diagnostics", "About"));
+        if (viewModel.isBatchRunning()) {
+            items.add("Stop Batch");
+        }
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("Options")
-               .setItems(new String[]{"Settings", "Clear Chat", "About"}, (dialog, which) -> {
+               .setItems(items.toArray(new String[0]), (dialog, which) -> {
                    switch (which) {
                        case 0:
                            startActivity(new Intent(this, SettingsActivity.class));
@@ -314,8 +744,17 @@ public class MainActivity extends AppCompatActivity implements
                            clearChat();
                            break;
                        case 2:
+                           showCompareDialog();
+                           break;
+                       case 3:
+                           showDiagnosticsDialog();
+                           break;
+                       case 4:
                            showAboutDialog();
                            break;
+                       case 5:
+                           viewModel.cancelBatch();
+                           break;
                    }
                })
                .show();
@@ -324,19 +763,22 @@ public class MainActivity extends AppCompatActivity implements
     private void showQuickActions() {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("Quick Actions")
-               .setItems(new String[]{"Clear Chat", "Export Chat", "Voice Settings", "Attachment Options"}, 
+               .setItems(new String[]{"Search Chat", "Clear Chat", "Export Chat", "Voice Settings", "Attachment Options"}, 
                    (dialog, which) -> {
                        switch (which) {
                            case 0:
-                               clearChat();
+                               showSearchDialog();
                                break;
                            case 1:
-                               exportChat();
+                               clearChat();
                                break;
                            case 2:
-                               startActivity(new Intent(this, SettingsActivity.class));
+                               exportChat();
                                break;
                            case 3:
+                               startActivity(new Intent(this, SettingsActivity.class));
+                               break;
+                           case 4:
                                attachmentHandler.showAttachmentOptions();
                                break;
                        }
@@ -360,14 +802,302 @@ public class MainActivity extends AppCompatActivity implements
                .show();
     }
     
+    private void showCompareDialog() {
+        String[] models = CohereApiClient.AVAILABLE_MODELS;
+        boolean[] checked = new boolean[models.length];
+        for (int i = 0; i < models.length && i < COMPARE_DEFAULT_MODELS; i++) {
+            checked[i] = true;
+        }
+        
+        EditText promptInput = new EditText(this);
+        promptInput.setHint("Prompt to compare");
+        promptInput.setText(userInput.getText());
+        promptInput.setPadding(48, 32, 48, 32);
+        
+        new AlertDialog.Builder(this)
+            .setTitle("Compare Models")
+            .setView(promptInput)
+            .setMultiChoiceItems(models, checked, (dialog, which, isChecked) -> checked[which] = isChecked)
+            .setPositiveButton("Compare", (dialog, which) -> {
+                String prompt = promptInput.getText().toString().trim();
+                List<String> selected = new ArrayList<>();
+                for (int i = 0; i < models.length; i++) {
+                    if (checked[i]) {
+                        selected.add(models[i]);
+                    }
+                }
+                if (prompt.isEmpty() || selected.isEmpty()) {
+                    showSnackbar("Enter a prompt and pick at least one model", Snackbar.LENGTH_SHORT);
+                    return;
+                }
+                startComparison(prompt, selected);
+            })
+            .setNegativeButton("Cancel", null)
+            .show();
+    }
+    
+    // Side-by-side bubbles, one per model, filled in as the answers stream. They sit below the
+    // conversation in their own container, since the pager owns every child of chatContainer.
+    private void startComparison(String prompt, List<String> models) {
+        welcomeCard.setVisibility(View.GONE);
+        viewModel.cancelComparison();
+        
+        TextView header = new TextView(this);
+        header.setText("Comparing: " + prompt);
+        header.setTextColor(getColor(R.color.on_surface_variant));
+        header.setTextSize(14f);
+        header.setPadding(16, 16, 16, 8);
+        comparisonContainer.addView(header);
+        
+        LinearLayout row = new LinearLayout(this);
+        row.setOrientation(LinearLayout.HORIZONTAL);
+        HorizontalScrollView rowScroller = new HorizontalScrollView(this);
+        rowScroller.addView(row);
+        comparisonContainer.addView(rowScroller);
+        
+        int cardWidth = (int) (COMPARE_CARD_WIDTH_DP * getResources().getDisplayMetrics().density);
+        Map<String, TextView> answerViews = new HashMap<>();
+        Map<String, TextView> statsViews = new HashMap<>();
+        for (String model : models) {
+            MaterialCardView card = new MaterialCardView(this);
+            LinearLayout.LayoutParams cardParams = new LinearLayout.LayoutParams(cardWidth, LinearLayout.LayoutParams.WRAP_CONTENT);
+            cardParams.setMargins(16, 8, 8, 8);
+            card.setLayoutParams(cardParams);
+            card.setCardBackgroundColor(getColor(R.color.bot_message_bg));
+            card.setRadius(16f);
+            card.setCardElevation(4f);
+            card.setStrokeColor(getColor(R.color.outline_variant));
+            card.setStrokeWidth(1);
+            
+            LinearLayout content = new LinearLayout(this);
+            content.setOrientation(LinearLayout.VERTICAL);
+            content.setPadding(20, 16, 20, 16);
+            
+            TextView title = new TextView(this);
+            title.setText(model);
+            title.setTextColor(getColor(R.color.primary));
+            title.setTextSize(14f);
+            title.setTypeface(null, android.graphics.Typeface.BOLD);
+            
+            TextView answer = new TextView(this);
+            answer.setText("Waiting...");
+            answer.setTextColor(getColor(R.color.bot_message_text));
+            answer.setTextSize(15f);
+            answer.setLineSpacing(4f, 1.1f);
+            
+            TextView stats = new TextView(this);
+            stats.setTextColor(getColor(R.color.on_surface_variant));
+            stats.setTextSize(12f);
+            stats.setPadding(0, 8, 0, 0);
+            
+            content.addView(title);
+            content.addView(answer);
+            content.addView(stats);
+            card.addView(content);
+            row.addView(card);
+            answerViews.put(model, answer);
+            statsViews.put(model, stats);
+        }
+        scrollToBottom();
+        
+        viewModel.compareModels(prompt, models, new ModelComparison.Listener() {
+            @Override
+            public void onText(String model, String textSoFar) {
+                answerViews.get(model).setText(textSoFar);
+            }
+            
+            @Override
+            public void onComplete(CohereApiClient.StreamResult result) {
+                if (result.error != null) {
+                    statsViews.get(result.model).setText("Failed: " + result.error);
+                    return;
+                }
+                answerViews.get(result.model).setText(result.text);
+                statsViews.get(result.model).setText(String.format(Locale.US,
+                    "First token %d ms • Done in %.1f s • %d in / %d out tokens",
+                    result.firstTokenMs, result.totalMs / 1000f, result.inputTokens, result.outputTokens));
+            }
+        });
+    }
+    
+    private void showDiagnosticsDialog() {
+        String diagnostics = viewModel.getLatencyStats().describe();
+        diagnostics += "\n" + viewModel.getTokenMeter().describe() + viewModel.getMaxTokensPolicy().describe();
+        diagnostics += "\nSpeculative voice sends: " + speculativeHits + " kept, " + speculativeMisses + " reissued";
+        if (viewModel.getWarmupMs() >= 0) {
+            diagnostics += "\nPreconnect: " + viewModel.getWarmupMs() + " ms";
+        }
+        if (viewModel.getRefusedServiceStarts() > 0) {
+            diagnostics += "\nRequest service: " + viewModel.getRefusedServiceStarts() + " background starts refused";
+        }
+        diagnostics += "\n" + CacheRegistry.getInstance().describe();
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Diagnostics")
+               .setMessage(diagnostics)
+               .setPositiveButton("OK", null)
+               .show();
+    }
+    
     private void clearChat() {
-        chatContainer.removeAllViews();
-        messageCount = 0;
-        welcomeCard.setVisibility(View.VISIBLE);
-        quickActionsFab.setVisibility(View.GONE);
+        cancelSpeculativeRequest();
+        viewModel.clearChat();
+        comparisonContainer.removeAllViews();
         showSnackbar("Chat cleared", Snackbar.LENGTH_SHORT);
     }
     
+    // Edit and resend for the user's own messages, regenerate for any turn
+    private void showMessageActions(ChatMessage message) {
+        String[] items = message.isUser()
+            ? new String[]{"Edit and resend", "Regenerate reply"}
+            : new String[]{"Regenerate"};
+        new AlertDialog.Builder(this)
+            .setItems(items, (dialog, which) -> {
+                if (message.isUser() && which == 0) {
+                    showEditDialog(message);
+                } else {
+                    regenerateReply(message);
+                }
+            })
+            .show();
+    }
+    
+    private void showEditDialog(ChatMessage message) {
+        EditText editInput = new EditText(this);
+        editInput.setText(message.getText());
+        editInput.setSelection(editInput.getText().length());
+        editInput.setPadding(48, 32, 48, 32);
+        
+        new AlertDialog.Builder(this)
+            .setTitle("Edit message")
+            .setMessage("Everything after this message will be replaced.")
+            .setView(editInput)
+            .setPositiveButton("Resend", (dialog, which) -> {
+                String text = editInput.getText().toString().trim();
+                if (text.isEmpty()) {
+                    return;
+                }
+                // A speculative voice reply was asked with the conversation being rewritten
+                cancelSpeculativeRequest();
+                if (!viewModel.editMessage(message.getId(), text)) {
+                    showSnackbar("This message can't be changed right now", Snackbar.LENGTH_SHORT);
+                }
+            })
+            .setNegativeButton("Cancel", null)
+            .show();
+    }
+    
+    private void regenerateReply(ChatMessage message) {
+        cancelSpeculativeRequest();
+        if (!viewModel.regenerateReply(message.getId())) {
+            showSnackbar("This message can't be changed right now", Snackbar.LENGTH_SHORT);
+        }
+    }
+    
+    private void showSearchDialog() {
+        EditText queryInput = new EditText(this);
+        queryInput.setHint("Words, prefix* or \"exact phrase\"");
+        queryInput.setSingleLine(true);
+        
+        ListView resultsList = new ListView(this);
+        List<CharSequence> resultItems = new ArrayList<>();
+        List<ChatMessage> resultMessages = new ArrayList<>();
+        ArrayAdapter<CharSequence> adapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, resultItems);
+        resultsList.setAdapter(adapter);
+        
+        LinearLayout content = new LinearLayout(this);
+        content.setOrientation(LinearLayout.VERTICAL);
+        content.setPadding(48, 16, 48, 0);
+        content.addView(queryInput);
+        content.addView(resultsList, new LinearLayout.LayoutParams(
+            LinearLayout.LayoutParams.MATCH_PARENT, 0, 1f));
+        
+        AlertDialog dialog = new AlertDialog.Builder(this)
+            .setTitle("Search Chat")
+            .setView(content)
+            .setNegativeButton("Close", null)
+            .create();
+        
+        Runnable runSearch = () -> {
+            String query = queryInput.getText().toString().trim();
+            if (query.isEmpty()) {
+                resultItems.clear();
+                resultMessages.clear();
+                adapter.notifyDataSetChanged();
+                return;
+            }
+            viewModel.search(query, (searched, results, indexing) -> {
+                // Drop results for a query the user has already typed past
+                if (!searched.equals(queryInput.getText().toString().trim())) {
+                    return;
+                }
+                // A long history is still being indexed; the search repeats when it's done
+                dialog.setTitle(indexing ? "Search Chat (indexing…)" : "Search Chat");
+                resultItems.clear();
+                resultMessages.clear();
+                for (ChatMessage message : results) {
+                    resultItems.add(highlightSnippet(message, searched));
+                    resultMessages.add(message);
+                }
+                adapter.notifyDataSetChanged();
+            });
+        };
+        queryInput.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+            
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+            
+            @Override
+            public void afterTextChanged(Editable s) {
+                mainHandler.removeCallbacks(runSearch);
+                mainHandler.postDelayed(runSearch, SEARCH_DEBOUNCE_MS);
+            }
+        });
+        resultsList.setOnItemClickListener((parent, view, position, id) -> {
+            dialog.dismiss();
+            scrollToMessage(resultMessages.get(position).getId());
+        });
+        dialog.setOnDismissListener(d -> mainHandler.removeCallbacks(runSearch));
+        dialog.show();
+    }
+    
+    // A window of the message around the first match, with every match in bold
+    private CharSequence highlightSnippet(ChatMessage message, String query) {
+        String text = message.getText().replaceFirst("^(You|Bot):\\s*", "");
+        List<int[]> ranges = SearchIndex.highlightRanges(text, query);
+        int start = ranges.isEmpty() ? 0 : Math.max(0, ranges.get(0)[0] - SEARCH_SNIPPET_CONTEXT);
+        int end = Math.min(text.length(), start + SEARCH_SNIPPET_CONTEXT * 3);
+        
+        SpannableStringBuilder snippet = new SpannableStringBuilder();
+        snippet.append(message.isUser() ? "You: " : "Bot: ");
+        if (start > 0) {
+            snippet.append("…");
+        }
+        int base = snippet.length() - start;
+        snippet.append(text, start, end);
+        if (end < text.length()) {
+            snippet.append("…");
+        }
+        for (int[] range : ranges) {
+            if (range[0] < start || range[1] > end) {
+                continue;
+            }
+            snippet.setSpan(new StyleSpan(android.graphics.Typeface.BOLD),
+                base + range[0], base + range[1], Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            snippet.setSpan(new BackgroundColorSpan(getColor(R.color.primary_container)),
+                base + range[0], base + range[1], Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+        return snippet;
+    }
+    
+    private void scrollToMessage(long messageId) {
+        // Loads the message's page first if it is outside the rendered window
+        if (!chatPager.reveal(messageId)) {
+            showSnackbar("Message is no longer in this chat", Snackbar.LENGTH_SHORT);
+        }
+    }
+    
     private void exportChat() {
         showSnackbar("Export feature coming soon!", Snackbar.LENGTH_SHORT);
     }
@@ -376,53 +1106,85 @@ public class MainActivity extends AppCompatActivity implements
         Snackbar.make(findViewById(R.id.snackbarContainer), message, duration).show();
     }
     
-    private void hideWelcomeCardIfNeeded() {
-        if (messageCount > 0) {
-            welcomeCard.setVisibility(View.GONE);
-            quickActionsFab.setVisibility(View.VISIBLE);
+    // Core Messaging Methods
+    private void sendMessage() {
+        JankMonitor.operation(JankMonitor.OP_SEND);
+        Trace.beginSection("MainActivity.sendMessage");
+        try {
+            sendInput();
+        } finally {
+            Trace.endSection();
         }
     }
     
-    // Core Messaging Methods
-    private void sendMessage() {
+    private void sendInput() {
         String message = userInput.getText().toString().trim();
         if (message.isEmpty()) {
             showSnackbar("Please enter a message", Snackbar.LENGTH_SHORT);
             return;
         }
         
-        // Hide welcome card after first message
-        if (messageCount == 0) {
-            welcomeCard.setVisibility(View.GONE);
-            quickActionsFab.setVisibility(View.VISIBLE);
-        }
-        
-        // Add user message to chat
-        addMessageToChat(message, true);
+        boolean hasAttachment = hasPendingAttachment;
+        hasPendingAttachment = false;
         
-        // Clear input and show typing indicator
+        // Clear input; the bubble and typing indicator follow from the view model
         userInput.setText("");
         userInput.clearFocus();
-        showTypingIndicator();
         
-        // Send to API in background thread
-        executorService.execute(() -> {
-            String response = callCohereAPI(message);
-            
-            // Update UI on main thread
-            mainHandler.post(() -> {
-                hideTypingIndicator();
-                addMessageToChat(response, false);
-                scrollToBottom();
-            });
-        });
+        requestNotificationPermissionOnce();
+        viewModel.sendMessage(message, hasAttachment);
+    }
+    
+    // Replies can land while the app is in the background; ask once per session
+    private void requestNotificationPermissionOnce() {
+        if (notificationPermissionAsked || Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU
+                || !SettingsActivity.areNotificationsEnabled(settings)) {
+            return;
+        }
+        notificationPermissionAsked = true;
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            notificationPermissionLauncher.launch(Manifest.permission.POST_NOTIFICATIONS);
+        }
+    }
+    
+    private void onBotReplyShown() {
+        if (voiceTurnStartMs >= 0) {
+            viewModel.getLatencyStats().recordVoiceTurn(SystemClock.elapsedRealtime() - voiceTurnStartMs);
+            voiceTurnStartMs = -1;
+        }
         
-        messageCount++;
+        // Hands-free: listen for the next turn as soon as the reply is shown
+        if (continuousConversation) {
+            mainHandler.removeCallbacks(rearmRunnable);
+            mainHandler.postDelayed(rearmRunnable, REARM_DELAY_MS);
+        }
+    }
+    
+    // Remove "You:"/"Bot:" prefixes; safe to call off the main thread
+    private static String cleanMessageText(ChatMessage message) {
+        return message.getText().replaceFirst("^(You|Bot):\\s*", "");
+    }
+    
+    // Text layout parameters of a message bubble, so pages can be laid out in the background
+    private PrecomputedTextCompat.Params messageTextParams() {
+        TextView template = new TextView(this);
+        template.setTextSize(16f);
+        return TextViewCompat.getTextMetricsParams(template);
     }
     
-    private void addMessageToChat(String message, boolean isUser) {
-        // Clean the message (remove prefixes)
-        String cleanMessage = message.replaceFirst("^(You|Bot):\\s*", "");
+    private View createMessageCard(ChatMessage message, CharSequence text) {
+        // Bot replies carry their request key, linking the card to the ChatRequest slice
+        Trace.beginSection(RequestTracer.label("createMessageCard", message.getRequestKey()));
+        try {
+            return buildMessageCard(message, text);
+        } finally {
+            Trace.endSection();
+        }
+    }
+    
+    private View buildMessageCard(ChatMessage message, CharSequence text) {
+        boolean isUser = message.isUser();
         
         // Create message card
         MaterialCardView messageCard = new MaterialCardView(this);
@@ -432,6 +1194,11 @@ public class MainActivity extends AppCompatActivity implements
         );
         cardParams.setMargins(isUser ? 64 : 16, 8, isUser ? 16 : 64, 8);
         messageCard.setLayoutParams(cardParams);
+        messageCard.setTag(message.getId());
+        messageCard.setOnLongClickListener(v -> {
+            showMessageActions(message);
+            return true;
+        });
         
         // Set card styling
         messageCard.setCardBackgroundColor(getColor(isUser ? R.color.user_message_bg : R.color.bot_message_bg));
@@ -447,15 +1214,24 @@ public class MainActivity extends AppCompatActivity implements
         
         // Message text
         TextView messageText = new TextView(this);
-        messageText.setText(cleanMessage);
         messageText.setTextColor(getColor(isUser ? R.color.user_message_text : R.color.bot_message_text));
         messageText.setTextSize(16f);
         messageText.setLineSpacing(4f, 1.1f);
+        if (text instanceof PrecomputedTextCompat) {
+            try {
+                TextViewCompat.setPrecomputedText(messageText, (PrecomputedTextCompat) text);
+            } catch (IllegalArgumentException e) {
+                // Laid out with different parameters; measure again here
+                messageText.setText(text.toString());
+            }
+        } else {
+            messageText.setText(text);
+        }
         
         // Timestamp
         TextView timestampText = new TextView(this);
         SimpleDateFormat sdf = new SimpleDateFormat("HH:mm", Locale.getDefault());
-        timestampText.setText(sdf.format(new Date()));
+        timestampText.setText(sdf.format(new Date(message.getTimestamp())));
         timestampText.setTextColor(getColor(R.color.on_surface_variant));
         timestampText.setTextSize(12f);
         timestampText.setAlpha(0.7f);
@@ -468,143 +1244,66 @@ public class MainActivity extends AppCompatActivity implements
         timestampParams.gravity = isUser ? android.view.Gravity.END : android.view.Gravity.START;
         timestampText.setLayoutParams(timestampParams);
         
+        // Attached image; fixed size so the bubble doesn't jump when the thumbnail lands
+        if (message.getImageHash() != null) {
+            int thumbnailPx = (int) (THUMBNAIL_DP * getResources().getDisplayMetrics().density);
+            ImageView thumbnail = new ImageView(this);
+            LinearLayout.LayoutParams thumbnailParams = new LinearLayout.LayoutParams(thumbnailPx, thumbnailPx);
+            thumbnailParams.setMargins(0, 0, 0, 12);
+            thumbnail.setLayoutParams(thumbnailParams);
+            thumbnail.setScaleType(ImageView.ScaleType.CENTER_CROP);
+            thumbnail.setBackgroundColor(getColor(R.color.outline_variant));
+            viewModel.getThumbnailCache().load(thumbnail, message.getImageHash(), thumbnailPx);
+            contentLayout.addView(thumbnail);
+        }
+        
         // Add views to layout
         contentLayout.addView(messageText);
         contentLayout.addView(timestampText);
         messageCard.addView(contentLayout);
-        
-        // Add to chat container
-        chatContainer.addView(messageCard);
-        scrollToBottom();
+        return messageCard;
     }
     
     private void scrollToBottom() {
         scrollView.post(() -> scrollView.fullScroll(View.FOCUS_DOWN));
     }
     
-    private String callCohereAPI(String userPrompt) {
-        // Try different models in case one is deprecated
-        for (String model : availableModels) {
-            try {
-                String result = tryAPICallWithModel(userPrompt, model);
-                if (!result.startsWith("API Error 404") && !result.startsWith("Exception")) {
-                    // Update model info on success
-                    mainHandler.post(() -> {
-                        if (modelInfoText != null) {
-                            modelInfoText.setText("Model: " + model + " • Ready to help");
-                        }
-                    });
-                    return result; // Success with this model
-                }
-            } catch (Exception e) {
-                continue; // Try next model
-            }
-        }
-        
-        return "I apologize, but I'm currently unable to process your request. This could be due to:\n\n" +
-               "• Network connectivity issues\n" +
-               "• API service maintenance\n" +
-               "• Model availability\n\n" +
-               "Please check your internet connection and try again in a moment.";
-    }
-    
     private void showTypingIndicator() {
-        mainHandler.post(() -> {
-            if (typingIndicator != null) {
-                typingIndicator.setVisibility(View.VISIBLE);
-            }
-            if (statusText != null) {
-                statusText.setText("Typing...");
-            }
-            if (modelInfoText != null) {
-                modelInfoText.setText("Processing your request...");
-            }
-        });
+        if (typingIndicator != null) {
+            typingIndicator.setVisibility(View.VISIBLE);
+        }
+        if (statusText != null) {
+            statusText.setText("Typing...");
+        }
+        if (modelInfoText != null) {
+            modelInfoText.setText("Processing your request...");
+        }
     }
     
     private void hideTypingIndicator() {
-        mainHandler.post(() -> {
-            if (typingIndicator != null) {
-                typingIndicator.setVisibility(View.GONE);
-            }
-            if (statusText != null) {
-                statusText.setText("Online");
-            }
-            if (modelInfoText != null) {
-                modelInfoText.setText("Model: " + availableModels[0] + " • Ready to help");
-            }
-        });
-    }
-    
-    private String tryAPICallWithModel(String userPrompt, String model) {
-        try {
-            URL url = new URL(cohereUrl);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setRequestProperty("Authorization", "Bearer " + apiKey);
-            connection.setDoOutput(true);
-            connection.setConnectTimeout(10000); // 10 seconds
-            connection.setReadTimeout(30000); // 30 seconds
-            
-            // Create request JSON
-            JSONObject data = new JSONObject();
-            data.put("model", model);
-            data.put("message", userPrompt);
-            data.put("max_tokens", 1000);
-            data.put("temperature", 0.7);
-            
-            // Send request
-            OutputStream os = connection.getOutputStream();
-            byte[] input = data.toString().getBytes("utf-8");
-            os.write(input, 0, input.length);
-            os.close();
-            
-            // Read response
-            int responseCode = connection.getResponseCode();
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                String inputLine;
-                StringBuilder response = new StringBuilder();
-                
-                while ((inputLine = in.readLine()) != null) {
-                    response.append(inputLine);
-                }
-                in.close();
-                
-                // Parse JSON response
-                JSONObject jsonResponse = new JSONObject(response.toString());
-                if (jsonResponse.has("text")) {
-                    return jsonResponse.getString("text").trim();
-                } else if (jsonResponse.has("message")) {
-                    return jsonResponse.getString("message").trim();
-                } else {
-                    return "Received response but couldn't parse it properly.";
-                }
-            } else {
-                // Read error response
-                BufferedReader errorReader = new BufferedReader(new InputStreamReader(connection.getErrorStream()));
-                StringBuilder errorResponse = new StringBuilder();
-                String errorLine;
-                while ((errorLine = errorReader.readLine()) != null) {
-                    errorResponse.append(errorLine);
-                }
-                errorReader.close();
-                return "API Error " + responseCode + ": " + errorResponse.toString();
-            }
-
-        } catch (Exception e) {
-            return "Exception: " + e.getMessage();
+        if (typingIndicator != null) {
+            typingIndicator.setVisibility(View.GONE);
+        }
+        if (statusText != null) {
+            statusText.setText(idleStatus());
+        }
+        if (modelInfoText != null) {
+            modelInfoText.setText(viewModel.getModelInfo().getValue());
         }
     }
     
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (executorService != null) {
-            executorService.shutdown();
-        }
+        // In-flight replies belong to the repository and keep running across recreation;
+        // only a speculative voice reply dies with the voice session
+        mainHandler.removeCallbacksAndMessages(null);
+        cancelSpeculativeRequest();
+        // Comparison bubbles belong to this activity's views
+        viewModel.cancelComparison();
+        CacheRegistry.getInstance().unregister(CHAT_VIEW_CACHE);
+        chatPager.shutdown();
+        JankMonitor.uninstall(this);
         if (voiceInputHandler != null) {
             voiceInputHandler.destroy();
         }
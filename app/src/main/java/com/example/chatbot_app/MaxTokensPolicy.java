@@ -0,0 +1,98 @@
+package com.example.chatbot_app;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Sizes max_tokens for each request instead of always reserving 1000. Each
+ * prompt is sorted into a kind, and each kind learns from the answer lengths it
+ * has seen. Each cap gives headroom over the kind's 95th percentile. An answer
+ * cut off at its cap doubles that kind's cap at once; the boost then fades as
+ * answers finish normally. Until a kind has enough samples it uses a fixed
+ * default.
+ * Thread-safe.
+ */
+public class MaxTokensPolicy {
+
+    public static final int KIND_SHORT_QUESTION = 0;
+    public static final int KIND_GENERAL = 1;
+    public static final int KIND_LONG_FORM = 2;
+    private static final String[] KIND_NAMES = {"short question", "general", "long form"};
+    private static final int[] DEFAULT_MAX_TOKENS = {300, 600, 1000};
+
+    public static final int MIN_MAX_TOKENS = 64;
+    public static final int MAX_MAX_TOKENS = 1000;
+    private static final int SHORT_QUESTION_CHARS = 120;
+    private static final int WINDOW_SIZE = 50;
+    private static final int MIN_SAMPLES = 8;
+    private static final double HEADROOM = 1.5;
+    // Each answer that finishes normally shrinks a truncation boost by this factor
+    private static final double BOOST_DECAY = 0.9;
+
+    // Asking for these usually means a long answer whatever the prompt length
+    private static final List<String> LONG_FORM_WORDS = Arrays.asList(
+        "write", "essay", "story", "poem", "code", "implement", "explain", "describe",
+        "list", "plan", "summarize", "summarise", "translate", "compare", "draft", "generate");
+
+    private final int[][] samples = new int[KIND_NAMES.length][WINDOW_SIZE];
+    private final int[] counts = new int[KIND_NAMES.length];
+    // Lower bound on the cap after a truncation
+    private final int[] boosts = new int[KIND_NAMES.length];
+
+    public static int classify(String prompt, boolean hasAttachment) {
+        if (hasAttachment) {
+            return KIND_LONG_FORM;
+        }
+        for (String token : SearchIndex.tokenize(prompt)) {
+            if (LONG_FORM_WORDS.contains(token)) {
+                return KIND_LONG_FORM;
+            }
+        }
+        String trimmed = prompt.trim();
+        if (trimmed.length() < SHORT_QUESTION_CHARS && trimmed.endsWith("?")) {
+            return KIND_SHORT_QUESTION;
+        }
+        return KIND_GENERAL;
+    }
+
+    public synchronized int maxTokens(int kind) {
+        int count = Math.min(counts[kind], WINDOW_SIZE);
+        int sized;
+        if (count < MIN_SAMPLES) {
+            sized = DEFAULT_MAX_TOKENS[kind];
+        } else {
+            int[] sorted = Arrays.copyOf(samples[kind], count);
+            Arrays.sort(sorted);
+            int p95 = sorted[Math.min(count - 1, (int) Math.ceil(count * 0.95) - 1)];
+            // Round up to a multiple of 32 so the value doesn't jitter with every sample
+            sized = ((int) (p95 * HEADROOM) + 31) / 32 * 32;
+        }
+        sized = Math.max(sized, boosts[kind]);
+        return Math.max(MIN_MAX_TOKENS, Math.min(MAX_MAX_TOKENS, sized));
+    }
+
+    // truncated: the answer stopped at maxTokens rather than finishing
+    public synchronized void record(int kind, int outputTokens, int maxTokens, boolean truncated) {
+        if (outputTokens <= 0) {
+            return;
+        }
+        if (truncated) {
+            boosts[kind] = Math.max(boosts[kind], Math.max(outputTokens, maxTokens) * 2);
+        } else {
+            boosts[kind] = (int) (boosts[kind] * BOOST_DECAY);
+        }
+        samples[kind][counts[kind] % WINDOW_SIZE] = outputTokens;
+        counts[kind]++;
+    }
+
+    public synchronized String describe() {
+        StringBuilder sb = new StringBuilder("max_tokens:");
+        for (int kind = 0; kind < KIND_NAMES.length; kind++) {
+            sb.append(String.format(Locale.US, " %s %d (%d seen)", KIND_NAMES[kind], maxTokens(kind),
+                counts[kind]));
+            sb.append(kind < KIND_NAMES.length - 1 ? "," : "\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.chatbot_app;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Columnar in-memory conversation. Ids, timestamps and flags are kept in
+ * primitive arrays, one slot per message. Text, request key and image hash are
+ * packed as UTF-8 into shared byte slabs. A message is decoded back into a
+ * ChatMessage only when it is read, and recently read texts are kept in a small
+ * LRU, so the visible page isn't decoded again on every pass.
+ *
+ * Append-only: a snapshot() taken earlier never sees later rows, so it can be
+ * handed to other threads while the owner keeps appending. To remove rows, build
+ * a new table. Appends come from one thread at a time.
+ */
+public class MessageTable {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int SLAB_SIZE = 32 * 1024;
+    // Decoded texts kept for rows read recently; about a page and a half of bubbles
+    private static final int DECODED_CACHE_SIZE = 48;
+    private static final byte FLAG_USER = 1;
+    // No request key or image hash
+    private static final short ABSENT = -1;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private byte[] flags = new byte[INITIAL_CAPACITY];
+    private int[] slabIndexes = new int[INITIAL_CAPACITY];
+    private int[] offsets = new int[INITIAL_CAPACITY];
+    private int[] textLengths = new int[INITIAL_CAPACITY];
+    private short[] keyLengths = new short[INITIAL_CAPACITY];
+    private short[] imageLengths = new short[INITIAL_CAPACITY];
+    private byte[][] slabs = new byte[0][];
+    private int slabUsed = SLAB_SIZE;
+    private int size = 0;
+
+    // Shared by every snapshot; rows never change once written, so a row index is a stable key
+    private final Map<Integer, String> decoded = new LinkedHashMap<Integer, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > DECODED_CACHE_SIZE;
+        }
+    };
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void addAll(List<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            add(message);
+        }
+    }
+
+    public void add(ChatMessage message) {
+        byte[] text = message.getText().getBytes(StandardCharsets.UTF_8);
+        byte[] key = encodeShort(message.getRequestKey());
+        byte[] image = encodeShort(message.getImageHash());
+        int length = text.length + (key == null ? 0 : key.length) + (image == null ? 0 : image.length);
+
+        if (size == ids.length) {
+            grow();
+        }
+        int slab = reserve(length);
+        int offset = slabUsed;
+        byte[] bytes = slabs[slab];
+        System.arraycopy(text, 0, bytes, offset, text.length);
+        int at = offset + text.length;
+        if (key != null) {
+            System.arraycopy(key, 0, bytes, at, key.length);
+            at += key.length;
+        }
+        if (image != null) {
+            System.arraycopy(image, 0, bytes, at, image.length);
+        }
+        slabUsed += length;
+
+        ids[size] = message.getId();
+        timestamps[size] = message.getTimestamp();
+        flags[size] = message.isUser() ? FLAG_USER : 0;
+        slabIndexes[size] = slab;
+        offsets[size] = offset;
+        textLengths[size] = text.length;
+        keyLengths[size] = key == null ? ABSENT : (short) key.length;
+        imageLengths[size] = image == null ? ABSENT : (short) image.length;
+        size++;
+    }
+
+    // The first count rows as a new table. Slabs are shared, not copied: the copy starts a fresh
+    // slab for its own appends, so bytes that snapshots of this table still read are never overwritten
+    public MessageTable prefix(int count) {
+        if (count < 0 || count > size) {
+            throw new IndexOutOfBoundsException("Count: " + count + ", size: " + size);
+        }
+        MessageTable table = new MessageTable();
+        int capacity = Math.max(INITIAL_CAPACITY, count);
+        table.ids = Arrays.copyOf(ids, capacity);
+        table.timestamps = Arrays.copyOf(timestamps, capacity);
+        table.flags = Arrays.copyOf(flags, capacity);
+        table.slabIndexes = Arrays.copyOf(slabIndexes, capacity);
+        table.offsets = Arrays.copyOf(offsets, capacity);
+        table.textLengths = Arrays.copyOf(textLengths, capacity);
+        table.keyLengths = Arrays.copyOf(keyLengths, capacity);
+        table.imageLengths = Arrays.copyOf(imageLengths, capacity);
+        table.slabs = Arrays.copyOf(slabs, count == 0 ? 0 : slabIndexes[count - 1] + 1);
+        table.slabUsed = SLAB_SIZE;
+        table.size = count;
+        return table;
+    }
+
+    // Approximate heap held by the columns and slabs
+    public long sizeBytes() {
+        long bytes = (long) ids.length * (8 + 8 + 1 + 4 + 4 + 4 + 2 + 2);
+        for (byte[] slab : slabs) {
+            bytes += slab.length;
+        }
+        return bytes;
+    }
+
+    // Approximate heap held by decoded texts, counted as two bytes per char
+    public long decodedBytes() {
+        long bytes = 0;
+        synchronized (decoded) {
+            for (String text : decoded.values()) {
+                bytes += 2L * text.length();
+            }
+        }
+        return bytes;
+    }
+
+    public void trimDecoded() {
+        synchronized (decoded) {
+            decoded.clear();
+        }
+    }
+
+    // Read-only view of the rows written so far; safe to read from any thread once handed over
+    public List<ChatMessage> snapshot() {
+        return new Snapshot(this, size);
+    }
+
+    // A message's id without decoding it, when list is a snapshot
+    public static long idAt(List<ChatMessage> list, int index) {
+        if (list instanceof Snapshot) {
+            Snapshot snapshot = (Snapshot) list;
+            snapshot.checkIndex(index);
+            return snapshot.ids[index];
+        }
+        return list.get(index).getId();
+    }
+
+    // Size of a message's text without decoding it: UTF-8 bytes for snapshots, chars otherwise
+    public static int textSizeAt(List<ChatMessage> list, int index) {
+        if (list instanceof Snapshot) {
+            Snapshot snapshot = (Snapshot) list;
+            snapshot.checkIndex(index);
+            return snapshot.textLengths[index];
+        }
+        return list.get(index).getText().length();
+    }
+
+    // Request keys and image hashes are short ASCII ids
+    private static byte[] encodeShort(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Id too long: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    // Returns the slab to write length bytes into, starting a new one if the current is full
+    private int reserve(int length) {
+        if (slabUsed + length <= SLAB_SIZE && slabs.length > 0) {
+            return slabs.length - 1;
+        }
+        // Longer than a slab: it gets a slab of its own
+        byte[] slab = new byte[Math.max(SLAB_SIZE, length)];
+        // A new array, so snapshots holding the old one keep a consistent view
+        slabs = Arrays.copyOf(slabs, slabs.length + 1);
+        slabs[slabs.length - 1] = slab;
+        slabUsed = 0;
+        return slabs.length - 1;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        slabIndexes = Arrays.copyOf(slabIndexes, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+        textLengths = Arrays.copyOf(textLengths, capacity);
+        keyLengths = Arrays.copyOf(keyLengths, capacity);
+        imageLengths = Arrays.copyOf(imageLengths, capacity);
+    }
+
+    /**
+     * The columns as they were when the snapshot was taken. Appends replace the
+     * arrays when they grow and only ever write past this snapshot's size, so
+     * the captured references stay valid without locking.
+     */
+    private static class Snapshot extends AbstractList<ChatMessage> implements RandomAccess {
+
+        private final MessageTable table;
+        private final int size;
+        private final long[] ids;
+        private final long[] timestamps;
+        private final byte[] flags;
+        private final int[] slabIndexes;
+        private final int[] offsets;
+        private final int[] textLengths;
+        private final short[] keyLengths;
+        private final short[] imageLengths;
+        private final byte[][] slabs;
+
+        Snapshot(MessageTable table, int size) {
+            this.table = table;
+            this.size = size;
+            ids = table.ids;
+            timestamps = table.timestamps;
+            flags = table.flags;
+            slabIndexes = table.slabIndexes;
+            offsets = table.offsets;
+            textLengths = table.textLengths;
+            keyLengths = table.keyLengths;
+            imageLengths = table.imageLengths;
+            slabs = table.slabs;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public ChatMessage get(int index) {
+            checkIndex(index);
+            byte[] slab = slabs[slabIndexes[index]];
+            int at = offsets[index] + textLengths[index];
+            String key = null;
+            if (keyLengths[index] != ABSENT) {
+                key = new String(slab, at, keyLengths[index], StandardCharsets.UTF_8);
+                at += keyLengths[index];
+            }
+            String image = null;
+            if (imageLengths[index] != ABSENT) {
+                image = new String(slab, at, imageLengths[index], StandardCharsets.UTF_8);
+            }
+            return new ChatMessage(ids[index], (flags[index] & FLAG_USER) != 0, text(index), timestamps[index],
+                key, image);
+        }
+
+        void checkIndex(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+            }
+        }
+
+        private String text(int index) {
+            synchronized (table.decoded) {
+                String text = table.decoded.get(index);
+                if (text == null) {
+                    text = new String(slabs[slabIndexes[index]], offsets[index], textLengths[index],
+                        StandardCharsets.UTF_8);
+                    table.decoded.put(index, text);
+                }
+                return text;
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.chatbot_app;
+
+import android.os.Handler;
+import android.os.Looper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sends one prompt to several models at once and streams every answer back, so
+ * a model can be chosen on measured latency and token use. At most
+ * MAX_CONCURRENT requests run at a time to keep the burst under the rate limit.
+ * Listener callbacks arrive on the main thread.
+ */
+public class ModelComparison {
+
+    private static final int MAX_CONCURRENT = 2;
+
+    public interface Listener {
+        void onText(String model, String textSoFar);
+        void onComplete(CohereApiClient.StreamResult result);
+    }
+
+    private final CohereApiClient apiClient;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Semaphore permits = new Semaphore(MAX_CONCURRENT);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<ChatCall> calls = new ArrayList<>();
+
+    public ModelComparison(CohereApiClient apiClient) {
+        this.apiClient = apiClient;
+    }
+
+    // Main thread only
+    public void run(String prompt, List<String> models, Listener listener) {
+        for (String model : models) {
+            ChatCall call = new ChatCall(null);
+            calls.add(call);
+            executor.execute(() -> {
+                try {
+                    compare(prompt, model, listener, call);
+                } finally {
+                    // Finished calls have nothing left to cancel
+                    mainHandler.post(() -> calls.remove(call));
+                }
+            });
+        }
+    }
+
+    private void compare(String prompt, String model, Listener listener, ChatCall call) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            if (call.isCancelled()) {
+                return;
+            }
+            // Coalesce token updates: at most one pending UI update per model
+            AtomicReference<String> pending = new AtomicReference<>();
+            CohereApiClient.StreamResult result = apiClient.streamChat(prompt, model, text -> {
+                if (pending.getAndSet(text) == null) {
+                    mainHandler.post(() -> {
+                        String latest = pending.getAndSet(null);
+                        if (!call.isCancelled() && latest != null) {
+                            listener.onText(model, latest);
+                        }
+                    });
+                }
+            }, call);
+            mainHandler.post(() -> {
+                if (!call.isCancelled()) {
+                    listener.onComplete(result);
+                }
+            });
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Main thread only
+    public void cancel() {
+        for (ChatCall call : calls) {
+            call.cancel();
+        }
+        calls.clear();
+    }
+}
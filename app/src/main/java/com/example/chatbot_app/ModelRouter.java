@@ -0,0 +1,116 @@
+package com.example.chatbot_app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Picks the model order for each request from prompt length, attachment presence
+ * and live latency/error statistics. A preferred model from settings always goes first.
+ */
+public class ModelRouter {
+
+    public static final String AUTO = "auto";
+
+    // Models that handle short chit-chat quickly
+    private static final List<String> FAST_MODELS = Arrays.asList("command-light");
+    // Prompts below this many characters count as short
+    private static final int SHORT_PROMPT_CHARS = 160;
+    // Models failing more often than this are pushed to the end of the order
+    private static final double UNHEALTHY_ERROR_RATE = 0.5;
+    private static final int MIN_OUTCOMES_FOR_HEALTH = 4;
+    // Assumed p50 for models without latency samples yet
+    private static final long UNKNOWN_LATENCY_MS = 5000;
+
+    private final String[] models;
+    private final LatencyStats stats;
+
+    public static class Route {
+        public final String[] order;
+        public final String reason;
+
+        Route(String[] order, String reason) {
+            this.order = order;
+            this.reason = reason;
+        }
+
+        public String primaryModel() {
+            return order[0];
+        }
+    }
+
+    public ModelRouter(String[] models, LatencyStats stats) {
+        this.models = models;
+        this.stats = stats;
+    }
+
+    public Route route(String prompt, boolean hasAttachment, String preferredModel) {
+        int promptLength = prompt.length();
+
+        // User override: preferred model first, everything else as fallback
+        if (preferredModel != null && !AUTO.equals(preferredModel) && Arrays.asList(models).contains(preferredModel)) {
+            List<String> order = rankByHealth(promptLength, new ArrayList<>(Arrays.asList(models)));
+            order.remove(preferredModel);
+            order.add(0, preferredModel);
+            return new Route(order.toArray(new String[0]), "preferred");
+        }
+
+        boolean shortPrompt = promptLength < SHORT_PROMPT_CHARS && !hasAttachment;
+        List<String> preferredTier = new ArrayList<>();
+        List<String> otherTier = new ArrayList<>();
+        for (String model : models) {
+            boolean fast = FAST_MODELS.contains(model);
+            if (fast == shortPrompt) {
+                preferredTier.add(model);
+            } else {
+                otherTier.add(model);
+            }
+        }
+
+        List<String> ranked = rankByHealth(promptLength, preferredTier);
+        ranked.addAll(rankByHealth(promptLength, otherTier));
+        List<String> order = demoteUnhealthy(ranked);
+
+        String reason;
+        if (hasAttachment) {
+            reason = "attachment";
+        } else if (shortPrompt) {
+            reason = "short prompt";
+        } else {
+            reason = "long prompt";
+        }
+        if (!order.get(0).equals(ranked.get(0))) {
+            reason += ", rerouted on errors";
+        }
+        return new Route(order.toArray(new String[0]), reason);
+    }
+
+    // Sorts by expected latency, inflated by the model's recent error rate
+    private List<String> rankByHealth(int promptLength, List<String> candidates) {
+        List<String> ranked = new ArrayList<>(candidates);
+        Collections.sort(ranked, (a, b) -> Double.compare(score(a, promptLength), score(b, promptLength)));
+        return ranked;
+    }
+
+    private double score(String model, int promptLength) {
+        long p50 = stats.responsePercentile(model, promptLength, 0.5);
+        double expected = p50 < 0 ? UNKNOWN_LATENCY_MS : p50;
+        return expected * (1 + 4 * stats.errorRate(model));
+    }
+
+    private List<String> demoteUnhealthy(List<String> order) {
+        List<String> healthy = new ArrayList<>();
+        List<String> unhealthy = new ArrayList<>();
+        for (String model : order) {
+            if (stats.outcomeCount(model) >= MIN_OUTCOMES_FOR_HEALTH
+                && stats.errorRate(model) > UNHEALTHY_ERROR_RATE) {
+                unhealthy.add(model);
+            } else {
+                healthy.add(model);
+            }
+        }
+        healthy.addAll(unhealthy);
+        return healthy;
+    }
+}
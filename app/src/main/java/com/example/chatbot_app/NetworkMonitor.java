@@ -0,0 +1,66 @@
+package com.example.chatbot_app;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+/**
+ * Tracks whether the default network can reach the internet, driven by
+ * ConnectivityManager callbacks rather than probing before every request.
+ */
+public class NetworkMonitor {
+
+    private final ConnectivityManager connectivityManager;
+    private final MutableLiveData<Boolean> online;
+    private volatile boolean unmetered;
+
+    public NetworkMonitor(Context context) {
+        connectivityManager = context.getSystemService(ConnectivityManager.class);
+        NetworkCapabilities current =
+            connectivityManager.getNetworkCapabilities(connectivityManager.getActiveNetwork());
+        online = new MutableLiveData<>(hasInternet(current));
+        unmetered = isUnmetered(current);
+
+        connectivityManager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onCapabilitiesChanged(@NonNull Network network, @NonNull NetworkCapabilities capabilities) {
+                unmetered = isUnmetered(capabilities);
+                online.postValue(hasInternet(capabilities));
+            }
+
+            @Override
+            public void onLost(@NonNull Network network) {
+                unmetered = false;
+                online.postValue(false);
+            }
+        });
+    }
+
+    public LiveData<Boolean> getOnline() {
+        return online;
+    }
+
+    public boolean isOnline() {
+        return Boolean.TRUE.equals(online.getValue());
+    }
+
+    // Wi-Fi or similar; speculative work is only worth doing when bytes are free
+    public boolean isUnmetered() {
+        return unmetered;
+    }
+
+    private static boolean isUnmetered(NetworkCapabilities capabilities) {
+        return capabilities != null
+            && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+    }
+
+    private static boolean hasInternet(NetworkCapabilities capabilities) {
+        return capabilities != null
+            && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+            && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.chatbot_app;
+
+import java.util.UUID;
+
+/**
+ * A bot reply that has been requested but may not have arrived yet. Speculative
+ * replies start uncommitted and only join the conversation once committed.
+ */
+public class PendingReply {
+
+    final String key;
+    final String prompt;
+    final boolean hasAttachment;
+    final ChatCall call;
+    String response;
+    boolean committed = false;
+    // Handed to an executor; false while it waits in the outbox for the network
+    boolean dispatched = false;
+    // The user message this answers, once committed
+    long userMessageId = -1;
+
+    PendingReply(String prompt, boolean hasAttachment) {
+        this(UUID.randomUUID().toString(), prompt, hasAttachment);
+    }
+
+    // Restores a reply queued in the outbox by an earlier run
+    PendingReply(String key, String prompt, boolean hasAttachment) {
+        this.key = key;
+        this.prompt = prompt;
+        this.hasAttachment = hasAttachment;
+        this.call = new ChatCall(key);
+    }
+
+    public String getPrompt() {
+        return prompt;
+    }
+
+    public boolean isCancelled() {
+        return call.isCancelled();
+    }
+
+    ChatOutbox.Entry toOutboxEntry() {
+        return new ChatOutbox.Entry(key, prompt, hasAttachment, userMessageId);
+    }
+}
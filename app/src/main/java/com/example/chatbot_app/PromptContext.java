@@ -0,0 +1,29 @@
+package com.example.chatbot_app;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything sent alongside the user's prompt: a summary of older turns, the
+ * recent turns verbatim and snippets recalled from long-term memory.
+ */
+public class PromptContext {
+
+    public static final PromptContext EMPTY =
+        new PromptContext(null, Collections.emptyList(), Collections.emptyList());
+
+    // Null until the conversation is long enough to be compacted
+    final String summary;
+    final List<ChatMessage> turns;
+    final List<String> documents;
+
+    public PromptContext(String summary, List<ChatMessage> turns, List<String> documents) {
+        this.summary = summary;
+        this.turns = turns;
+        this.documents = documents;
+    }
+
+    public PromptContext withDocuments(List<String> documents) {
+        return new PromptContext(summary, turns, documents);
+    }
+}
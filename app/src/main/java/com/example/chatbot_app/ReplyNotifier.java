@@ -0,0 +1,80 @@
+package com.example.chatbot_app;
+
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.content.ContextCompat;
+
+/**
+ * Notifications for background request work: the ongoing one required by the
+ * foreground service, and the "reply ready" one posted when the app isn't visible.
+ */
+public class ReplyNotifier {
+
+    private static final String CHANNEL_PROGRESS = "chat_progress";
+    private static final String CHANNEL_REPLIES = "chat_replies";
+    static final int PROGRESS_NOTIFICATION_ID = 1001;
+    private static final int REPLY_NOTIFICATION_ID = 1002;
+    private static final int PREVIEW_LENGTH = 120;
+
+    private final Context context;
+
+    public ReplyNotifier(Context context) {
+        this.context = context.getApplicationContext();
+        createChannels();
+    }
+
+    private void createChannels() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            return;
+        }
+        NotificationManager manager = context.getSystemService(NotificationManager.class);
+        manager.createNotificationChannel(new NotificationChannel(
+            CHANNEL_PROGRESS, "Replies in progress", NotificationManager.IMPORTANCE_LOW));
+        manager.createNotificationChannel(new NotificationChannel(
+            CHANNEL_REPLIES, "New replies", NotificationManager.IMPORTANCE_DEFAULT));
+    }
+
+    public Notification buildProgressNotification() {
+        return new NotificationCompat.Builder(context, CHANNEL_PROGRESS)
+            .setSmallIcon(R.drawable.ic_notification_icon_new)
+            .setContentTitle("AI ChatBot")
+            .setContentText("Generating reply...")
+            .setOngoing(true)
+            .setSilent(true)
+            .setContentIntent(openAppIntent())
+            .build();
+    }
+
+    public void notifyReply(String reply) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+            && ContextCompat.checkSelfPermission(context, Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            return;
+        }
+        String preview = reply.length() > PREVIEW_LENGTH ? reply.substring(0, PREVIEW_LENGTH) + "…" : reply;
+        Notification notification = new NotificationCompat.Builder(context, CHANNEL_REPLIES)
+            .setSmallIcon(R.drawable.ic_notification_icon_new)
+            .setContentTitle("New reply")
+            .setContentText(preview)
+            .setStyle(new NotificationCompat.BigTextStyle().bigText(preview))
+            .setAutoCancel(true)
+            .setContentIntent(openAppIntent())
+            .build();
+        NotificationManagerCompat.from(context).notify(REPLY_NOTIFICATION_ID, notification);
+    }
+
+    private PendingIntent openAppIntent() {
+        Intent intent = new Intent(context, MainActivity.class)
+            .setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        return PendingIntent.getActivity(context, 0, intent, PendingIntent.FLAG_IMMUTABLE);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.chatbot_app;
+
+/**
+ * Whole-request deadline shared by every model attempt in the fallback loop.
+ * Each attempt derives its connect/read timeouts from observed latency, capped
+ * by whatever is left of this deadline.
+ */
+public class RequestDeadline {
+
+    // Whole-request budgets per prompt-size bucket
+    private static final long[] TOTAL_BUDGET_MS = {45000, 75000, 120000};
+
+    // Timeouts used until enough latency samples exist
+    private static final int DEFAULT_CONNECT_TIMEOUT_MS = 10000;
+    private static final int DEFAULT_READ_TIMEOUT_MS = 30000;
+
+    // Clamp ranges for adaptive timeouts
+    private static final int MIN_CONNECT_TIMEOUT_MS = 1500;
+    private static final int MAX_CONNECT_TIMEOUT_MS = 10000;
+    private static final int MIN_READ_TIMEOUT_MS = 5000;
+    private static final int MAX_READ_TIMEOUT_MS = 90000;
+
+    // An attempt with less time than this left is not worth starting
+    private static final long MIN_ATTEMPT_BUDGET_MS = 2000;
+
+    private final long startNanos;
+    private final long budgetMs;
+
+    public RequestDeadline(long budgetMs) {
+        this.startNanos = System.nanoTime();
+        this.budgetMs = budgetMs;
+    }
+
+    public static RequestDeadline forPrompt(int promptLength) {
+        return new RequestDeadline(TOTAL_BUDGET_MS[LatencyStats.bucketFor(promptLength)]);
+    }
+
+    public long elapsedMs() {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    public long remainingMs() {
+        return Math.max(0, budgetMs - elapsedMs());
+    }
+
+    public boolean canStartAttempt() {
+        return remainingMs() >= MIN_ATTEMPT_BUDGET_MS;
+    }
+
+    public int connectTimeoutMs(LatencyStats stats) {
+        long p99 = stats.connectPercentile(0.99);
+        int timeout = p99 < 0
+            ? DEFAULT_CONNECT_TIMEOUT_MS
+            : clamp(p99 * 2, MIN_CONNECT_TIMEOUT_MS, MAX_CONNECT_TIMEOUT_MS);
+        return capToRemaining(timeout);
+    }
+
+    public int readTimeoutMs(LatencyStats stats, String model, int promptLength) {
+        long p99 = stats.responsePercentile(model, promptLength, 0.99);
+        int timeout = p99 < 0
+            ? DEFAULT_READ_TIMEOUT_MS
+            : clamp(p99 + p99 / 2 + 1000, MIN_READ_TIMEOUT_MS, MAX_READ_TIMEOUT_MS);
+        return capToRemaining(timeout);
+    }
+
+    private int capToRemaining(int timeoutMs) {
+        return (int) Math.max(1, Math.min(timeoutMs, remainingMs()));
+    }
+
+    private static int clamp(long value, int min, int max) {
+        return (int) Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.chatbot_app;
+
+/**
+ * Trace hooks for the request pipeline. Kept free of Android types so the API
+ * client still runs on a plain JVM; the app plugs in AppTracer.
+ */
+public interface RequestTracer {
+
+    RequestTracer NONE = new RequestTracer() {
+        @Override
+        public void beginSection(String name) {
+        }
+
+        @Override
+        public void endSection() {
+        }
+
+        @Override
+        public void beginAsyncSection(String name, int cookie) {
+        }
+
+        @Override
+        public void endAsyncSection(String name, int cookie) {
+        }
+    };
+
+    // Names a section after its request so slices on different threads can be matched up
+    static String label(String section, String requestKey) {
+        return requestKey == null ? section : section + " #" + requestKey;
+    }
+
+    // Sections nest per thread and must end on the thread that began them
+    void beginSection(String name);
+
+    void endSection();
+
+    // Async sections may start and end on different threads; cookie tells overlapping ones apart
+    void beginAsyncSection(String name, int cookie);
+
+    void endAsyncSection(String name, int cookie);
+}
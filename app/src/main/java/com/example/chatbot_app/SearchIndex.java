@@ -0,0 +1,437 @@
+package com.example.chatbot_app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index over the conversation log. Only postings and log
+ * offsets are kept; message text stays on disk and is read back for the hits.
+ *
+ * Each term's postings are varint-encoded deltas: document gap, position count,
+ * then position gaps. Documents are log ordinals, so gaps stay small.
+ *
+ * Queries: plain words must all match, word* matches by prefix and "quoted words"
+ * must appear as a phrase. Not thread-safe; use from a single I/O thread.
+ *
+ * When the log is cut back, the documents past the cut are marked removed
+ * rather than unpicked from every posting list; later documents get new
+ * ordinals, so postings stay in order.
+ *
+ * sizeBytes() may be read from any thread; it is a running estimate kept by add().
+ */
+public class SearchIndex {
+
+    private static final int INITIAL_LOG_CAPACITY = 256;
+    // Tree entry, key string and posting list headers for one term
+    private static final int TERM_OVERHEAD_BYTES = 96;
+
+    public static class Hit {
+        public final int ordinal;
+        public final long offset;
+
+        Hit(int ordinal, long offset) {
+            this.ordinal = ordinal;
+            this.offset = offset;
+        }
+    }
+
+    private static class PostingList {
+        byte[] data = new byte[8];
+        int length = 0;
+        int lastDoc = -1;
+
+        void add(int doc, int[] positions, int count) {
+            writeVarInt(doc - lastDoc);
+            writeVarInt(count);
+            int lastPosition = 0;
+            for (int i = 0; i < count; i++) {
+                writeVarInt(positions[i] - lastPosition);
+                lastPosition = positions[i];
+            }
+            lastDoc = doc;
+        }
+
+        private void writeVarInt(int value) {
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+    }
+
+    // Walks one posting list; positions of the current document are decoded on demand
+    private static class Cursor {
+        private final PostingList list;
+        private int pos = 0;
+        int doc = -1;
+        int count;
+        private int positionsStart;
+
+        Cursor(PostingList list) {
+            this.list = list;
+        }
+
+        boolean next() {
+            if (doc >= 0) {
+                // Skip the previous document's positions
+                pos = positionsStart;
+                for (int i = 0; i < count; i++) {
+                    readVarInt();
+                }
+            }
+            if (pos >= list.length) {
+                return false;
+            }
+            doc += readVarInt();
+            count = readVarInt();
+            positionsStart = pos;
+            return true;
+        }
+
+        int[] positions() {
+            int saved = pos;
+            pos = positionsStart;
+            int[] positions = new int[count];
+            int last = 0;
+            for (int i = 0; i < count; i++) {
+                last += readVarInt();
+                positions[i] = last;
+            }
+            pos = saved;
+            return positions;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = list.data[pos++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+
+    // Sorted so prefix queries are a range scan
+    private final TreeMap<String, PostingList> terms = new TreeMap<>();
+    private long[] offsets = new long[INITIAL_LOG_CAPACITY];
+    private int documentCount = 0;
+    private final BitSet removed = new BitSet();
+    private volatile long sizeBytes = 8L * INITIAL_LOG_CAPACITY;
+
+    public int size() {
+        return documentCount - removed.cardinality();
+    }
+
+    public void clear() {
+        terms.clear();
+        offsets = new long[INITIAL_LOG_CAPACITY];
+        documentCount = 0;
+        removed.clear();
+        sizeBytes = 8L * INITIAL_LOG_CAPACITY;
+    }
+
+    // Approximate heap held by the postings and the offset table
+    public long sizeBytes() {
+        return sizeBytes;
+    }
+
+    // The log was cut at offset: drops every document stored there or later
+    public void removeFrom(long offset) {
+        // Live documents are in log order; removed ones may sit anywhere behind them
+        for (int doc = documentCount - 1; doc >= 0; doc--) {
+            if (removed.get(doc)) {
+                continue;
+            }
+            if (offsets[doc] < offset) {
+                break;
+            }
+            removed.set(doc);
+        }
+    }
+
+    // Indexes the message stored at offset; call in log order
+    public void add(long offset, String text) {
+        int doc = documentCount++;
+        long bytes = sizeBytes;
+        if (doc == offsets.length) {
+            bytes += 8L * offsets.length;
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[doc] = offset;
+
+        List<String> tokens = tokenize(text);
+        Map<String, int[]> termPositions = new HashMap<>();
+        Map<String, Integer> termCounts = new HashMap<>();
+        for (int position = 0; position < tokens.size(); position++) {
+            String token = tokens.get(position);
+            int[] positions = termPositions.get(token);
+            int count = termCounts.getOrDefault(token, 0);
+            if (positions == null) {
+                positions = new int[4];
+            } else if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            positions[count] = position;
+            termPositions.put(token, positions);
+            termCounts.put(token, count + 1);
+        }
+        for (Map.Entry<String, int[]> entry : termPositions.entrySet()) {
+            PostingList list = terms.get(entry.getKey());
+            if (list == null) {
+                list = new PostingList();
+                terms.put(entry.getKey(), list);
+                bytes += TERM_OVERHEAD_BYTES + 2L * entry.getKey().length() + list.data.length;
+            }
+            int capacity = list.data.length;
+            list.add(doc, entry.getValue(), termCounts.get(entry.getKey()));
+            bytes += list.data.length - capacity;
+        }
+        sizeBytes = bytes;
+    }
+
+    // Newest matches first
+    public List<Hit> search(String query, int limit) {
+        List<Hit> hits = new ArrayList<>();
+        int[] docs = null;
+        for (Clause clause : parse(query)) {
+            int[] matched = clause.match(this);
+            docs = docs == null ? matched : intersect(docs, matched);
+            if (docs.length == 0) {
+                return hits;
+            }
+        }
+        if (docs == null) {
+            return hits;
+        }
+        for (int i = docs.length - 1; i >= 0 && hits.size() < limit; i--) {
+            if (!removed.get(docs[i])) {
+                hits.add(new Hit(docs[i], offsets[docs[i]]));
+            }
+        }
+        return hits;
+    }
+
+    // Character ranges [start, end) in text matched by the query, for highlighting
+    public static List<int[]> highlightRanges(String text, String query) {
+        List<Clause> clauses = parse(query);
+        List<int[]> ranges = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            if (!Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            String token = text.substring(start, i).toLowerCase(Locale.ROOT);
+            for (Clause clause : clauses) {
+                if (clause.mentions(token)) {
+                    ranges.add(new int[]{start, i});
+                    break;
+                }
+            }
+        }
+        return ranges;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            if (!Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+        }
+        return tokens;
+    }
+
+    private static class Clause {
+        final List<String> words;
+        final boolean prefix;
+
+        Clause(List<String> words, boolean prefix) {
+            this.words = words;
+            this.prefix = prefix;
+        }
+
+        boolean mentions(String token) {
+            for (String word : words) {
+                if (prefix ? token.startsWith(word) : token.equals(word)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int[] match(SearchIndex index) {
+            if (prefix) {
+                return index.prefixDocs(words.get(0));
+            }
+            if (words.size() == 1) {
+                PostingList list = index.terms.get(words.get(0));
+                return list == null ? new int[0] : docs(list);
+            }
+            return index.phraseDocs(words);
+        }
+    }
+
+    private static List<Clause> parse(String query) {
+        List<Clause> clauses = new ArrayList<>();
+        String[] parts = query.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            if (i % 2 == 1) {
+                // Inside quotes
+                List<String> words = tokenize(parts[i]);
+                if (!words.isEmpty()) {
+                    clauses.add(new Clause(words, false));
+                }
+                continue;
+            }
+            for (String word : parts[i].trim().split("\\s+")) {
+                boolean prefix = word.endsWith("*");
+                for (String token : tokenize(word)) {
+                    List<String> single = new ArrayList<>();
+                    single.add(token);
+                    clauses.add(new Clause(single, prefix));
+                }
+            }
+        }
+        return clauses;
+    }
+
+    private int[] prefixDocs(String prefix) {
+        SortedMap<String, PostingList> range = terms.subMap(prefix, prefix + Character.MAX_VALUE);
+        // A bitmap keeps the union linear however many terms share the prefix
+        BitSet matched = new BitSet(documentCount);
+        for (PostingList list : range.values()) {
+            Cursor cursor = new Cursor(list);
+            while (cursor.next()) {
+                matched.set(cursor.doc);
+            }
+        }
+        return matched.stream().toArray();
+    }
+
+    private int[] phraseDocs(List<String> words) {
+        Cursor[] cursors = new Cursor[words.size()];
+        for (int i = 0; i < words.size(); i++) {
+            PostingList list = terms.get(words.get(i));
+            if (list == null) {
+                return new int[0];
+            }
+            cursors[i] = new Cursor(list);
+            if (!cursors[i].next()) {
+                return new int[0];
+            }
+        }
+
+        IntList result = new IntList();
+        while (true) {
+            // Advance every cursor to the furthest current document
+            int target = cursors[0].doc;
+            for (Cursor cursor : cursors) {
+                target = Math.max(target, cursor.doc);
+            }
+            boolean aligned = true;
+            for (Cursor cursor : cursors) {
+                while (cursor.doc < target) {
+                    if (!cursor.next()) {
+                        return result.toArray();
+                    }
+                }
+                aligned &= cursor.doc == target;
+            }
+            if (!aligned) {
+                continue;
+            }
+            if (containsPhrase(cursors)) {
+                result.add(target);
+            }
+            if (!cursors[0].next()) {
+                return result.toArray();
+            }
+        }
+    }
+
+    private static boolean containsPhrase(Cursor[] cursors) {
+        int[][] positions = new int[cursors.length][];
+        for (int i = 0; i < cursors.length; i++) {
+            positions[i] = cursors[i].positions();
+        }
+        for (int start : positions[0]) {
+            boolean match = true;
+            for (int i = 1; i < cursors.length && match; i++) {
+                match = Arrays.binarySearch(positions[i], start + i) >= 0;
+            }
+            if (match) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] docs(PostingList list) {
+        IntList docs = new IntList();
+        Cursor cursor = new Cursor(list);
+        while (cursor.next()) {
+            docs.add(cursor.doc);
+        }
+        return docs.toArray();
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        IntList result = new IntList();
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result.add(a[i]);
+                i++;
+                j++;
+            }
+        }
+        return result.toArray();
+    }
+
+    private static class IntList {
+        int[] values = new int[16];
+        int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
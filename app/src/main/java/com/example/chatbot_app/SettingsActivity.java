@@ -9,6 +9,7 @@ import androidx.appcompat.app.AppCompatDelegate;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.card.MaterialCardView;
 import com.google.android.material.slider.Slider;
+import com.google.android.material.textfield.MaterialAutoCompleteTextView;
 import com.google.android.material.switchmaterial.SwitchMaterial;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.button.MaterialButton;
@@ -21,9 +22,13 @@ public class SettingsActivity extends AppCompatActivity {
     private SwitchMaterial notificationsSwitch;
     private SwitchMaterial voiceInputSwitch;
     private SwitchMaterial autoSendSwitch;
+    private SwitchMaterial continuousVoiceSwitch;
     private Slider responseSpeedSlider;
     private Slider textSizeSlider;
+    private Slider prefetchQuotaSlider;
+    private Slider tokenBudgetSlider;
     private TextInputEditText customApiKeyInput;
+    private MaterialAutoCompleteTextView preferredModelInput;
     private MaterialButton saveButton;
     private MaterialButton resetButton;
     
@@ -31,6 +36,7 @@ public class SettingsActivity extends AppCompatActivity {
     private SharedPreferences preferences;
     private static final String PREFS_NAME = "ChatbotSettings";
     
+    
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -52,9 +58,18 @@ public class SettingsActivity extends AppCompatActivity {
         notificationsSwitch = findViewById(R.id.notificationsSwitch);
         voiceInputSwitch = findViewById(R.id.voiceInputSwitch);
         autoSendSwitch = findViewById(R.id.autoSendSwitch);
+        continuousVoiceSwitch = findViewById(R.id.continuousVoiceSwitch);
         responseSpeedSlider = findViewById(R.id.responseSpeedSlider);
         textSizeSlider = findViewById(R.id.textSizeSlider);
+        prefetchQuotaSlider = findViewById(R.id.prefetchQuotaSlider);
+        tokenBudgetSlider = findViewById(R.id.tokenBudgetSlider);
         customApiKeyInput = findViewById(R.id.customApiKeyInput);
+        preferredModelInput = findViewById(R.id.preferredModelInput);
+        // "auto" lets the router decide per request
+        String[] modelOptions = new String[CohereApiClient.AVAILABLE_MODELS.length + 1];
+        modelOptions[0] = ModelRouter.AUTO;
+        System.arraycopy(CohereApiClient.AVAILABLE_MODELS, 0, modelOptions, 1, CohereApiClient.AVAILABLE_MODELS.length);
+        preferredModelInput.setSimpleItems(modelOptions);
         saveButton = findViewById(R.id.saveButton);
         resetButton = findViewById(R.id.resetButton);
     }
@@ -73,8 +88,12 @@ public class SettingsActivity extends AppCompatActivity {
         notificationsSwitch.setChecked(preferences.getBoolean("notifications", true));
         voiceInputSwitch.setChecked(preferences.getBoolean("voice_input", true));
         autoSendSwitch.setChecked(preferences.getBoolean("auto_send", false));
+        continuousVoiceSwitch.setChecked(preferences.getBoolean("continuous_voice", false));
         responseSpeedSlider.setValue(preferences.getFloat("response_speed", 1.0f));
         textSizeSlider.setValue(preferences.getFloat("text_size", 16.0f));
+        prefetchQuotaSlider.setValue(getPrefetchQuota(preferences));
+        tokenBudgetSlider.setValue(preferences.getInt("daily_token_budget_k", 0));
+        preferredModelInput.setText(getPreferredModel(preferences), false);
         
         String savedApiKey = preferences.getString("custom_api_key", "");
         if (!savedApiKey.isEmpty()) {
@@ -108,6 +127,11 @@ public class SettingsActivity extends AppCompatActivity {
             Toast.makeText(this, "Auto send " + (isChecked ? "enabled" : "disabled"), Toast.LENGTH_SHORT).show();
         });
         
+        // Continuous voice toggle
+        continuousVoiceSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            Toast.makeText(this, "Hands-free conversation " + (isChecked ? "enabled" : "disabled"), Toast.LENGTH_SHORT).show();
+        });
+        
         // Response speed slider
         responseSpeedSlider.addOnChangeListener((slider, value, fromUser) -> {
             String speedText = value == 0.5f ? "Slow" : value == 1.0f ? "Normal" : "Fast";
@@ -119,6 +143,18 @@ public class SettingsActivity extends AppCompatActivity {
             Toast.makeText(this, "Text size: " + (int)value + "sp", Toast.LENGTH_SHORT).show();
         });
         
+        // Prefetch quota slider
+        prefetchQuotaSlider.addOnChangeListener((slider, value, fromUser) -> {
+            String quotaText = value == 0 ? "off" : (int)value + " answers per day";
+            Toast.makeText(this, "Suggestion prefetch: " + quotaText, Toast.LENGTH_SHORT).show();
+        });
+        
+        // Daily token budget slider
+        tokenBudgetSlider.addOnChangeListener((slider, value, fromUser) -> {
+            String budgetText = value == 0 ? "unlimited" : (int)value + "k tokens per day";
+            Toast.makeText(this, "Token budget: " + budgetText, Toast.LENGTH_SHORT).show();
+        });
+        
         // Save button
         saveButton.setOnClickListener(v -> saveSettings());
         
@@ -133,8 +169,12 @@ public class SettingsActivity extends AppCompatActivity {
         editor.putBoolean("notifications", notificationsSwitch.isChecked());
         editor.putBoolean("voice_input", voiceInputSwitch.isChecked());
         editor.putBoolean("auto_send", autoSendSwitch.isChecked());
+        editor.putBoolean("continuous_voice", continuousVoiceSwitch.isChecked());
         editor.putFloat("response_speed", responseSpeedSlider.getValue());
         editor.putFloat("text_size", textSizeSlider.getValue());
+        editor.putInt("prefetch_quota", (int) prefetchQuotaSlider.getValue());
+        editor.putInt("daily_token_budget_k", (int) tokenBudgetSlider.getValue());
+        editor.putString("preferred_model", preferredModelInput.getText().toString());
         
         String apiKey = customApiKeyInput.getText().toString().trim();
         if (!apiKey.isEmpty()) {
@@ -152,8 +192,12 @@ public class SettingsActivity extends AppCompatActivity {
         notificationsSwitch.setChecked(true);
         voiceInputSwitch.setChecked(true);
         autoSendSwitch.setChecked(false);
+        continuousVoiceSwitch.setChecked(false);
         responseSpeedSlider.setValue(1.0f);
         textSizeSlider.setValue(16.0f);
+        prefetchQuotaSlider.setValue(5.0f);
+        tokenBudgetSlider.setValue(0.0f);
+        preferredModelInput.setText(ModelRouter.AUTO, false);
         customApiKeyInput.setText("");
         
         // Clear saved preferences
@@ -191,6 +235,10 @@ public class SettingsActivity extends AppCompatActivity {
         return prefs.getBoolean("auto_send", false);
     }
     
+    public static boolean isContinuousVoiceEnabled(SharedPreferences prefs) {
+        return prefs.getBoolean("continuous_voice", false);
+    }
+    
     public static float getResponseSpeed(SharedPreferences prefs) {
         return prefs.getFloat("response_speed", 1.0f);
     }
@@ -202,4 +250,17 @@ public class SettingsActivity extends AppCompatActivity {
     public static String getCustomApiKey(SharedPreferences prefs) {
         return prefs.getString("custom_api_key", "");
     }
+    
+    public static String getPreferredModel(SharedPreferences prefs) {
+        return prefs.getString("preferred_model", ModelRouter.AUTO);
+    }
+    
+    public static int getPrefetchQuota(SharedPreferences prefs) {
+        return prefs.getInt("prefetch_quota", 5);
+    }
+    
+    // In tokens; 0 means no limit
+    public static int getDailyTokenBudget(SharedPreferences prefs) {
+        return prefs.getInt("daily_token_budget_k", 0) * 1000;
+    }
 }
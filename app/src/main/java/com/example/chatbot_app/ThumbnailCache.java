@@ -0,0 +1,336 @@
+package com.example.chatbot_app;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.view.View;
+import android.widget.ImageView;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Image attachments and their chat-bubble thumbnails.
+ *
+ * An attachment is stored once on disk under the hash of its bytes. Its
+ * thumbnails are made off the main thread at display size and kept in two tiers:
+ * - a memory LruCache bounded by bytes;
+ * - JPEG files in the cache directory, so a restart doesn't decode full images.
+ *
+ * A bitmap is reused for later decodes only when it is both evicted from memory
+ * and no longer shown by any view. Views release their bitmap when they leave
+ * the window. Memory therefore stays bounded however many images a chat holds.
+ *
+ * Main thread only, apart from store(), which may be called from any thread.
+ */
+public class ThumbnailCache {
+
+    // Share of the heap given to decoded thumbnails
+    private static final int MEMORY_CACHE_DIVISOR = 16;
+    private static final int THUMBNAIL_QUALITY = 85;
+
+    private final File attachmentDir;
+    private final File thumbnailDir;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final BitmapPool pool;
+    private final LruCache<String, Bitmap> memoryCache;
+    // Views showing each bitmap; a bitmap is only recycled into the pool at zero
+    private final Map<Bitmap, Integer> useCounts = new IdentityHashMap<>();
+    private final Map<Bitmap, Boolean> cached = new IdentityHashMap<>();
+    private final Map<ImageView, Bitmap> shown = new IdentityHashMap<>();
+    // The thumbnail each view last asked for; weak so dropped cards can be collected
+    private final Map<ImageView, String> requested = new WeakHashMap<>();
+
+    public ThumbnailCache(File attachmentDir, File thumbnailDir) {
+        this.attachmentDir = attachmentDir;
+        this.thumbnailDir = thumbnailDir;
+        int cacheBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / MEMORY_CACHE_DIVISOR);
+        pool = new BitmapPool(cacheBytes / 4);
+        memoryCache = new LruCache<String, Bitmap>(cacheBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                cached.remove(oldValue);
+                recycleIfUnused(oldValue);
+            }
+        };
+    }
+
+    // Saves an attachment's bytes and returns the hash it is known by from then on
+    public String store(byte[] imageBytes) {
+        String hash = hash(imageBytes);
+        executor.execute(() -> {
+            File file = attachmentFile(hash);
+            if (file.exists()) {
+                return;
+            }
+            attachmentDir.mkdirs();
+            File temp = new File(file.getPath() + ".tmp");
+            try (OutputStream out = new FileOutputStream(temp)) {
+                out.write(imageBytes);
+            } catch (IOException e) {
+                temp.delete();
+                return;
+            }
+            temp.renameTo(file);
+        });
+        return hash;
+    }
+
+    // Shows the thumbnail for hash in view, no larger than sizePx on its longer side
+    public void load(ImageView view, String hash, int sizePx) {
+        String key = hash + "@" + sizePx;
+        if (requested.put(view, key) == null) {
+            view.addOnAttachStateChangeListener(new View.OnAttachStateChangeListener() {
+                @Override
+                public void onViewAttachedToWindow(View v) {
+                    String wanted = requested.get(view);
+                    if (wanted != null && !shown.containsKey(view)) {
+                        int at = wanted.lastIndexOf('@');
+                        load(view, wanted.substring(0, at), Integer.parseInt(wanted.substring(at + 1)));
+                    }
+                }
+
+                @Override
+                public void onViewDetachedFromWindow(View v) {
+                    release(view);
+                }
+            });
+        }
+
+        Bitmap hit = memoryCache.get(key);
+        if (hit != null) {
+            show(view, hit);
+            return;
+        }
+        release(view);
+        executor.execute(() -> {
+            Bitmap bitmap = decodeThumbnail(hash, sizePx);
+            mainHandler.post(() -> {
+                if (bitmap == null) {
+                    return;
+                }
+                // Marked first: put() may evict it straight away, and then it must count as unused
+                cached.put(bitmap, Boolean.TRUE);
+                memoryCache.put(key, bitmap);
+                if (key.equals(requested.get(view)) && view.isAttachedToWindow()) {
+                    show(view, bitmap);
+                }
+            });
+        });
+    }
+
+    public void clear() {
+        for (ImageView view : new ArrayList<>(shown.keySet())) {
+            release(view);
+        }
+        memoryCache.evictAll();
+        pool.clear();
+        executor.execute(() -> {
+            deleteAll(attachmentDir);
+            deleteAll(thumbnailDir);
+        });
+    }
+
+    public long cachedBytes() {
+        return memoryCache.size();
+    }
+
+    public long pooledBytes() {
+        return pool.bytes();
+    }
+
+    // Thumbnails on screen stay with their views; the rest decode again from disk when needed
+    public void trimCached() {
+        memoryCache.evictAll();
+        // Evicted bitmaps nobody shows went to the pool; don't keep them there either
+        pool.clear();
+    }
+
+    public void trimPool() {
+        pool.clear();
+    }
+
+    private void show(ImageView view, Bitmap bitmap) {
+        if (shown.get(view) == bitmap) {
+            return;
+        }
+        release(view);
+        view.setImageBitmap(bitmap);
+        shown.put(view, bitmap);
+        Integer count = useCounts.get(bitmap);
+        useCounts.put(bitmap, count == null ? 1 : count + 1);
+    }
+
+    private void release(ImageView view) {
+        Bitmap bitmap = shown.remove(view);
+        if (bitmap == null) {
+            return;
+        }
+        // The view must not draw a bitmap that may be handed to the next decode
+        view.setImageDrawable(null);
+        Integer count = useCounts.get(bitmap);
+        if (count == null || count <= 1) {
+            useCounts.remove(bitmap);
+            recycleIfUnused(bitmap);
+        } else {
+            useCounts.put(bitmap, count - 1);
+        }
+    }
+
+    private void recycleIfUnused(Bitmap bitmap) {
+        if (!cached.containsKey(bitmap) && !useCounts.containsKey(bitmap)) {
+            pool.put(bitmap);
+        }
+    }
+
+    // Background thread: disk thumbnail if there is one, else the attachment sampled down to size
+    private Bitmap decodeThumbnail(String hash, int sizePx) {
+        File thumbnail = new File(thumbnailDir, hash + "_" + sizePx + ".jpg");
+        if (thumbnail.exists()) {
+            Bitmap bitmap = decode(thumbnail, 1);
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
+        File original = attachmentFile(hash);
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(original.getPath(), bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+        int sampleSize = 1;
+        while (Math.max(bounds.outWidth, bounds.outHeight) / (sampleSize * 2) >= sizePx) {
+            sampleSize *= 2;
+        }
+        Bitmap bitmap = decode(original, sampleSize);
+        if (bitmap == null) {
+            return null;
+        }
+        thumbnailDir.mkdirs();
+        try (OutputStream out = new FileOutputStream(thumbnail)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, THUMBNAIL_QUALITY, out);
+        } catch (IOException e) {
+            thumbnail.delete();
+        }
+        return bitmap;
+    }
+
+    private Bitmap decode(File file, int sampleSize) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), bounds);
+        int width = (bounds.outWidth + sampleSize - 1) / sampleSize;
+        int height = (bounds.outHeight + sampleSize - 1) / sampleSize;
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inMutable = true;
+        options.inBitmap = pool.take(width * height * 4);
+        try {
+            return BitmapFactory.decodeFile(file.getPath(), options);
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap didn't fit after all; decode into a fresh one
+            options.inBitmap = null;
+            return BitmapFactory.decodeFile(file.getPath(), options);
+        }
+    }
+
+    private File attachmentFile(String hash) {
+        return new File(attachmentDir, hash + ".img");
+    }
+
+    private static void deleteAll(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format(Locale.US, "%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Bitmaps nobody shows any more, kept for the next decode to write into.
+     * Bounded by bytes; the oldest go first. Thread-safe.
+     */
+    private static class BitmapPool {
+
+        private final int maxBytes;
+        private final List<Bitmap> bitmaps = new ArrayList<>();
+        private int bytes = 0;
+
+        BitmapPool(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized void put(Bitmap bitmap) {
+            if (!bitmap.isMutable() || bitmap.isRecycled() || bitmap.getAllocationByteCount() > maxBytes) {
+                return;
+            }
+            bitmaps.add(bitmap);
+            bytes += bitmap.getAllocationByteCount();
+            while (bytes > maxBytes) {
+                bytes -= bitmaps.remove(0).getAllocationByteCount();
+            }
+        }
+
+        // The smallest pooled bitmap with room for requiredBytes, or null
+        synchronized Bitmap take(int requiredBytes) {
+            int best = -1;
+            for (int i = 0; i < bitmaps.size(); i++) {
+                int size = bitmaps.get(i).getAllocationByteCount();
+                if (size >= requiredBytes && (best < 0 || size < bitmaps.get(best).getAllocationByteCount())) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                return null;
+            }
+            Bitmap bitmap = bitmaps.remove(best);
+            bytes -= bitmap.getAllocationByteCount();
+            return bitmap;
+        }
+
+        synchronized void clear() {
+            bitmaps.clear();
+            bytes = 0;
+        }
+
+        synchronized int bytes() {
+            return bytes;
+        }
+    }
+}
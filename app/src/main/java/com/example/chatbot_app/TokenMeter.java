@@ -0,0 +1,129 @@
+package com.example.chatbot_app;
+
+import org.json.JSONObject;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.Locale;
+
+/**
+ * Counts billed tokens for this session and for the current day, and enforces an
+ * optional daily budget. The daily totals are kept in a small file so they
+ * survive restarts. The day rolls over at local midnight. Thread-safe.
+ */
+public class TokenMeter {
+
+    private final File file;
+
+    private int sessionInput = 0;
+    private int sessionOutput = 0;
+    private int sessionRequests = 0;
+    private String day;
+    private int dayInput = 0;
+    private int dayOutput = 0;
+    // 0 means no limit
+    private volatile int dailyBudget = 0;
+
+    // file may be null to keep counts in memory only
+    public TokenMeter(File file) {
+        this.file = file;
+        this.day = today();
+        load();
+    }
+
+    public void setDailyBudget(int tokens) {
+        dailyBudget = Math.max(0, tokens);
+    }
+
+    public synchronized void record(int inputTokens, int outputTokens) {
+        if (inputTokens <= 0 && outputTokens <= 0) {
+            return;
+        }
+        rollOver();
+        sessionInput += inputTokens;
+        sessionOutput += outputTokens;
+        sessionRequests++;
+        dayInput += inputTokens;
+        dayOutput += outputTokens;
+        save();
+    }
+
+    public synchronized boolean isOverBudget() {
+        rollOver();
+        int budget = dailyBudget;
+        return budget > 0 && dayInput + dayOutput >= budget;
+    }
+
+    public synchronized String describe() {
+        rollOver();
+        int budget = dailyBudget;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "Tokens this session: %d in, %d out over %d requests\n",
+            sessionInput, sessionOutput, sessionRequests));
+        sb.append(String.format(Locale.US, "Tokens today: %d in, %d out", dayInput, dayOutput));
+        if (budget > 0) {
+            sb.append(String.format(Locale.US, " of %d budget", budget));
+        }
+        sb.append('\n');
+        return sb.toString();
+    }
+
+    private void rollOver() {
+        String now = today();
+        if (!now.equals(day)) {
+            day = now;
+            dayInput = 0;
+            dayOutput = 0;
+        }
+    }
+
+    private void load() {
+        if (file == null || !file.exists()) {
+            return;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int offset = 0;
+            int read;
+            while (offset < bytes.length && (read = in.read(bytes, offset, bytes.length - offset)) != -1) {
+                offset += read;
+            }
+            JSONObject json = new JSONObject(new String(bytes, 0, offset, StandardCharsets.UTF_8));
+            if (day.equals(json.optString("day"))) {
+                dayInput = json.optInt("input", 0);
+                dayOutput = json.optInt("output", 0);
+            }
+        } catch (Exception e) {
+            // Start the day from zero rather than fail
+        }
+    }
+
+    private void save() {
+        if (file == null) {
+            return;
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(new JSONObject()
+                .put("day", day)
+                .put("input", dayInput)
+                .put("output", dayOutput)
+                .toString().getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+
+    private static String today() {
+        Calendar calendar = Calendar.getInstance();
+        return String.format(Locale.US, "%04d-%02d-%02d", calendar.get(Calendar.YEAR),
+            calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+    }
+}
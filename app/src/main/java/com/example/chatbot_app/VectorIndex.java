@@ -0,0 +1,201 @@
+package com.example.chatbot_app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Approximate nearest-neighbour index over unit vectors (cosine similarity).
+ *
+ * Vectors live back to back in one float array. Random-hyperplane LSH hashes
+ * each vector into a few tables; a query reads its own bucket plus every bucket
+ * one bit away, then ranks those candidates exactly. Small indexes are simply
+ * scanned in full. Inserts are incremental. Not thread-safe.
+ */
+public class VectorIndex {
+
+    private static final int TABLES = 8;
+    private static final int BITS_PER_TABLE = 10;
+    // Below this many vectors a full scan is cheaper than hashing
+    private static final int EXACT_SCAN_LIMIT = 2000;
+    private static final long PLANE_SEED = 0x5eed_cafeL;
+    // Map entry, boxed key and bucket headers
+    private static final int BUCKET_OVERHEAD_BYTES = 64;
+
+    public static class Match {
+        public final int id;
+        public final float score;
+
+        Match(int id, float score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+
+    private static class Bucket {
+        int[] ids = new int[4];
+        int size = 0;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    private final int dimensions;
+    // TABLES * BITS_PER_TABLE hyperplanes, each `dimensions` long, back to back
+    private final float[] planes;
+    private final List<HashMap<Integer, Bucket>> tables = new ArrayList<>();
+    private float[] vectors;
+    private int size = 0;
+    // Running total for sizeBytes(), so it never walks the tables
+    private long bucketBytes = 0;
+
+    public VectorIndex(int dimensions) {
+        this.dimensions = dimensions;
+        // Fixed seed: the same vectors always land in the same buckets
+        Random random = new Random(PLANE_SEED);
+        planes = new float[TABLES * BITS_PER_TABLE * dimensions];
+        for (int i = 0; i < planes.length; i++) {
+            planes[i] = (float) random.nextGaussian();
+        }
+        for (int t = 0; t < TABLES; t++) {
+            tables.add(new HashMap<>());
+        }
+        vectors = new float[dimensions * 64];
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Approximate heap held by the planes, the vectors and the LSH buckets
+    public long sizeBytes() {
+        return 4L * planes.length + 4L * vectors.length + bucketBytes;
+    }
+
+    public void clear() {
+        for (HashMap<Integer, Bucket> table : tables) {
+            table.clear();
+        }
+        vectors = new float[dimensions * 64];
+        size = 0;
+        bucketBytes = 0;
+    }
+
+    // Stores a normalized copy and returns its id (ids are dense, in insert order)
+    public int add(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        int id = size++;
+        if (size * dimensions > vectors.length) {
+            vectors = Arrays.copyOf(vectors, vectors.length * 2);
+        }
+        System.arraycopy(vector, 0, vectors, id * dimensions, dimensions);
+        normalize(vectors, id * dimensions, dimensions);
+
+        for (int t = 0; t < TABLES; t++) {
+            int signature = signature(vectors, id * dimensions, t);
+            Bucket bucket = tables.get(t).get(signature);
+            if (bucket == null) {
+                bucket = new Bucket();
+                tables.get(t).put(signature, bucket);
+                bucketBytes += BUCKET_OVERHEAD_BYTES + 4L * bucket.ids.length;
+            }
+            int capacity = bucket.ids.length;
+            bucket.add(id);
+            bucketBytes += 4L * (bucket.ids.length - capacity);
+        }
+        return id;
+    }
+
+    // Best matches first, at most k, none scoring below minScore
+    public List<Match> nearest(float[] query, int k, float minScore) {
+        float[] q = Arrays.copyOf(query, dimensions);
+        normalize(q, 0, dimensions);
+
+        BitSet candidates = new BitSet(size);
+        if (size <= EXACT_SCAN_LIMIT) {
+            candidates.set(0, size);
+        } else {
+            for (int t = 0; t < TABLES; t++) {
+                int signature = signature(q, 0, t);
+                collect(t, signature, candidates);
+                // Multi-probe: neighbours one hyperplane away catch near misses
+                for (int bit = 0; bit < BITS_PER_TABLE; bit++) {
+                    collect(t, signature ^ (1 << bit), candidates);
+                }
+            }
+        }
+
+        List<Match> best = new ArrayList<>(k + 1);
+        for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+            float score = dot(q, 0, vectors, id * dimensions, dimensions);
+            if (score < minScore || (best.size() == k && score <= best.get(k - 1).score)) {
+                continue;
+            }
+            int at = best.size();
+            while (at > 0 && best.get(at - 1).score < score) {
+                at--;
+            }
+            best.add(at, new Match(id, score));
+            if (best.size() > k) {
+                best.remove(k);
+            }
+        }
+        return best;
+    }
+
+    private void collect(int table, int signature, BitSet candidates) {
+        Bucket bucket = tables.get(table).get(signature);
+        if (bucket == null) {
+            return;
+        }
+        for (int i = 0; i < bucket.size; i++) {
+            candidates.set(bucket.ids[i]);
+        }
+    }
+
+    private int signature(float[] source, int offset, int table) {
+        int signature = 0;
+        for (int bit = 0; bit < BITS_PER_TABLE; bit++) {
+            int plane = (table * BITS_PER_TABLE + bit) * dimensions;
+            if (dot(planes, plane, source, offset, dimensions) >= 0) {
+                signature |= 1 << bit;
+            }
+        }
+        return signature;
+    }
+
+    private static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0f;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    static void normalize(float[] vector) {
+        normalize(vector, 0, vector.length);
+    }
+
+    private static void normalize(float[] vector, int offset, int length) {
+        float norm = (float) Math.sqrt(dot(vector, offset, vector, offset, length));
+        if (norm == 0f) {
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            vector[offset + i] /= norm;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.example.chatbot_app;
+
+import org.json.JSONObject;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Long-term memory for prompts. Past user messages and attachment text are split
+ * into snippets, embedded and recalled by similarity. The best matches go out
+ * with each request, so the bot can use facts from long ago without the whole
+ * history being sent.
+ *
+ * Every snippet gets a local hashing vector. A Cohere embedding is added when
+ * the embed endpoint answers, and snippets stored offline are backfilled later.
+ * Lookups use the Cohere space once most snippets have a vector there.
+ * Snippets go to an append-only JSON-lines file; Cohere vectors go to a binary
+ * side file, so nothing is re-embedded on startup.
+ *
+ * remember() and embedQuery() do network I/O and are meant for a single
+ * background thread. recall() never does and may be called from any thread.
+ */
+public class VectorMemory {
+
+    private static final int CHUNK_CHARS = 500;
+    private static final int MIN_SNIPPET_TOKENS = 3;
+    // Cohere accepts up to 96 texts per embed call
+    private static final int EMBED_BATCH_SIZE = 96;
+    private static final int QUERY_CACHE_SIZE = 32;
+    // Below these a "match" is mostly noise; the hashing space scores lower overall
+    private static final float LOCAL_MIN_SCORE = 0.3f;
+    private static final float REMOTE_MIN_SCORE = 0.4f;
+
+    private final File snippetFile;
+    private final File vectorFile;
+    private final CohereApiClient apiClient;
+    // The snippet file's tail is repaired once, before the first append
+    private boolean snippetTailChecked = false;
+
+    private final List<String> snippets = new ArrayList<>();
+    private final List<String> sources = new ArrayList<>();
+    private final Set<String> known = new HashSet<>();
+    private final VectorIndex localIndex = new VectorIndex(HashingEmbedder.DIMENSIONS);
+    private VectorIndex remoteIndex;
+    // Remote index id -> snippet id, and which snippets already have a remote vector
+    private final List<Integer> remoteSnippetIds = new ArrayList<>();
+    private final BitSet hasRemote = new BitSet();
+    private long snippetBytes = 0;
+    private volatile long sizeBytes = 0;
+
+    private final Map<String, float[]> queryCache = new LinkedHashMap<String, float[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+            return size() > QUERY_CACHE_SIZE;
+        }
+    };
+
+    public VectorMemory(File directory, CohereApiClient apiClient) {
+        directory.mkdirs();
+        this.snippetFile = new File(directory, "snippets.jsonl");
+        this.vectorFile = new File(directory, "vectors.bin");
+        this.apiClient = apiClient;
+        updateSize();
+    }
+
+    public synchronized void load() {
+        if (snippetFile.exists()) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(snippetFile), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        JSONObject json = new JSONObject(line);
+                        addSnippet(json.getString("text"), json.getString("source"));
+                    } catch (Exception e) {
+                        // Torn line from a crash mid-write
+                    }
+                }
+            } catch (IOException e) {
+                // Keep whatever was read before the error
+            }
+        }
+        if (vectorFile.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(vectorFile)))) {
+                while (true) {
+                    int snippetId = in.readInt();
+                    float[] vector = new float[in.readInt()];
+                    for (int i = 0; i < vector.length; i++) {
+                        vector[i] = in.readFloat();
+                    }
+                    if (snippetId < snippets.size()) {
+                        addRemote(snippetId, vector);
+                    }
+                }
+            } catch (EOFException e) {
+                // End of file, or a torn last record
+            } catch (IOException e) {
+                // Keep whatever was read before the error
+            }
+        }
+    }
+
+    public void remember(String text, String source) {
+        List<Integer> batch = new ArrayList<>();
+        List<String> batchTexts = new ArrayList<>();
+        synchronized (this) {
+            for (String chunk : chunk(text)) {
+                if (SearchIndex.tokenize(chunk).size() < MIN_SNIPPET_TOKENS || known.contains(chunk)) {
+                    continue;
+                }
+                addSnippet(chunk, source);
+                appendSnippet(chunk, source);
+            }
+            // New snippets plus any stored while the embed endpoint was unreachable
+            for (int id = hasRemote.nextClearBit(0); id < snippets.size() && batch.size() < EMBED_BATCH_SIZE;
+                    id = hasRemote.nextClearBit(id + 1)) {
+                batch.add(id);
+                batchTexts.add(snippets.get(id));
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        float[][] vectors = apiClient.embed(batchTexts, "search_document");
+        if (vectors == null) {
+            return;
+        }
+        synchronized (this) {
+            for (int i = 0; i < batch.size(); i++) {
+                int snippetId = batch.get(i);
+                // clear() may have run while embedding
+                if (snippetId < snippets.size() && snippets.get(snippetId).equals(batchTexts.get(i))
+                        && addRemote(snippetId, vectors[i])) {
+                    appendVector(snippetId, vectors[i]);
+                }
+            }
+        }
+    }
+
+    // Up to k snippets relevant to query, formatted as "source: text", best first. Never waits
+    // on the network: the Cohere space is used only when embedQuery() already cached the query.
+    public synchronized List<String> recall(String query, int k) {
+        if (snippets.isEmpty()) {
+            return Collections.emptyList();
+        }
+        float[] remoteQuery = usesRemote() ? queryCache.get(query) : null;
+        // One extra in case the query itself was just remembered
+        List<VectorIndex.Match> matches;
+        boolean remote = remoteQuery != null && remoteQuery.length == remoteIndex.dimensions();
+        if (remote) {
+            matches = remoteIndex.nearest(remoteQuery, k + 1, REMOTE_MIN_SCORE);
+        } else {
+            matches = localIndex.nearest(HashingEmbedder.embed(query), k + 1, LOCAL_MIN_SCORE);
+        }
+        List<String> results = new ArrayList<>();
+        // Same whitespace folding as chunk()
+        String trimmedQuery = String.join(" ", query.trim().split("\\s+"));
+        for (VectorIndex.Match match : matches) {
+            int snippetId = remote ? remoteSnippetIds.get(match.id) : match.id;
+            String snippet = snippets.get(snippetId);
+            if (snippet.equals(trimmedQuery) || results.size() == k) {
+                continue;
+            }
+            results.add(sources.get(snippetId) + ": " + snippet);
+        }
+        return results;
+    }
+
+    // Embeds query for recall() in the Cohere space, so asking again doesn't fall back to the
+    // local one. Does network I/O; call from the background thread.
+    public void embedQuery(String query) {
+        synchronized (this) {
+            if (!usesRemote() || queryCache.containsKey(query)) {
+                return;
+            }
+        }
+        List<String> texts = new ArrayList<>();
+        texts.add(query);
+        float[][] vectors = apiClient.embed(texts, "search_query");
+        if (vectors != null) {
+            synchronized (this) {
+                queryCache.put(query, vectors[0]);
+            }
+        }
+    }
+
+    public synchronized long queryCacheBytes() {
+        long bytes = 0;
+        for (Map.Entry<String, float[]> entry : queryCache.entrySet()) {
+            bytes += 2L * entry.getKey().length() + 4L * entry.getValue().length;
+        }
+        return bytes;
+    }
+
+    // Approximate heap held by the snippets and both vector indexes, the query cache aside.
+    // Read without the lock, so diagnostics never wait on a load
+    public long sizeBytes() {
+        return sizeBytes;
+    }
+
+    // Cached query embeddings cost an embed call each to get back
+    public synchronized void trimQueryCache() {
+        queryCache.clear();
+    }
+
+    public synchronized void clear() {
+        snippets.clear();
+        sources.clear();
+        known.clear();
+        localIndex.clear();
+        remoteIndex = null;
+        remoteSnippetIds.clear();
+        hasRemote.clear();
+        queryCache.clear();
+        snippetFile.delete();
+        vectorFile.delete();
+        snippetBytes = 0;
+        updateSize();
+    }
+
+    private boolean usesRemote() {
+        return remoteIndex != null && remoteSnippetIds.size() * 2 >= snippets.size();
+    }
+
+    private void addSnippet(String text, String source) {
+        snippets.add(text);
+        sources.add(source);
+        known.add(text);
+        localIndex.add(HashingEmbedder.embed(text));
+        snippetBytes += 2L * text.length() + 2L * source.length();
+        updateSize();
+    }
+
+    private boolean addRemote(int snippetId, float[] vector) {
+        if (remoteIndex == null) {
+            remoteIndex = new VectorIndex(vector.length);
+        } else if (vector.length != remoteIndex.dimensions()) {
+            // Embedding model changed; the old space can't be mixed with the new one
+            return false;
+        }
+        remoteIndex.add(vector);
+        remoteSnippetIds.add(snippetId);
+        hasRemote.set(snippetId);
+        updateSize();
+        return true;
+    }
+
+    private void updateSize() {
+        long bytes = snippetBytes + localIndex.sizeBytes();
+        if (remoteIndex != null) {
+            bytes += remoteIndex.sizeBytes() + 16L * remoteSnippetIds.size();
+        }
+        sizeBytes = bytes;
+    }
+
+    private void appendSnippet(String text, String source) {
+        try {
+            if (!snippetTailChecked) {
+                ConversationStore.endWithNewline(snippetFile);
+                snippetTailChecked = true;
+            }
+        } catch (IOException e) {
+            return;
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(snippetFile, true), StandardCharsets.UTF_8)) {
+            writer.write(new JSONObject().put("text", text).put("source", source).toString());
+            writer.write('\n');
+        } catch (Exception e) {
+            // Still recalled this session; just not after a restart
+        }
+    }
+
+    private void appendVector(int snippetId, float[] vector) {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(vectorFile, true)))) {
+            out.writeInt(snippetId);
+            out.writeInt(vector.length);
+            for (float value : vector) {
+                out.writeFloat(value);
+            }
+        } catch (IOException e) {
+            // Re-embedded on the next backfill after a restart
+        }
+    }
+
+    // Splits on whitespace so snippets stay under CHUNK_CHARS without cutting words
+    static List<String> chunk(String text) {
+        List<String> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String word : text.trim().split("\\s+")) {
+            if (current.length() > 0 && current.length() + word.length() + 1 > CHUNK_CHARS) {
+                chunks.add(current.toString());
+                current.setLength(0);
+            }
+            if (current.length() > 0) {
+                current.append(' ');
+            }
+            current.append(word);
+        }
+        if (current.length() > 0) {
+            chunks.add(current.toString());
+        }
+        return chunks;
+    }
+}
@@ -4,6 +4,7 @@ import android.Manifest;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.speech.RecognitionListener;
 import android.speech.RecognizerIntent;
 import android.speech.SpeechRecognizer;
@@ -22,11 +23,21 @@ public class VoiceInputHandler {
     private SpeechRecognizer speechRecognizer;
     private ActivityResultLauncher<String> permissionLauncher;
     private boolean isListening = false;
+    private Intent recognizerIntent;
+    
+    // Volume callbacks are throttled to one per display frame
+    private long volumeIntervalMs = 16;
+    private long lastVolumeDispatchMs = 0;
+    
+    // When the user last stopped speaking, for end-of-speech to reply latency
+    private long endOfSpeechMs = -1;
     
     public interface VoiceInputCallback {
         void onVoiceInputStarted();
+        void onVoiceInputPartialResult(String text);
         void onVoiceInputResult(String text);
         void onVoiceInputError(String error);
+        void onNoSpeechDetected();
         void onVoiceInputStopped();
         void onVolumeChanged(float volume);
     }
@@ -34,8 +45,9 @@ public class VoiceInputHandler {
     public VoiceInputHandler(AppCompatActivity activity, VoiceInputCallback callback) {
         this.activity = activity;
         this.callback = callback;
+        // The permission launcher must be registered before the activity starts;
+        // the speech recognizer binds a system service, so it waits for first use
         initializePermissionLauncher();
-        initializeSpeechRecognizer();
     }
     
     private void initializePermissionLauncher() {
@@ -52,7 +64,14 @@ public class VoiceInputHandler {
     }
     
     private void initializeSpeechRecognizer() {
+        if (speechRecognizer != null) {
+            return;
+        }
         if (SpeechRecognizer.isRecognitionAvailable(activity)) {
+            float refreshRate = activity.getWindowManager().getDefaultDisplay().getRefreshRate();
+            if (refreshRate > 0) {
+                volumeIntervalMs = (long) (1000 / refreshRate);
+            }
             speechRecognizer = SpeechRecognizer.createSpeechRecognizer(activity);
             speechRecognizer.setRecognitionListener(new RecognitionListener() {
                 @Override
@@ -68,7 +87,12 @@ public class VoiceInputHandler {
                 
                 @Override
                 public void onRmsChanged(float rmsdB) {
-                    // Volume level changed
+                    // Volume level changed; recognizers report far faster than the screen refreshes
+                    long now = SystemClock.uptimeMillis();
+                    if (now - lastVolumeDispatchMs < volumeIntervalMs) {
+                        return;
+                    }
+                    lastVolumeDispatchMs = now;
                     float volume = Math.max(0, Math.min(1, (rmsdB + 10) / 20));
                     callback.onVolumeChanged(volume);
                 }
@@ -81,13 +105,18 @@ public class VoiceInputHandler {
                 @Override
                 public void onEndOfSpeech() {
                     // End of speech detected
+                    endOfSpeechMs = SystemClock.elapsedRealtime();
                 }
                 
                 @Override
                 public void onError(int error) {
                     isListening = false;
-                    String errorMessage = getErrorMessage(error);
-                    callback.onVoiceInputError(errorMessage);
+                    if (error == SpeechRecognizer.ERROR_NO_MATCH || error == SpeechRecognizer.ERROR_SPEECH_TIMEOUT) {
+                        callback.onNoSpeechDetected();
+                    } else {
+                        String errorMessage = getErrorMessage(error);
+                        callback.onVoiceInputError(errorMessage);
+                    }
                     callback.onVoiceInputStopped();
                 }
                 
@@ -110,7 +139,9 @@ public class VoiceInputHandler {
                     ArrayList<String> matches = partialResults.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
                     if (matches != null && !matches.isEmpty()) {
                         String partialText = matches.get(0);
-                        // Could show partial results in real-time
+                        if (partialText != null && !partialText.trim().isEmpty()) {
+                            callback.onVoiceInputPartialResult(partialText);
+                        }
                     }
                 }
                 
@@ -125,8 +156,9 @@ public class VoiceInputHandler {
     }
     
     public void startVoiceInput() {
+        initializeSpeechRecognizer();
         if (speechRecognizer == null) {
-            callback.onVoiceInputError("Speech recognizer not initialized");
+            // Unavailability was already reported by initializeSpeechRecognizer
             return;
         }
         
@@ -142,18 +174,10 @@ public class VoiceInputHandler {
             return;
         }
         
-        // Create speech recognition intent
-        Intent intent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH);
-        intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM);
-        intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE, Locale.getDefault());
-        intent.putExtra(RecognizerIntent.EXTRA_PROMPT, "Speak now...");
-        intent.putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, 5);
-        intent.putExtra(RecognizerIntent.EXTRA_CALLING_PACKAGE, activity.getPackageName());
-        intent.putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, true);
-        
         // Start listening
+        endOfSpeechMs = -1;
         try {
-            speechRecognizer.startListening(intent);
+            speechRecognizer.startListening(getRecognizerIntent());
         } catch (Exception e) {
             callback.onVoiceInputError("Failed to start voice recognition: " + e.getMessage());
         }
@@ -171,6 +195,25 @@ public class VoiceInputHandler {
         return isListening;
     }
     
+    // Elapsed-realtime timestamp of the last end of speech, or -1 if none this turn
+    public long getEndOfSpeechMs() {
+        return endOfSpeechMs;
+    }
+    
+    // Built once and reused for every turn
+    private Intent getRecognizerIntent() {
+        if (recognizerIntent == null) {
+            recognizerIntent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH);
+            recognizerIntent.putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM);
+            recognizerIntent.putExtra(RecognizerIntent.EXTRA_LANGUAGE, Locale.getDefault());
+            recognizerIntent.putExtra(RecognizerIntent.EXTRA_PROMPT, "Speak now...");
+            recognizerIntent.putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, 5);
+            recognizerIntent.putExtra(RecognizerIntent.EXTRA_CALLING_PACKAGE, activity.getPackageName());
+            recognizerIntent.putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, true);
+        }
+        return recognizerIntent;
+    }
+    
     public void destroy() {
         if (speechRecognizer != null) {
             speechRecognizer.destroy();
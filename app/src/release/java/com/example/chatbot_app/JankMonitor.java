@@ -0,0 +1,30 @@
+package com.example.chatbot_app;
+
+import android.app.Activity;
+
+/**
+ * No-op stand-in for the debug build's jank monitor, so release and benchmark
+ * builds carry no StrictMode policies or per-frame listeners.
+ */
+public final class JankMonitor {
+
+    public static final String OP_SEND = "send";
+    public static final String OP_RENDER = "render";
+    public static final String OP_ATTACH = "attach";
+    public static final String OP_VOICE = "voice";
+
+    private JankMonitor() {
+    }
+
+    public static void install(Activity activity) {
+    }
+
+    public static void flush() {
+    }
+
+    public static void uninstall(Activity activity) {
+    }
+
+    public static void operation(String name) {
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.chatbot_app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the load harness at its default, CI-sized settings. For a real run,
+ * turn the knobs up, e.g.
+ *   ./gradlew testDebugUnitTest --tests '*ChatLoadTest' -Dload.conversations=400 -Dload.concurrency=32
+ */
+public class ChatLoadTest {
+
+    @Rule
+    public TemporaryFolder workDir = new TemporaryFolder();
+
+    @Test
+    public void replaysConversationsAgainstMockApi() throws Exception {
+        LoadHarness.Config config = new LoadHarness.Config();
+        LoadHarness.Report report = LoadHarness.run(config, workDir.getRoot());
+        System.out.println(report);
+
+        int expectedTurns = 0;
+        for (int i = 0; i < config.conversations; i++) {
+            expectedTurns += LoadHarness.scriptLength(i);
+        }
+        assertEquals(expectedTurns, report.turns);
+        assertTrue(report.serverRequests >= report.turns);
+        // Injected errors only; the pipeline itself shouldn't fail turns
+        double injected = config.rateLimitRate + config.serverErrorRate;
+        assertTrue("failed " + report.failedTurns + " of " + report.turns,
+            report.failedTurns <= Math.max(3, report.turns * injected * 3));
+        assertTrue(report.percentile(50) >= config.medianLatencyMs / 2);
+        // Later turns carry enough history to be worth compressing
+        assertTrue(report.gzippedRequests > 0);
+    }
+
+    @Test
+    public void fallsBackWhenServerRefusesGzip() throws Exception {
+        LoadHarness.Config config = new LoadHarness.Config();
+        config.conversations = 4;
+        config.concurrency = 1;
+        config.rateLimitRate = 0;
+        config.serverErrorRate = 0;
+        config.serverAcceptsGzip = false;
+        LoadHarness.Report report = LoadHarness.run(config, workDir.getRoot());
+        System.out.println(report);
+
+        assertEquals(0, report.failedTurns);
+        // One refusal, then the client stops compressing
+        assertEquals(1, report.gzippedRequests);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.chatbot_app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ChatOutboxTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void entriesKeepTheMessageTheyAnswer() throws IOException {
+        ChatOutbox outbox = new ChatOutbox(new File(folder.getRoot(), "outbox.jsonl"));
+        List<ChatOutbox.Entry> entries = new ArrayList<>();
+        entries.add(new ChatOutbox.Entry("a", "same words", false, 1_700_000_000_005L));
+        entries.add(new ChatOutbox.Entry("b", "same words", true, 42));
+        outbox.save(entries);
+
+        List<ChatOutbox.Entry> loaded = outbox.load();
+        assertEquals(2, loaded.size());
+        assertEquals(1_700_000_000_005L, loaded.get(0).messageId);
+        assertEquals("b", loaded.get(1).key);
+        assertTrue(loaded.get(1).hasAttachment);
+        assertEquals(42, loaded.get(1).messageId);
+    }
+
+    @Test
+    public void entriesFromBeforeMessageIdsLoadWithoutOne() throws IOException {
+        File file = folder.newFile("outbox.jsonl");
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write("{\"key\":\"a\",\"prompt\":\"hi\",\"attachment\":false}\n".getBytes(StandardCharsets.UTF_8));
+        }
+        List<ChatOutbox.Entry> loaded = new ChatOutbox(file).load();
+        assertEquals(1, loaded.size());
+        assertEquals("hi", loaded.get(0).prompt);
+        assertEquals(-1, loaded.get(0).messageId);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.chatbot_app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConversationCompactorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private int summaries = 0;
+
+    @Test
+    public void cutBackConversationReusesCachedSummary() throws Exception {
+        ConversationCompactor compactor = compactor();
+        List<ChatMessage> history = history(200);
+        for (int n = 20; n <= history.size(); n += 10) {
+            compactor.compactIfNeeded(history.subList(0, n));
+        }
+        int made = summaries;
+        assertTrue(made > 1);
+        String latest = compactor.buildContext(history).summary;
+
+        // The latest summary covers turns that an edit removed
+        List<ChatMessage> kept = history.subList(0, 100);
+        PromptContext context = compactor.buildContext(kept);
+        assertNotNull(context.summary);
+        assertNotEquals(latest, context.summary);
+        // Only turns the reused summary doesn't cover are sent verbatim
+        long firstVerbatim = context.turns.get(0).getId();
+        assertTrue(firstVerbatim > kept.get(0).getId());
+        assertEquals(kept.get(kept.size() - 1).getId(), context.turns.get(context.turns.size() - 1).getId());
+
+        compactor.truncate(kept);
+        assertEquals(context.summary, compactor.buildContext(kept).summary);
+        assertEquals(made, summaries);
+    }
+
+    @Test
+    public void truncateWithoutFittingSummaryDropsIt() throws Exception {
+        ConversationCompactor compactor = compactor();
+        List<ChatMessage> history = history(200);
+        compactor.compactIfNeeded(history);
+        assertNotNull(compactor.buildContext(history).summary);
+
+        List<ChatMessage> kept = history.subList(0, 4);
+        compactor.truncate(kept);
+        PromptContext context = compactor.buildContext(kept);
+        assertNull(context.summary);
+        assertEquals(4, context.turns.size());
+    }
+
+    @Test
+    public void newTurnsAfterAnEditDontBringBackRemovedSummaries() throws Exception {
+        ConversationCompactor compactor = compactor();
+        List<ChatMessage> history = history(80);
+        for (int n = 20; n <= history.size(); n += 10) {
+            compactor.compactIfNeeded(history.subList(0, n));
+        }
+
+        // Edited at turn 10, then two new turns with newer ids than anything removed
+        List<ChatMessage> branch = new ArrayList<>(history.subList(0, 10));
+        compactor.truncate(branch);
+        branch.add(new ChatMessage(1000, true, "new question", 1_700_000_001_000L));
+        branch.add(new ChatMessage(1001, false, "new answer", 1_700_000_001_001L));
+
+        PromptContext context = compactor.buildContext(branch);
+        assertNull(context.summary);
+        assertEquals(branch.size(), context.turns.size());
+
+        // Cut later, a summary of kept turns is reused, and only turns after it go verbatim
+        List<ChatMessage> later = new ArrayList<>(history.subList(0, 60));
+        compactor.truncate(later);
+        later.add(new ChatMessage(1002, true, "another question", 1_700_000_001_002L));
+        context = compactor.buildContext(later);
+        assertNotNull(context.summary);
+        int firstVerbatim = later.indexOf(context.turns.get(0));
+        assertTrue(firstVerbatim > 0);
+        assertEquals(later.size() - firstVerbatim, context.turns.size());
+    }
+
+    private ConversationCompactor compactor() throws Exception {
+        File file = new File(folder.newFolder(), "summary.json");
+        return new ConversationCompactor(file, (previous, transcript) -> "summary " + (++summaries));
+    }
+
+    private static List<ChatMessage> history(int count) {
+        List<ChatMessage> history = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append('x');
+        }
+        for (int i = 0; i < count; i++) {
+            history.add(new ChatMessage(100 + i, i % 2 == 0, text.toString(), 1_700_000_000_000L + i));
+        }
+        return history;
+    }
+}
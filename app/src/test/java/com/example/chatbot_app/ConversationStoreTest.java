@@ -0,0 +1,144 @@
+package com.example.chatbot_app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConversationStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendAfterTornLineKeepsNewMessage() throws IOException {
+        File file = folder.newFile("conversation.jsonl");
+        ConversationStore store = new ConversationStore(file);
+        store.append(message(1, "first"));
+        // A crash halfway through the second line
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            out.write("{\"id\":2,\"user\":false,\"te".getBytes(StandardCharsets.UTF_8));
+        }
+
+        ConversationStore reopened = new ConversationStore(file);
+        long offset = reopened.append(message(3, "third"));
+        List<ChatMessage> messages = reopened.loadAll();
+        assertEquals(2, messages.size());
+        assertEquals(1, messages.get(0).getId());
+        assertEquals(3, messages.get(1).getId());
+        assertEquals("third", reopened.readAt(offset).getText());
+    }
+
+    @Test
+    public void truncateAtCutsAtTheExactRow() throws IOException {
+        File file = folder.newFile("conversation.jsonl");
+        ConversationStore store = new ConversationStore(file);
+        // The clock went back between runs: ids aren't ordered through the log
+        long[] ids = {500, 501, 502, 100, 101, 102};
+        for (long id : ids) {
+            store.append(message(id, "message " + id));
+        }
+
+        long cut = new ConversationStore(file).truncateAt(101);
+        assertEquals(-1, cut);
+
+        ConversationStore reopened = new ConversationStore(file);
+        reopened.loadAll();
+        cut = reopened.truncateAt(101);
+        List<ChatMessage> kept = reopened.loadAll();
+        assertEquals(4, kept.size());
+        assertEquals(100, kept.get(3).getId());
+        assertEquals(file.length(), cut);
+
+        long offset = reopened.append(message(103, "after the cut"));
+        assertEquals(cut, offset);
+        assertEquals("after the cut", reopened.readAt(offset).getText());
+        assertEquals(5, reopened.loadAll().size());
+    }
+
+    @Test
+    public void truncateAtUnknownIdKeepsTheLog() throws IOException {
+        File file = folder.newFile("conversation.jsonl");
+        ConversationStore store = new ConversationStore(file);
+        store.append(message(1, "one"));
+        store.append(message(2, "two"));
+        long length = file.length();
+
+        assertEquals(-1, store.truncateAt(7));
+        assertEquals(length, file.length());
+        // The first row goes too when it is the one cut at
+        assertEquals(0, store.truncateAt(1));
+        assertEquals(0, file.length());
+    }
+
+    @Test
+    public void readAtReadsLinesLongerThanABlock() throws IOException {
+        File file = folder.newFile("conversation.jsonl");
+        ConversationStore store = new ConversationStore(file);
+        StringBuilder longText = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            longText.append("é").append(i % 10);
+        }
+        long first = store.append(message(1, "short"));
+        long second = store.append(message(2, longText.toString()));
+        long third = store.append(message(3, "after"));
+
+        assertEquals(longText.toString(), store.readAt(second).getText());
+        List<ChatMessage> read = store.readAt(new long[] {third, first, second, file.length() + 10});
+        assertEquals(4, read.size());
+        assertEquals("after", read.get(0).getText());
+        assertEquals("short", read.get(1).getText());
+        assertEquals(longText.toString(), read.get(2).getText());
+        assertNull(read.get(3));
+    }
+
+    @Test
+    public void slicedScanSkipsMessagesAppendedDuringIt() throws IOException {
+        File file = folder.newFile("conversation.jsonl");
+        ConversationStore writer = new ConversationStore(file);
+        for (long id = 1; id <= 5; id++) {
+            writer.append(message(id, "message " + id));
+        }
+
+        ConversationStore store = new ConversationStore(file);
+        List<Long> visited = new ArrayList<>();
+        store.startScan();
+        assertTrue(store.scanSlice(2, (offset, message) -> visited.add(message.getId())));
+        long appended = store.append(message(6, "sent while loading"));
+        while (store.scanSlice(2, (offset, message) -> visited.add(message.getId()))) {
+            assertTrue(store.isScanning());
+        }
+        assertFalse(store.isScanning());
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), visited);
+
+        // The appended row is recorded after the scanned ones, so cuts still find both
+        assertEquals(appended, store.truncateAt(6));
+        long cut = store.truncateAt(4);
+        assertEquals(3, store.loadAll().size());
+        assertEquals(cut, file.length());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void truncateAtWaitsForTheScan() throws IOException {
+        File file = folder.newFile("conversation.jsonl");
+        ConversationStore store = new ConversationStore(file);
+        store.append(message(1, "one"));
+        store.append(message(2, "two"));
+        store.startScan();
+        store.scanSlice(1, (offset, message) -> { });
+        store.truncateAt(2);
+    }
+
+    static ChatMessage message(long id, String text) {
+        return new ChatMessage(id, id % 2 == 1, text, 1_700_000_000_000L + id);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.chatbot_app;
+
+import org.junit.Test;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CsvReaderTest {
+
+    @Test
+    public void readsQuotedFieldsAndLineEndings() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader(
+            "prompt,model\r\n\"Say \"\"hi\"\", twice\",command-r\n\"two\nlines\",\nlast"));
+        assertEquals(Arrays.asList("prompt", "model"), reader.readRow());
+        assertEquals(Arrays.asList("Say \"hi\", twice", "command-r"), reader.readRow());
+        assertEquals(Arrays.asList("two\nlines", ""), reader.readRow());
+        assertEquals(Arrays.asList("last"), reader.readRow());
+        assertNull(reader.readRow());
+    }
+
+    @Test
+    public void escapeRoundTrips() throws IOException {
+        String value = "a, \"b\"\nc";
+        List<String> row = new CsvReader(new StringReader(CsvReader.escape(value) + ",plain")).readRow();
+        assertEquals(Arrays.asList(value, "plain"), row);
+        assertEquals("plain", CsvReader.escape("plain"));
+    }
+
+    @Test
+    public void headerColumnsFindKnownNames() {
+        int[] columns = CsvReader.headerColumns(Arrays.asList("id", " Model ", "PROMPT"), "prompt", "model");
+        assertEquals(2, columns[0]);
+        assertEquals(1, columns[1]);
+    }
+
+    @Test
+    public void headerWithoutPromptColumnIsStillAHeader() {
+        // "question,model": the prompt falls back to the first column, the model stays where it is
+        int[] columns = CsvReader.headerColumns(Arrays.asList("question", "model"), "prompt", "model");
+        assertNotNull(columns);
+        assertEquals(-1, columns[0]);
+        assertEquals(1, columns[1]);
+    }
+
+    @Test
+    public void rowNamingNoKnownColumnIsData() {
+        assertNull(CsvReader.headerColumns(Arrays.asList("Tell me a joke", "command-r"), "prompt", "model"));
+        assertNull(CsvReader.headerColumns(Arrays.asList(), "prompt", "model"));
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.chatbot_app;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyStatsTest {
+
+    @Test
+    public void percentileNeedsFiveSamples() {
+        LatencyStats stats = new LatencyStats();
+        for (int i = 0; i < 4; i++) {
+            stats.recordResponse("model", 50, 300);
+        }
+        assertEquals(-1, stats.responsePercentile("model", 50, 0.5));
+        assertEquals(-1, stats.responsePercentile("other", 50, 0.5));
+        stats.recordResponse("model", 50, 300);
+        assertEquals(350, stats.responsePercentile("model", 50, 0.5));
+    }
+
+    @Test
+    public void percentilesReportBinUpperBounds() {
+        LatencyStats stats = new LatencyStats();
+        for (int i = 0; i < 45; i++) {
+            stats.recordResponse("model", 50, 90);
+        }
+        for (int i = 0; i < 5; i++) {
+            stats.recordResponse("model", 50, 2500);
+        }
+        assertEquals(100, stats.responsePercentile("model", 50, 0.5));
+        assertEquals(100, stats.responsePercentile("model", 50, 0.9));
+        assertEquals(3000, stats.responsePercentile("model", 50, 0.95));
+        assertEquals(3000, stats.responsePercentile("model", 50, 0.99));
+    }
+
+    @Test
+    public void ringKeepsOnlyTheLastFiftySamples() {
+        LatencyStats stats = new LatencyStats();
+        for (int i = 0; i < 50; i++) {
+            stats.recordResponse("model", 50, 20000);
+        }
+        assertEquals(20000, stats.responsePercentile("model", 50, 0.5));
+        for (int i = 0; i < 49; i++) {
+            stats.recordResponse("model", 50, 150);
+        }
+        // One slow sample is left in the window
+        assertEquals(200, stats.responsePercentile("model", 50, 0.95));
+        assertEquals(20000, stats.responsePercentile("model", 50, 1.0));
+        stats.recordResponse("model", 50, 150);
+        assertEquals(200, stats.responsePercentile("model", 50, 1.0));
+    }
+
+    @Test
+    public void samplesBeyondTheLastBinLandInIt() {
+        LatencyStats stats = new LatencyStats();
+        for (int i = 0; i < 5; i++) {
+            stats.recordConnect(500000);
+        }
+        assertEquals(120000, stats.connectPercentile(0.5));
+    }
+
+    @Test
+    public void outcomesRollOverTwentyAttempts() {
+        LatencyStats stats = new LatencyStats();
+        assertEquals(0, stats.errorRate("model"), 0);
+        for (int i = 0; i < 20; i++) {
+            stats.recordOutcome("model", i % 4 != 0);
+        }
+        assertEquals(0.25, stats.errorRate("model"), 1e-9);
+        for (int i = 0; i < 10; i++) {
+            stats.recordOutcome("model", true);
+        }
+        assertEquals(20, stats.outcomeCount("model"));
+        assertEquals(0.1, stats.errorRate("model"), 1e-9);
+    }
+
+    @Test
+    public void errorResponsesCountAsAttemptsOnly() {
+        LatencyStats stats = new LatencyStats();
+        for (int i = 0; i < 5; i++) {
+            stats.recordErrorResponse();
+        }
+        assertEquals(-1, stats.responsePercentile("model", 50, 0.5));
+        assertTrue(stats.describe().contains("Attempts: 5"));
+    }
+
+    @Test
+    public void describeSkipsHistogramsWithTooFewSamples() {
+        LatencyStats stats = new LatencyStats();
+        for (int i = 0; i < 4; i++) {
+            stats.recordResponse("sparse", 50, 300);
+        }
+        for (int i = 0; i < 5; i++) {
+            stats.recordResponse("busy", 50, 300);
+        }
+        String description = stats.describe();
+        assertFalse(description, description.contains("-1"));
+        assertFalse(description, description.contains("sparse/short"));
+        assertTrue(description, description.contains("busy/short: p50 350 ms, p95 350 ms (5 samples)"));
+    }
+
+    @Test
+    public void describeShowsVoiceTurnsOnceThereAreEnough() {
+        LatencyStats stats = new LatencyStats();
+        for (int i = 0; i < 4; i++) {
+            stats.recordVoiceTurn(900);
+        }
+        assertFalse(stats.describe().contains("Voice turn"));
+        stats.recordVoiceTurn(900);
+        assertTrue(stats.describe().contains("Voice turn: p50 1000 ms, p95 1000 ms (5 turns)"));
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.chatbot_app;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays scripted multi-turn conversations through the app's request pipeline
+ * against a MockCohereServer, and reports throughput, latency percentiles and
+ * allocation rate.
+ *
+ * Each turn does what ChatRepository.dispatch() and drainOutbox() do, without
+ * the Android parts:
+ * - build context from the compactor;
+ * - call the shared CohereApiClient (routing, deadlines, metering, parsing);
+ * - append both messages to a ConversationStore;
+ * - compact the history when it is due.
+ *
+ * Runnable from a unit test or from main(); every knob is a "load." system
+ * property.
+ */
+public class LoadHarness {
+
+    // Multi-turn scripts; conversation i replays SCRIPTS[i % SCRIPTS.length]
+    private static final String[][] SCRIPTS = {
+        {"Hi! What can you help me with?", "What's the capital of Australia?",
+            "And how many people live there?", "Thanks, that's all."},
+        {"Write a short story about a lighthouse keeper who finds a message in a bottle.",
+            "Make the ending happier.", "Now summarize it in two sentences.",
+            "Translate that summary into French."},
+        {"Explain how HTTP caching works.", "What does the Vary header do?",
+            "How is ETag different from Last-Modified?", "Give me an example response with all three.",
+            "Is no-cache the same as no-store?"},
+        {"Plan a three-day trip to Kyoto.", "I don't like crowds, adjust the plan.",
+            "What should I pack in November?"},
+    };
+
+    public static class Config {
+        public int conversations = Integer.getInteger("load.conversations", 16);
+        public int concurrency = Integer.getInteger("load.concurrency", 4);
+        public long medianLatencyMs = Long.getLong("load.latencyMs", 40L);
+        public double latencySigma = Double.parseDouble(System.getProperty("load.latencySigma", "0.5"));
+        public double rateLimitRate = Double.parseDouble(System.getProperty("load.rateLimitRate", "0.02"));
+        public double serverErrorRate = Double.parseDouble(System.getProperty("load.serverErrorRate", "0.02"));
+        public int responseChars = Integer.getInteger("load.responseChars", 1200);
+        public long seed = Long.getLong("load.seed", 42L);
+        // Off: the mock answers gzipped requests with 415, and the client must fall back
+        public boolean serverAcceptsGzip = Boolean.parseBoolean(System.getProperty("load.serverGzip", "true"));
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d conversations x %d workers, latency %d ms (sigma %.2f), "
+                    + "429 %.1f%%, 500 %.1f%%, %d-char answers, gzip requests %s", conversations, concurrency,
+                medianLatencyMs, latencySigma, rateLimitRate * 100, serverErrorRate * 100, responseChars,
+                serverAcceptsGzip ? "accepted" : "refused");
+        }
+    }
+
+    public static class Report {
+        public final Config config;
+        public final int turns;
+        public final int failedTurns;
+        public final long serverRequests;
+        public final long gzippedRequests;
+        public final long elapsedMs;
+        // Client-observed callCohereAPI latency, sorted ascending
+        public final long[] latenciesMs;
+        // -1 when the JVM can't count per-thread allocation
+        public final long allocatedBytes;
+        public final String tokenUsage;
+        public final String transfers;
+
+        Report(Config config, int turns, int failedTurns, long serverRequests, long gzippedRequests, long elapsedMs,
+               long[] latenciesMs, long allocatedBytes, String tokenUsage, String transfers) {
+            this.config = config;
+            this.turns = turns;
+            this.failedTurns = failedTurns;
+            this.serverRequests = serverRequests;
+            this.gzippedRequests = gzippedRequests;
+            this.elapsedMs = elapsedMs;
+            this.latenciesMs = latenciesMs;
+            this.allocatedBytes = allocatedBytes;
+            this.tokenUsage = tokenUsage;
+            this.transfers = transfers;
+        }
+
+        public double turnsPerSecond() {
+            return elapsedMs == 0 ? 0 : turns * 1000.0 / elapsedMs;
+        }
+
+        public long percentile(double p) {
+            if (latenciesMs.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p / 100.0 * latenciesMs.length) - 1;
+            return latenciesMs[Math.max(0, Math.min(latenciesMs.length - 1, index))];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("Load run: ").append(config).append('\n');
+            sb.append(String.format(Locale.US, "Turns: %d (%d failed), %d server requests (%d gzipped), %.1f s\n",
+                turns, failedTurns, serverRequests, gzippedRequests, elapsedMs / 1000.0));
+            sb.append(String.format(Locale.US, "Throughput: %.1f turns/s\n", turnsPerSecond()));
+            sb.append(String.format(Locale.US, "Latency ms: p50 %d, p90 %d, p99 %d, max %d\n",
+                percentile(50), percentile(90), percentile(99), percentile(100)));
+            if (allocatedBytes >= 0) {
+                sb.append(String.format(Locale.US, "Allocated: %.1f MB/s, %.0f KB per turn\n",
+                    allocatedBytes / 1048576.0 / Math.max(0.001, elapsedMs / 1000.0),
+                    allocatedBytes / 1024.0 / Math.max(1, turns)));
+            }
+            sb.append(transfers);
+            sb.append(tokenUsage);
+            return sb.toString();
+        }
+    }
+
+    public static Report run(Config config, File workDir) throws Exception {
+        MockCohereServer server = new MockCohereServer(config.medianLatencyMs, config.latencySigma,
+            config.rateLimitRate, config.serverErrorRate, config.responseChars, config.seed);
+        server.setAcceptGzipRequests(config.serverAcceptsGzip);
+        server.start();
+        // Shared like the app's: routing, latency stats and metering see all traffic at once
+        CohereApiClient apiClient = new CohereApiClient(server.chatUrl(), "load-test-key");
+        ExecutorService workers = Executors.newFixedThreadPool(config.concurrency);
+        AtomicInteger failedTurns = new AtomicInteger();
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        // Bytes allocated by each conversation's worker; the mock server's threads don't count
+        List<Long> allocations = Collections.synchronizedList(new ArrayList<>());
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < config.conversations; i++) {
+                String[] script = SCRIPTS[i % SCRIPTS.length];
+                File dir = new File(workDir, "conversation-" + i);
+                futures.add(workers.submit(() -> {
+                    long threadId = Thread.currentThread().getId();
+                    long before = allocatedBytes(threadId);
+                    replay(apiClient, script, dir, latencies, failedTurns);
+                    if (before >= 0) {
+                        allocations.add(allocatedBytes(threadId) - before);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+
+            long[] sorted = new long[latencies.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = latencies.get(i);
+            }
+            Arrays.sort(sorted);
+            long allocated = -1;
+            if (!allocations.isEmpty()) {
+                allocated = 0;
+                for (long bytes : allocations) {
+                    allocated += bytes;
+                }
+            }
+            return new Report(config, sorted.length, failedTurns.get(), server.getRequestCount(),
+                server.getGzippedRequestCount(), elapsedMs, sorted, allocated, apiClient.getTokenMeter().describe(),
+                apiClient.getLatencyStats().describeTransfers());
+        } finally {
+            workers.shutdownNow();
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+            server.stop();
+        }
+    }
+
+    public static int scriptLength(int conversation) {
+        return SCRIPTS[conversation % SCRIPTS.length].length;
+    }
+
+    private static void replay(CohereApiClient apiClient, String[] script, File dir, List<Long> latencies,
+                               AtomicInteger failedTurns) throws IOException {
+        dir.mkdirs();
+        ConversationStore store = new ConversationStore(new File(dir, "conversation.jsonl"));
+        ConversationCompactor compactor = new ConversationCompactor(new File(dir, "summary.json"),
+            apiClient::summarize);
+        List<ChatMessage> history = new ArrayList<>();
+        long nextId = 1;
+        for (String prompt : script) {
+            PromptContext context = compactor.buildContext(history);
+            ChatCall call = new ChatCall(UUID.randomUUID().toString());
+            long started = System.nanoTime();
+            String response = apiClient.callCohereAPI(prompt, false, ModelRouter.AUTO, context, call);
+            latencies.add((System.nanoTime() - started) / 1_000_000L);
+            if (isFailure(response)) {
+                failedTurns.incrementAndGet();
+            }
+
+            ChatMessage user = new ChatMessage(nextId++, true, prompt, System.currentTimeMillis());
+            ChatMessage bot = new ChatMessage(nextId++, false, response, System.currentTimeMillis(),
+                call.getRequestKey());
+            store.append(user);
+            store.append(bot);
+            history.add(user);
+            history.add(bot);
+            compactor.compactIfNeeded(history);
+        }
+    }
+
+    private static boolean isFailure(String response) {
+        return response.isEmpty() || CohereApiClient.FALLBACK_RESPONSE.equals(response)
+            || response.startsWith("API Error") || response.startsWith("Exception");
+    }
+
+    private static long allocatedBytes(long threadId) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(threadId);
+            }
+        }
+        return -1;
+    }
+
+    public static void main(String[] args) throws Exception {
+        File workDir = new File(System.getProperty("java.io.tmpdir"), "chat-load-" + System.nanoTime());
+        System.out.println(run(new Config(), workDir));
+    }
+}
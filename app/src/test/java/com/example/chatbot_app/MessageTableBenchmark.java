@@ -0,0 +1,96 @@
+package com.example.chatbot_app;
+
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Retained heap for 10k messages in three layouts:
+ * - a naive object per message, with a String, a Date and an enum;
+ * - ArrayList<ChatMessage>, which the repository used before MessageTable;
+ * - MessageTable.
+ * Heap is measured as used memory after a forced GC. The numbers are
+ * approximate, so they are printed rather than asserted unless
+ * -Dload.heapCheck=true is given. MessageTableTest covers correctness.
+ */
+public class MessageTableBenchmark {
+
+    private static final int MESSAGES = 10_000;
+
+    private enum Role { USER, ASSISTANT }
+
+    // What a straightforward model class would look like
+    private static class NaiveMessage {
+        final long id;
+        final Role role;
+        final String text;
+        final Date timestamp;
+        final String requestKey;
+
+        NaiveMessage(long id, Role role, String text, Date timestamp, String requestKey) {
+            this.id = id;
+            this.role = role;
+            this.text = text;
+            this.timestamp = timestamp;
+            this.requestKey = requestKey;
+        }
+    }
+
+    @Test
+    public void heapPer10kMessages() {
+        long naive = retained(() -> {
+            List<NaiveMessage> list = new ArrayList<>();
+            for (ChatMessage m : MessageTableTest.conversation(MESSAGES, 7)) {
+                list.add(new NaiveMessage(m.getId(), m.isUser() ? Role.USER : Role.ASSISTANT, m.getText(),
+                    new Date(m.getTimestamp()), m.getRequestKey()));
+            }
+            return list;
+        });
+        long objects = retained(() -> new ArrayList<>(MessageTableTest.conversation(MESSAGES, 7)));
+        long columns = retained(() -> {
+            MessageTable table = new MessageTable();
+            table.addAll(MessageTableTest.conversation(MESSAGES, 7));
+            return table;
+        });
+
+        System.out.println(String.format(Locale.US,
+            "Heap per %d messages: naive objects %d KB, ChatMessage list %d KB, MessageTable %d KB (%.0f%% of list)",
+            MESSAGES, naive / 1024, objects / 1024, columns / 1024, columns * 100.0 / objects));
+        // Forced GCs make heap readings approximate, so the check is opt-in: -Dload.heapCheck=true
+        if (Boolean.getBoolean("load.heapCheck")) {
+            assertTrue("MessageTable " + columns + " B vs list " + objects + " B", columns < objects);
+        }
+    }
+
+    private interface Allocation {
+        Object build();
+    }
+
+    private static long retained(Allocation allocation) {
+        long before = usedHeap();
+        Object kept = allocation.build();
+        long after = usedHeap();
+        // Keeps the structure reachable until after the second measurement
+        assertNotNull(kept);
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.chatbot_app;
+
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class MessageTableTest {
+
+    @Test
+    public void rowsRoundTrip() {
+        List<ChatMessage> source = conversation(10_000, 7);
+        MessageTable table = new MessageTable();
+        table.addAll(source);
+        assertEquals(source.size(), table.size());
+        List<ChatMessage> snapshot = table.snapshot();
+        for (int i = 0; i < source.size(); i++) {
+            ChatMessage expected = source.get(i);
+            ChatMessage actual = snapshot.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.isUser(), actual.isUser());
+            assertEquals(expected.getText(), actual.getText());
+            assertEquals(expected.getTimestamp(), actual.getTimestamp());
+            assertEquals(expected.getRequestKey(), actual.getRequestKey());
+            assertEquals(expected.getImageHash(), actual.getImageHash());
+            assertEquals(expected.getId(), MessageTable.idAt(snapshot, i));
+        }
+    }
+
+    @Test
+    public void snapshotIgnoresLaterAppends() {
+        List<ChatMessage> source = conversation(10_000, 7);
+        MessageTable table = new MessageTable();
+        table.addAll(source);
+        List<ChatMessage> snapshot = table.snapshot();
+        table.addAll(conversation(500, 8));
+        assertEquals(source.size(), snapshot.size());
+        assertEquals(source.size() + 500, table.snapshot().size());
+        assertEquals(source.get(source.size() - 1).getText(), snapshot.get(snapshot.size() - 1).getText());
+    }
+
+    @Test
+    public void prefixKeepsLeadingRowsAndIsolatesAppends() {
+        MessageTable table = new MessageTable();
+        List<ChatMessage> source = conversation(200, 3);
+        table.addAll(source);
+        List<ChatMessage> before = table.snapshot();
+
+        MessageTable prefix = table.prefix(120);
+        // Long enough to need the slab that the original table was still filling
+        prefix.add(new ChatMessage(999, true, repeat("edited ", 200), 1L, null, "image"));
+
+        List<ChatMessage> after = prefix.snapshot();
+        assertEquals(121, after.size());
+        for (int i = 0; i < 120; i++) {
+            assertEquals(source.get(i).getId(), after.get(i).getId());
+            assertEquals(source.get(i).getText(), after.get(i).getText());
+            assertEquals(source.get(i).getRequestKey(), after.get(i).getRequestKey());
+        }
+        assertEquals("image", after.get(120).getImageHash());
+        assertEquals(repeat("edited ", 200), after.get(120).getText());
+        // Rows handed out before the cut still read what they did
+        for (int i = 0; i < source.size(); i++) {
+            assertEquals(source.get(i).getText(), before.get(i).getText());
+        }
+    }
+
+    @Test
+    public void prefixOfNothingIsEmpty() {
+        MessageTable table = new MessageTable();
+        table.addAll(conversation(3, 3));
+        MessageTable empty = table.prefix(0);
+        assertTrue(empty.isEmpty());
+        empty.add(new ChatMessage(7, true, "hi", 1L));
+        assertEquals("hi", empty.snapshot().get(0).getText());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void prefixLongerThanTableFails() {
+        MessageTable table = new MessageTable();
+        table.addAll(conversation(3, 3));
+        table.prefix(4);
+    }
+
+    // Short user turns and longer replies, some non-ASCII and some with images, like a real chat
+    static List<ChatMessage> conversation(int count, long seed) {
+        Random random = new Random(seed);
+        String[] words = {"the", "model", "answer", "cache", "request", "token", "Kyoto", "café", "naïve",
+            "résumé", "thanks", "could", "explain", "why", "latency", "🙂", "—", "über"};
+        List<ChatMessage> messages = new ArrayList<>(count);
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < count; i++) {
+            boolean user = i % 2 == 0;
+            int wordCount = user ? 5 + random.nextInt(20) : 30 + random.nextInt(150);
+            StringBuilder text = new StringBuilder();
+            for (int w = 0; w < wordCount; w++) {
+                if (w > 0) {
+                    text.append(' ');
+                }
+                text.append(words[random.nextInt(words.length)]);
+            }
+            timestamp += 1000 + random.nextInt(60_000);
+            String key = user ? null : new UUID(random.nextLong(), random.nextLong()).toString();
+            String image = user && random.nextInt(20) == 0 ? Long.toHexString(random.nextLong()) : null;
+            messages.add(new ChatMessage(i + 1, user, text.toString(), timestamp, key, image));
+        }
+        return messages;
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.chatbot_app;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONObject;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local stand-in for the Cohere chat endpoint. Latency is log-normal around a
+ * median. A configurable share of requests fails with 429 or 500. Successful
+ * answers carry billed_units, so token metering and max_tokens sizing run as
+ * they do against the real API.
+ *
+ * Bodies are gzipped both ways when the client asks. Turning off
+ * setAcceptGzipRequests() makes gzipped requests fail with 415, as an endpoint
+ * that doesn't take them would.
+ */
+public class MockCohereServer {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final long medianLatencyMs;
+    private final double latencySigma;
+    private final double rateLimitRate;
+    private final double serverErrorRate;
+    private final int responseChars;
+    private final Random random;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong gzippedRequests = new AtomicLong();
+    private volatile boolean acceptGzipRequests = true;
+
+    public MockCohereServer(long medianLatencyMs, double latencySigma, double rateLimitRate,
+                            double serverErrorRate, int responseChars, long seed) throws IOException {
+        this.medianLatencyMs = medianLatencyMs;
+        this.latencySigma = latencySigma;
+        this.rateLimitRate = rateLimitRate;
+        this.serverErrorRate = serverErrorRate;
+        this.responseChars = responseChars;
+        this.random = new Random(seed);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1/chat", this::handleChat);
+        // Slow answers must not hold up the next connection
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String chatUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat";
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getGzippedRequestCount() {
+        return gzippedRequests.get();
+    }
+
+    public void setAcceptGzipRequests(boolean accept) {
+        acceptGzipRequests = accept;
+    }
+
+    private void handleChat(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            boolean gzipped = "gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+            InputStream body = exchange.getRequestBody();
+            if (gzipped) {
+                gzippedRequests.incrementAndGet();
+                if (!acceptGzipRequests) {
+                    readBody(body);
+                    respond(exchange, 415, "{\"message\":\"unsupported content encoding\"}");
+                    return;
+                }
+                body = new GZIPInputStream(body);
+            }
+            JSONObject request = new JSONObject(readBody(body));
+            double roll;
+            long latencyMs;
+            synchronized (random) {
+                roll = random.nextDouble();
+                latencyMs = (long) (medianLatencyMs * Math.exp(latencySigma * random.nextGaussian()));
+            }
+            Thread.sleep(latencyMs);
+
+            if (roll < rateLimitRate) {
+                respond(exchange, 429, "{\"message\":\"rate limited\"}");
+                return;
+            }
+            if (roll < rateLimitRate + serverErrorRate) {
+                respond(exchange, 500, "{\"message\":\"internal error\"}");
+                return;
+            }
+            int maxTokens = request.optInt("max_tokens", 1000);
+            int chars = Math.min(responseChars, maxTokens * 4);
+            String message = request.optString("message", "");
+            JSONObject response = new JSONObject();
+            response.put("text", answer(message, chars));
+            response.put("finish_reason", chars < responseChars ? "MAX_TOKENS" : "COMPLETE");
+            JSONObject billed = new JSONObject();
+            billed.put("input_tokens", request.toString().length() / 4);
+            billed.put("output_tokens", chars / 4);
+            response.put("meta", new JSONObject().put("billed_units", billed));
+            respond(exchange, 200, response.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "{\"message\":\"shutting down\"}");
+        } catch (Exception e) {
+            respond(exchange, 400, "{\"message\":\"bad request\"}");
+        }
+    }
+
+    // Deterministic filler that echoes the prompt, so answers differ per turn
+    private static String answer(String prompt, int chars) {
+        StringBuilder sb = new StringBuilder(chars);
+        String seed = prompt.isEmpty() ? "answer" : prompt;
+        while (sb.length() < chars) {
+            sb.append(seed, 0, Math.min(seed.length(), chars - sb.length()));
+            if (sb.length() < chars) {
+                sb.append(' ');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (OutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(bytes);
+            }
+            bytes = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.chatbot_app;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RequestDeadlineTest {
+
+    @Test
+    public void defaultsApplyUntilLatencyIsKnown() {
+        LatencyStats stats = new LatencyStats();
+        RequestDeadline deadline = new RequestDeadline(200000);
+        assertEquals(10000, deadline.connectTimeoutMs(stats));
+        assertEquals(30000, deadline.readTimeoutMs(stats, "command-r", 50));
+    }
+
+    @Test
+    public void connectTimeoutIsTwiceP99WithinBounds() {
+        LatencyStats fast = new LatencyStats();
+        LatencyStats slow = new LatencyStats();
+        LatencyStats typical = new LatencyStats();
+        for (int i = 0; i < 10; i++) {
+            fast.recordConnect(40);
+            slow.recordConnect(9000);
+            typical.recordConnect(900);
+        }
+        RequestDeadline deadline = new RequestDeadline(200000);
+        assertEquals(1500, deadline.connectTimeoutMs(fast));
+        assertEquals(10000, deadline.connectTimeoutMs(slow));
+        // 900 ms falls in the 1000 ms bin
+        assertEquals(2000, deadline.connectTimeoutMs(typical));
+    }
+
+    @Test
+    public void readTimeoutIsP99PlusHalfAndASecondWithinBounds() {
+        LatencyStats stats = new LatencyStats();
+        for (int i = 0; i < 10; i++) {
+            stats.recordResponse("fast", 50, 80);
+            stats.recordResponse("slow", 50, 100000);
+            stats.recordResponse("typical", 50, 9000);
+        }
+        RequestDeadline deadline = new RequestDeadline(200000);
+        assertEquals(5000, deadline.readTimeoutMs(stats, "fast", 50));
+        assertEquals(90000, deadline.readTimeoutMs(stats, "slow", 50));
+        assertEquals(16000, deadline.readTimeoutMs(stats, "typical", 50));
+        // Samples are kept per prompt-size bucket
+        assertEquals(30000, deadline.readTimeoutMs(stats, "typical", 5000));
+    }
+
+    @Test
+    public void timeoutsAreCappedByWhatIsLeft() {
+        LatencyStats stats = new LatencyStats();
+        RequestDeadline deadline = new RequestDeadline(3000);
+        assertTrue(deadline.connectTimeoutMs(stats) <= 3000);
+        assertTrue(deadline.readTimeoutMs(stats, "command-r", 50) <= 3000);
+        assertTrue(deadline.readTimeoutMs(stats, "command-r", 50) > 2000);
+        assertTrue(deadline.canStartAttempt());
+
+        RequestDeadline spent = new RequestDeadline(0);
+        assertEquals(0, spent.remainingMs());
+        assertFalse(spent.canStartAttempt());
+        // Never 0, which HttpURLConnection would take as no timeout at all
+        assertEquals(1, spent.connectTimeoutMs(stats));
+        assertEquals(1, spent.readTimeoutMs(stats, "command-r", 50));
+    }
+
+    @Test
+    public void attemptNeedsTwoSecondsLeft() {
+        assertFalse(new RequestDeadline(1999).canStartAttempt());
+        assertTrue(new RequestDeadline(60000).canStartAttempt());
+    }
+
+    @Test
+    public void budgetGrowsWithPromptSize() {
+        long shortBudget = RequestDeadline.forPrompt(50).remainingMs();
+        long mediumBudget = RequestDeadline.forPrompt(500).remainingMs();
+        long longBudget = RequestDeadline.forPrompt(5000).remainingMs();
+        assertTrue(shortBudget > 44000 && shortBudget <= 45000);
+        assertTrue(mediumBudget > 74000 && mediumBudget <= 75000);
+        assertTrue(longBudget > 119000 && longBudget <= 120000);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.chatbot_app;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Search over a 100k-message log, from query to the matching lines read back
+ * from disk, for plain, prefix and phrase queries. The target is under 50 ms
+ * per query. Timings are printed; they are only asserted when a budget is
+ * given, since shared CI machines are too noisy for a fixed one:
+ *   ./gradlew testDebugUnitTest --tests '*SearchBenchmark' -Dload.searchBudgetMs=50
+ */
+public class SearchBenchmark {
+
+    private static final int MESSAGES = 100_000;
+    private static final int RUNS = 20;
+    private static final int RESULT_LIMIT = 50;
+    private static final String[] WORDS = {
+        "deploy", "deployment", "server", "error", "retry", "cache", "memory", "thread", "request", "reply",
+        "model", "token", "latency", "index", "search", "query", "phrase", "summary", "image", "voice"
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void searchesOneHundredThousandMessages() throws IOException {
+        File file = folder.newFile("conversation.jsonl");
+        Random random = new Random(11);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            for (int i = 0; i < MESSAGES; i++) {
+                StringBuilder text = new StringBuilder();
+                int words = 5 + random.nextInt(40);
+                for (int w = 0; w < words; w++) {
+                    text.append(WORDS[random.nextInt(WORDS.length)]).append(w % 9 == 8 ? ". " : " ");
+                }
+                ChatMessage message = new ChatMessage(i + 1, i % 2 == 0, text.toString().trim(), 1_700_000_000_000L + i);
+                writer.write(ConversationStore.serialize(message));
+                writer.write('\n');
+            }
+        }
+
+        ConversationStore store = new ConversationStore(file);
+        SearchIndex index = new SearchIndex();
+        long indexStart = System.nanoTime();
+        store.scan((offset, message) -> index.add(offset, message.getText()));
+        long indexMs = (System.nanoTime() - indexStart) / 1_000_000L;
+        assertEquals(MESSAGES, index.size());
+
+        String[] queries = {"latency", "dep*", "\"retry cache\"", "token \"memory thread\" vo*"};
+        StringBuilder report = new StringBuilder(String.format(Locale.US,
+            "Search over %d messages (indexed in %d ms), median of %d runs:", MESSAGES, indexMs, RUNS));
+        long budgetMs = Long.getLong("load.searchBudgetMs", -1);
+        for (String query : queries) {
+            long[] runs = new long[RUNS];
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                List<SearchIndex.Hit> hits = index.search(query, RESULT_LIMIT);
+                long[] offsets = new long[hits.size()];
+                for (int i = 0; i < offsets.length; i++) {
+                    offsets[i] = hits.get(i).offset;
+                }
+                List<ChatMessage> messages = store.readAt(offsets);
+                runs[run] = System.nanoTime() - start;
+
+                assertEquals(RESULT_LIMIT, messages.size());
+                for (ChatMessage message : messages) {
+                    assertNotNull(message);
+                }
+            }
+            Arrays.sort(runs);
+            double medianMs = runs[RUNS / 2] / 1e6;
+            report.append(String.format(Locale.US, "\n  %-28s %.1f ms", query, medianMs));
+            if (budgetMs >= 0) {
+                assertTrue(query + " took " + medianMs + " ms", medianMs < budgetMs);
+            }
+        }
+        System.out.println(report);
+    }
+}
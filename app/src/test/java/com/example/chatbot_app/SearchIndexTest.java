@@ -0,0 +1,152 @@
+package com.example.chatbot_app;
+
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SearchIndexTest {
+
+    @Test
+    public void removeFromDropsDocumentsPastTheCut() {
+        SearchIndex index = new SearchIndex();
+        index.add(0, "kept apple");
+        index.add(20, "dropped apple");
+        index.add(45, "dropped banana");
+
+        index.removeFrom(20);
+        assertEquals(1, index.size());
+        List<SearchIndex.Hit> hits = index.search("apple", 10);
+        assertEquals(1, hits.size());
+        assertEquals(0, hits.get(0).offset);
+        assertTrue(index.search("banana", 10).isEmpty());
+
+        // The log grows again from the cut
+        index.add(20, "new apple");
+        hits = index.search("apple", 10);
+        assertEquals(2, hits.size());
+        assertEquals(20, hits.get(0).offset);
+        index.removeFrom(20);
+        assertEquals(1, index.search("apple", 10).size());
+    }
+
+    @Test
+    public void postingsSurviveLargeGapsAndPositions() {
+        SearchIndex index = new SearchIndex();
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            padding.append("w").append(i % 7).append(' ');
+        }
+        // Document gaps and positions that need one, two and three varint bytes
+        int[] marked = {0, 1, 200, 20000};
+        int next = 0;
+        for (int doc = 0; doc <= 20000; doc++) {
+            if (doc == marked[next]) {
+                String text = doc == 20000 ? padding + "needle" : "needle " + doc;
+                index.add(doc * 10L, text);
+                next++;
+            } else {
+                index.add(doc * 10L, "hay");
+            }
+        }
+
+        List<SearchIndex.Hit> hits = index.search("needle", 10);
+        assertEquals(marked.length, hits.size());
+        for (int i = 0; i < marked.length; i++) {
+            assertEquals(marked[marked.length - 1 - i] * 10L, hits.get(i).offset);
+        }
+        // Position 20000 has to decode exactly for the phrase to line up
+        assertEquals(1, index.search("\"w0 needle\"", 10).size());
+        assertEquals(20001 - marked.length, index.search("hay", 100000).size());
+    }
+
+    @Test
+    public void phraseNeedsWordsInOrderAndAdjacent() {
+        SearchIndex index = new SearchIndex();
+        index.add(0, "the quick brown fox");
+        index.add(1, "brown quick fox");
+        index.add(2, "quick and brown");
+        index.add(3, "Quick, brown!");
+
+        assertEquals(offsets(3, 0), offsets(index.search("\"quick brown\"", 10)));
+        assertEquals(offsets(3, 2, 1, 0), offsets(index.search("quick brown", 10)));
+        assertEquals(offsets(0), offsets(index.search("\"quick brown\" fox", 10)));
+        assertTrue(index.search("\"brown quick fox jumps\"", 10).isEmpty());
+    }
+
+    @Test
+    public void prefixMatchesEveryTermStartingWithIt() {
+        SearchIndex index = new SearchIndex();
+        index.add(0, "deploy the app");
+        index.add(1, "deployment failed");
+        index.add(2, "a deprecated api");
+        index.add(3, "nothing here");
+
+        assertEquals(offsets(1, 0), offsets(index.search("deploy*", 10)));
+        assertEquals(offsets(2, 1, 0), offsets(index.search("dep*", 10)));
+        assertEquals(offsets(1), offsets(index.search("dep* failed", 10)));
+        // Without the star only the whole word matches
+        assertEquals(offsets(0), offsets(index.search("deploy", 10)));
+        assertTrue(index.search("deployed*", 10).isEmpty());
+    }
+
+    @Test
+    public void queryParsingIgnoresPunctuationAndCase() {
+        SearchIndex index = new SearchIndex();
+        index.add(0, "Hello, World");
+        assertEquals(1, index.search("  HELLO   world!  ", 10).size());
+        assertEquals(1, index.search("\"hello, world\"", 10).size());
+        // An unclosed quote still reads as a phrase
+        assertEquals(1, index.search("\"hello world", 10).size());
+        assertTrue(index.search("", 10).isEmpty());
+        assertTrue(index.search("\"\"", 10).isEmpty());
+    }
+
+    @Test
+    public void highlightsMatchedTokens() {
+        List<int[]> ranges = SearchIndex.highlightRanges("Deploying the deploy", "deploy*");
+        assertEquals(2, ranges.size());
+        assertArrayEquals(new int[]{0, 9}, ranges.get(0));
+        assertArrayEquals(new int[]{14, 20}, ranges.get(1));
+        assertTrue(SearchIndex.highlightRanges("Deploying", "deploy").isEmpty());
+    }
+
+    @Test
+    public void newestHitsComeFirstUpToTheLimit() {
+        SearchIndex index = new SearchIndex();
+        for (int i = 0; i < 10; i++) {
+            index.add(i, "word");
+        }
+        assertEquals(offsets(9, 8, 7), offsets(index.search("word", 3)));
+    }
+
+    @Test
+    public void sizeGrowsWithTheIndexAndResetsOnClear() {
+        SearchIndex index = new SearchIndex();
+        long empty = index.sizeBytes();
+        for (int i = 0; i < 1000; i++) {
+            index.add(i * 100L, "message " + i + " about deploys");
+        }
+        // One term per number plus offsets for a thousand documents
+        assertTrue(index.sizeBytes() > empty + 1000 * 8);
+        index.clear();
+        assertEquals(empty, index.sizeBytes());
+    }
+
+    private static List<Long> offsets(List<SearchIndex.Hit> hits) {
+        List<Long> offsets = new ArrayList<>();
+        for (SearchIndex.Hit hit : hits) {
+            offsets.add(hit.offset);
+        }
+        return offsets;
+    }
+
+    private static List<Long> offsets(long... values) {
+        List<Long> offsets = new ArrayList<>();
+        for (long value : values) {
+            offsets.add(value);
+        }
+        return offsets;
+    }
+}
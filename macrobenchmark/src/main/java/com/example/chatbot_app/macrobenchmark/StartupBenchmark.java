@@ -0,0 +1,87 @@
+package com.example.chatbot_app.macrobenchmark;
+
+import androidx.annotation.OptIn;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.ExperimentalMetricApi;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+import java.util.Collections;
+import kotlin.Unit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Cold-start benchmarks: time to first frame, and time from the first send to the
+ * first bot reply (the "ChatFirstResponse" trace section in MainActivity).
+ *
+ * Run with: ./gradlew :macrobenchmark:connectedBenchmarkAndroidTest
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+
+    static final String PACKAGE_NAME = "com.example.chatbot_app";
+    private static final int ITERATIONS = 5;
+    private static final long RESPONSE_TIMEOUT_MS = 60000;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void coldStartupNoCompilation() {
+        coldStartup(new CompilationMode.None());
+    }
+
+    @Test
+    public void coldStartupBaselineProfile() {
+        coldStartup(new CompilationMode.Partial());
+    }
+
+    @Test
+    @OptIn(markerClass = ExperimentalMetricApi.class)
+    public void coldStartFirstResponse() {
+        benchmarkRule.measureRepeated(
+            PACKAGE_NAME,
+            Collections.singletonList(new TraceSectionMetric("ChatFirstResponse")),
+            new CompilationMode.Partial(),
+            StartupMode.COLD,
+            ITERATIONS,
+            scope -> Unit.INSTANCE,
+            scope -> {
+                scope.pressHome();
+                scope.startActivityAndWait();
+                sendFirstMessage(scope.getDevice());
+                return Unit.INSTANCE;
+            });
+    }
+
+    private void coldStartup(CompilationMode compilationMode) {
+        benchmarkRule.measureRepeated(
+            PACKAGE_NAME,
+            Collections.singletonList(new StartupTimingMetric()),
+            compilationMode,
+            StartupMode.COLD,
+            ITERATIONS,
+            scope -> Unit.INSTANCE,
+            scope -> {
+                scope.pressHome();
+                scope.startActivityAndWait();
+                return Unit.INSTANCE;
+            });
+    }
+
+    static void sendFirstMessage(UiDevice device) {
+        UiObject2 input = device.wait(Until.findObject(By.res(PACKAGE_NAME, "userInput")), RESPONSE_TIMEOUT_MS);
+        input.setText("Hi");
+        device.findObject(By.res(PACKAGE_NAME, "sendButton")).click();
+        device.wait(Until.hasObject(By.res(PACKAGE_NAME, "typingIndicator")), RESPONSE_TIMEOUT_MS);
+        device.wait(Until.gone(By.res(PACKAGE_NAME, "typingIndicator")), RESPONSE_TIMEOUT_MS);
+    }
+}